@@ -0,0 +1,135 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Random;
+
+import javafx.scene.paint.Color;
+
+import bench.EditorHarness;
+
+/**
+ * DocumentHarness runs the benchmarked editor operations on a ShapeCanvas that is never shown.
+ * Without a window the canvas only records the drawing commands of its GraphicsContext, so paint()
+ * measures the work of the editor itself: finding the visible shapes and rasterizing them into the tiles
+ * of its cache, which is done in software by Java 2D whether there is a window or not. The benchmarks fork with the
+ * software pipeline (-Dprism.order=sw), so machines without OpenGL need no display either.
+ */
+public class DocumentHarness implements EditorHarness {
+
+	private ShapeCanvas canvas;
+	private ShapeGroup group;
+	private MyShape shape;
+
+	@Override
+	public void createDocument(int size, long seed) {
+		canvas = new ShapeCanvas(WIDTH, HEIGHT);
+		Random random = new Random(seed);
+
+		for (int i = 0; i < size; i++) {
+			// every 50th shape is a small group, the way drawings are usually organised
+			if (i % 50 == 49) {
+				ShapeGroup g = new ShapeGroup();
+				double x = random.nextDouble() * WIDTH, y = random.nextDouble() * HEIGHT;
+				g.setP1(x, y);
+				g.setP2(x + 60, y + 60);
+				for (int m = 0; m < 5; m++) {
+					g.addMember(randomShape(random, x, y, 40));
+				}
+				canvas.addShape(g);
+			}
+			else {
+				canvas.addShape(randomShape(random, random.nextDouble() * WIDTH, random.nextDouble() * HEIGHT, 40));
+			}
+		}
+		shape = canvas.getShapes().get(size / 2);
+	}
+
+	/**
+	 * Creates a line, oval or rect with a random size, color and fill near the given point.
+	 */
+	private static MyShape randomShape(Random random, double x, double y, double extent) {
+		double x2 = x + random.nextDouble() * extent;
+		double y2 = y + random.nextDouble() * extent;
+
+		MyShape s;
+		switch (random.nextInt(3)) {
+		case 0:
+			s = new Line(x, y, x2, y2);
+			break;
+		case 1:
+			s = new Oval(x, y, x2, y2);
+			break;
+		default:
+			s = new Rect(x, y, x2, y2);
+			break;
+		}
+		s.setFilled(random.nextBoolean());
+		s.setColor(Color.rgb(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+		return s;
+	}
+
+	@Override
+	public Object closestShape(double x, double y) {
+		return canvas.closestShape(x, y);
+	}
+
+	@Override
+	public Object shapeAt(double x, double y) {
+		return canvas.shapeAt(x, y);
+	}
+
+	@Override
+	public void paint() {
+		canvas.paint();
+	}
+
+	@Override
+	public void toTextFile(File file) {
+		canvas.toTextFile(file);
+	}
+
+	@Override
+	public int fromTextFile(File file) {
+		canvas.fromTextFile(file);
+		return canvas.getShapes().size();
+	}
+
+	@Override
+	public void toBinaryFile(File file) {
+		canvas.toBinaryFile(file);
+	}
+
+	@Override
+	public int fromBinaryFile(File file) {
+		canvas.fromBinaryFile(file);
+		return canvas.getShapes().size();
+	}
+
+	@Override
+	public void groupDocument() {
+		ArrayList<MyShape> shapes = new ArrayList<>(canvas.getShapes());
+		group = new ShapeGroup();
+		group.setP1(0, 0);
+		group.setP2(WIDTH, HEIGHT);
+
+		canvas.clear();
+		for (MyShape s : shapes) {
+			group.addMember(s);
+		}
+		canvas.addShape(group);
+	}
+
+	@Override
+	public Object cloneGroup() {
+		return group.clone();
+	}
+
+	@Override
+	public void moveGroup(double dx, double dy) {
+		group.move(dx, dy);
+	}
+
+	@Override
+	public void moveShape(double dx, double dy) {
+		shape.move(dx, dy);
+	}
+}
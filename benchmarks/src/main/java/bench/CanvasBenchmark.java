@@ -0,0 +1,71 @@
+package bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the canvas operations that run on every mouse event and every frame:
+ * finding the shape under the pointer and painting the document.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Dprism.order=sw")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CanvasBenchmark {
+
+	private static final int POINTS = 1024;
+
+	@Param({ "1000", "10000", "100000", "1000000" })
+	int size;
+
+	private EditorHarness editor;
+	private double[] points;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		editor = EditorHarness.create();
+		editor.createDocument(size, 42);
+
+		// the pointer visits a fixed set of random positions so that every fork measures the same queries
+		Random random = new Random(7);
+		points = new double[2 * POINTS];
+		for (int i = 0; i < POINTS; i++) {
+			points[2 * i] = random.nextDouble() * EditorHarness.WIDTH;
+			points[2 * i + 1] = random.nextDouble() * EditorHarness.HEIGHT;
+		}
+	}
+
+	@Benchmark
+	public Object closestShape() {
+		int i = next;
+		next = (next + 2) & (2 * POINTS - 1);
+		return editor.closestShape(points[i], points[i + 1]);
+	}
+
+	@Benchmark
+	public Object shapeAt() {
+		int i = next;
+		next = (next + 2) & (2 * POINTS - 1);
+		return editor.shapeAt(points[i], points[i + 1]);
+	}
+
+	@Benchmark
+	public void paint() {
+		editor.paint();
+	}
+}
@@ -0,0 +1,124 @@
+package bench;
+
+import java.io.File;
+
+/**
+ * EditorHarness is the part of the editor the benchmarks drive.
+ * <p>
+ * The editor classes live in the default package, which cannot be imported from a named package,
+ * and JMH does not allow benchmarks in the default package. The implementation, DocumentHarness,
+ * therefore sits in the default package and is loaded by name once per trial; the measured calls
+ * go through this interface and are inlined by the JIT like direct calls.
+ */
+public interface EditorHarness {
+
+	/** The width of the canvas the documents are drawn on. */
+	double WIDTH = 1280;
+
+	/** The height of the canvas the documents are drawn on. */
+	double HEIGHT = 800;
+
+	/**
+	 * Builds a canvas holding a random document.
+	 *
+	 * @param size The number of top-level shapes.
+	 * @param seed The seed of the random document, so that every fork sees the same shapes.
+	 */
+	void createDocument(int size, long seed);
+
+	/**
+	 * Finds the shape closest to a point, see ShapeCanvas.closestShape.
+	 *
+	 * @param x The x-coordinate of the point.
+	 * @param y The y-coordinate of the point.
+	 * @return The closest shape.
+	 */
+	Object closestShape(double x, double y);
+
+	/**
+	 * Finds the topmost shape under a point, see ShapeCanvas.shapeAt.
+	 *
+	 * @param x The x-coordinate of the point.
+	 * @param y The y-coordinate of the point.
+	 * @return The shape under the point, or null.
+	 */
+	Object shapeAt(double x, double y);
+
+	/**
+	 * Paints the whole document, see ShapeCanvas.paint.
+	 */
+	void paint();
+
+	/**
+	 * Saves the document as text, see ShapeCanvas.toTextFile.
+	 *
+	 * @param file The file to write.
+	 */
+	void toTextFile(File file);
+
+	/**
+	 * Loads a text document, see ShapeCanvas.fromTextFile.
+	 *
+	 * @param file The file to read.
+	 * @return The number of shapes loaded.
+	 */
+	int fromTextFile(File file);
+
+	/**
+	 * Saves the document in the binary format, see ShapeCanvas.toBinaryFile.
+	 *
+	 * @param file The file to write.
+	 */
+	void toBinaryFile(File file);
+
+	/**
+	 * Loads a binary document, see ShapeCanvas.fromBinaryFile.
+	 *
+	 * @param file The file to read.
+	 * @return The number of shapes loaded.
+	 */
+	int fromBinaryFile(File file);
+
+	/**
+	 * Builds a ShapeGroup whose members are all the shapes of the document.
+	 * The shapes are taken off the canvas and the group is put on it instead.
+	 */
+	void groupDocument();
+
+	/**
+	 * Clones the group built by groupDocument, see ShapeGroup.clone.
+	 *
+	 * @return The copy.
+	 */
+	Object cloneGroup();
+
+	/**
+	 * Moves the group built by groupDocument, see ShapeGroup.move.
+	 *
+	 * @param dx The distance to move in the x-direction.
+	 * @param dy The distance to move in the y-direction.
+	 */
+	void moveGroup(double dx, double dy);
+
+	/**
+	 * Moves one shape of the document, see MyShape.move.
+	 *
+	 * @param dx The distance to move in the x-direction.
+	 * @param dy The distance to move in the y-direction.
+	 */
+	void moveShape(double dx, double dy);
+
+	/**
+	 * Loads the implementation from the default package.
+	 *
+	 * @return A new harness.
+	 */
+	static EditorHarness create() {
+		try {
+			return (EditorHarness) Class.forName("DocumentHarness").getDeclaredConstructor().newInstance();
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("DocumentHarness is missing from the benchmark jar", e);
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks saving and loading a document in the text and in the binary format.
+ * The files are written once per trial; the save benchmarks write to a scratch file of their own.
+ * <p>
+ * Besides the documents per second, every benchmark counts the megabytes of the file it saved or loaded,
+ * which JMH reports as the secondary result ":megabytes" in MB/s, so the formats can be compared by throughput.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Dprism.order=sw")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FileBenchmark {
+
+	@Param({ "1000", "10000", "100000", "1000000" })
+	int size;
+
+	private EditorHarness editor;
+	private File text, binary, scratch;
+	private double textMegabytes, binaryMegabytes;
+
+	/**
+	 * The megabytes saved or loaded, reported per second.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Transfer {
+		public double megabytes;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			megabytes = 0;
+		}
+	}
+
+	@Setup
+	public void setUp() throws IOException {
+		editor = EditorHarness.create();
+		editor.createDocument(size, 42);
+
+		text = File.createTempFile("shapes", ".txt");
+		binary = File.createTempFile("shapes", ".bin");
+		scratch = File.createTempFile("shapes", ".out");
+		editor.toTextFile(text);
+		editor.toBinaryFile(binary);
+		// the benchmarks write the same files again, so their sizes hold for every operation
+		textMegabytes = text.length() / 1e6;
+		binaryMegabytes = binary.length() / 1e6;
+	}
+
+	@TearDown
+	public void tearDown() {
+		text.delete();
+		binary.delete();
+		scratch.delete();
+	}
+
+	@Benchmark
+	public void toTextFile(Transfer transfer) {
+		editor.toTextFile(scratch);
+		transfer.megabytes += textMegabytes;
+	}
+
+	@Benchmark
+	public int fromTextFile(Transfer transfer) {
+		transfer.megabytes += textMegabytes;
+		return editor.fromTextFile(text);
+	}
+
+	@Benchmark
+	public void toBinaryFile(Transfer transfer) {
+		editor.toBinaryFile(scratch);
+		transfer.megabytes += binaryMegabytes;
+	}
+
+	@Benchmark
+	public int fromBinaryFile(Transfer transfer) {
+		transfer.megabytes += binaryMegabytes;
+		return editor.fromBinaryFile(binary);
+	}
+}
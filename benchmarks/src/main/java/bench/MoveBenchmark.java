@@ -0,0 +1,47 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks dragging a single shape of a document, which moves the shape and updates the spatial index.
+ * Run it with "-prof gc" to check that a move does not allocate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Dprism.order=sw")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MoveBenchmark {
+
+	@Param({ "1000", "10000", "100000", "1000000" })
+	int size;
+
+	private EditorHarness editor;
+	private double step = 1;
+
+	@Setup
+	public void setUp() {
+		editor = EditorHarness.create();
+		editor.createDocument(size, 42);
+	}
+
+	@Benchmark
+	public void moveShape() {
+		// back and forth, so the shape stays where the document put it
+		step = -step;
+		editor.moveShape(step, step);
+	}
+}
@@ -0,0 +1,136 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that Autosave recovers the drawing of the last checkpoint that reached the disk, from a copy of the files
+ * taken while the editor that wrote them is still running, as they would be found after a crash.
+ */
+class AutosaveTest {
+
+	private static final String JOURNAL_FILE = "autosave.journal";
+
+	@TempDir
+	File dir;
+
+	private ShapeStore store = new ShapeStore();
+	private ShapeIndex index = new ShapeIndex(store);
+	private ShapeDocument document = new ShapeDocument(store, index);
+	private Autosave autosave;
+	private ArrayList<MyShape> shapes;
+
+	@BeforeEach
+	void start() throws IOException {
+		autosave = new Autosave(document, new File(dir, "live"));
+		assertNull(autosave.recover());
+
+		shapes = Drawings.randomDrawing(new Random(5), 40);
+		for (MyShape s : shapes) {
+			store.attach(s);
+			index.insert(s);
+		}
+		autosave.checkpoint();
+	}
+
+	@AfterEach
+	void close() {
+		autosave.close();
+	}
+
+	private String drawing() {
+		return Drawings.text(document.snapshot().toShapes());
+	}
+
+	/**
+	 * Copies the files of the running autosave, as a crash would leave them.
+	 */
+	private File crash(String name) throws IOException {
+		autosave.flush();
+		File copy = new File(dir, name);
+		copy.mkdirs();
+		for (File f : new File(dir, "live").listFiles()) {
+			Files.copy(f.toPath(), new File(copy, f.getName()).toPath());
+		}
+		return copy;
+	}
+
+	private static String recover(File dir) throws IOException {
+		ShapeStore store = new ShapeStore();
+		Autosave other = new Autosave(new ShapeDocument(store, new ShapeIndex(store)), dir);
+		try {
+			ArrayList<MyShape> recovered = other.recover();
+			return recovered == null ? null : Drawings.text(recovered);
+		}
+		finally {
+			other.close();
+		}
+	}
+
+	@Test
+	void recoversTheLastCheckpoint() throws IOException {
+		// a shape moved, a group moved as a whole, and a shape removed, each in a journal frame of its own
+		shapes.get(0).move(7, 8);
+		autosave.checkpoint();
+		shapes.get(9).move(-3, 4);
+		autosave.checkpoint();
+		MyShape removed = shapes.get(1);
+		index.remove(removed);
+		store.detach(removed);
+		autosave.checkpoint();
+
+		assertEquals(drawing(), recover(crash("crashed")));
+	}
+
+	@Test
+	void stopsAtATruncatedFrame() throws IOException {
+		shapes.get(0).move(7, 8);
+		shapes.get(9).move(-3, 4);
+		autosave.checkpoint();
+		String expected = drawing();
+
+		shapes.get(2).move(100, 100);
+		shapes.get(19).move(100, 100);
+		autosave.checkpoint();
+		File copy = crash("torn");
+
+		// the last frame only partly reached the disk
+		try (RandomAccessFile journal = new RandomAccessFile(new File(copy, JOURNAL_FILE), "rw")) {
+			journal.setLength(journal.length() - 5);
+		}
+		assertEquals(expected, recover(copy));
+	}
+
+	@Test
+	void stopsAtADamagedFrame() throws IOException {
+		String expected = drawing();
+		shapes.get(0).move(7, 8);
+		autosave.checkpoint();
+		File copy = crash("damaged");
+
+		// a bit of the only frame flipped, which its checksum catches
+		try (RandomAccessFile journal = new RandomAccessFile(new File(copy, JOURNAL_FILE), "rw")) {
+			journal.seek(journal.length() - 1);
+			int last = journal.read();
+			journal.seek(journal.length() - 1);
+			journal.write(last ^ 1);
+		}
+		assertEquals(expected, recover(copy));
+	}
+
+	@Test
+	void directoryOfARunningEditorIsNotRecovered() {
+		assertThrows(IOException.class, () -> recover(new File(dir, "live")));
+	}
+}
@@ -0,0 +1,117 @@
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javafx.scene.paint.Color;
+
+/**
+ * Random drawings for the tests, with whole coordinates and colors of three decimals,
+ * which the text format writes exactly.
+ */
+final class Drawings {
+
+	private Drawings() {
+	}
+
+	/**
+	 * Creates a random line, rect or oval within a square of the given size.
+	 *
+	 * @param random The source of randomness.
+	 * @param size   The size of the square.
+	 * @return The shape, which belongs to no store.
+	 */
+	static MyShape randomShape(Random random, int size) {
+		int x = random.nextInt(size), y = random.nextInt(size);
+		int w = random.nextInt(50), h = random.nextInt(50);
+		MyShape s;
+		switch (random.nextInt(3)) {
+		case 0:
+			s = new Line(x, y, x + w, y + h);
+			break;
+		case 1:
+			s = new Oval(x, y, x + w, y + h);
+			break;
+		default:
+			s = new Rect(x, y, x + w, y + h);
+		}
+		s.setFilled(random.nextBoolean());
+		s.setColor(Color.color(random.nextInt(1001) / 1000.0, random.nextInt(1001) / 1000.0, random.nextInt(1001) / 1000.0));
+		return s;
+	}
+
+	/**
+	 * Creates a group of random shapes, with its corners set around them as the group tool does.
+	 *
+	 * @param random  The source of randomness.
+	 * @param size    The size of the square the members lie in.
+	 * @param members The number of members.
+	 * @return The group, which belongs to no store.
+	 */
+	static ShapeGroup randomGroup(Random random, int size, int members) {
+		ShapeGroup g = new ShapeGroup();
+		for (int i = 0; i < members; i++) {
+			g.addMember(randomShape(random, size));
+		}
+		g.setP1(Math.floor(g.getULX()), Math.floor(g.getULY()));
+		g.setP2(Math.ceil(g.getULX() + g.getWidth()), Math.ceil(g.getULY() + g.getHeight()));
+		return g;
+	}
+
+	/**
+	 * Creates a random drawing in which every tenth shape is a group.
+	 *
+	 * @param random The source of randomness.
+	 * @param n      The number of top-level shapes.
+	 * @return The top-level shapes.
+	 */
+	static ArrayList<MyShape> randomDrawing(Random random, int n) {
+		ArrayList<MyShape> shapes = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			shapes.add(i % 10 == 9 ? randomGroup(random, 1000, 3) : randomShape(random, 1000));
+		}
+		return shapes;
+	}
+
+	/**
+	 * Returns a drawing in the text format, which tells two drawings apart by everything the formats keep.
+	 *
+	 * @param shapes The top-level shapes.
+	 * @return The text of the drawing.
+	 */
+	static String text(List<MyShape> shapes) {
+		StringWriter out = new StringWriter();
+		ShapeTextWriter writer = new ShapeTextWriter(out);
+		try {
+			writer.writeShapes(shapes);
+			writer.flush();
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return out.toString();
+	}
+
+	/**
+	 * Reads a drawing in the text format through ShapeTextReader, and checks that nothing follows it.
+	 *
+	 * @param text The text of the drawing.
+	 * @return The top-level shapes.
+	 * @throws IOException If the text is malformed or does not end after the drawing.
+	 */
+	static ArrayList<MyShape> read(String text) throws IOException {
+		ShapeTextReader reader = new ShapeTextReader(new StringReader(text));
+		int n = reader.nextInt();
+		ArrayList<MyShape> shapes = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			shapes.add(reader.readShape());
+		}
+		if (reader.hasNext()) {
+			throw new IOException("text after the last shape");
+		}
+		return shapes;
+	}
+}
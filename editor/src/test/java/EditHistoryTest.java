@@ -0,0 +1,118 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the ring buffer of EditHistory: which versions undo and redo hand back, and which edits are dropped
+ * when the history is over its number of edits or its bytes.
+ */
+class EditHistoryTest {
+
+	private Random random = new Random(42);
+
+	/**
+	 * Returns versions of a drawing, each with one more shape than the one before.
+	 */
+	private ShapeSnapshot[] versions(int n) {
+		ShapeSnapshot[] versions = new ShapeSnapshot[n];
+		versions[0] = ShapeSnapshot.EMPTY;
+		for (int i = 1; i < n; i++) {
+			versions[i] = versions[i - 1].with(i, ShapeRecord.of(Drawings.randomShape(random, 100)));
+		}
+		return versions;
+	}
+
+	@Test
+	void undoAndRedoHandBackTheVersionsAroundEachEdit() {
+		// more edits than slots, so the ring wraps around
+		EditHistory history = new EditHistory(4, Long.MAX_VALUE);
+		ShapeSnapshot[] v = versions(11);
+		for (int i = 1; i < v.length; i++) {
+			history.add(v[i - 1], v[i], 1);
+		}
+		assertEquals(4, history.undoCount());
+		assertEquals(0, history.redoCount());
+
+		for (int i = 9; i >= 6; i--) {
+			assertSame(v[i], history.undo());
+		}
+		assertNull(history.undo());
+		assertEquals(4, history.redoCount());
+
+		for (int i = 7; i <= 10; i++) {
+			assertSame(v[i], history.redo());
+		}
+		assertNull(history.redo());
+	}
+
+	@Test
+	void newEditDropsTheUndoneEdits() {
+		EditHistory history = new EditHistory(10, Long.MAX_VALUE);
+		ShapeSnapshot[] v = versions(4);
+		history.add(v[0], v[1], 10);
+		history.add(v[1], v[2], 20);
+		history.add(v[2], v[3], 30);
+		history.undo();
+		history.undo();
+		assertEquals(2, history.redoCount());
+
+		ShapeSnapshot other = v[1].with(100, ShapeRecord.of(Drawings.randomShape(random, 100)));
+		history.add(v[1], other, 5);
+		assertEquals(0, history.redoCount());
+		assertNull(history.redo());
+		// the undone edits no longer count
+		assertEquals(15, history.sizeInBytes());
+		assertSame(v[1], history.undo());
+		assertSame(v[0], history.undo());
+	}
+
+	@Test
+	void byteBudgetDropsTheOldestEdits() {
+		EditHistory history = new EditHistory(100, 100);
+		ShapeSnapshot[] v = versions(6);
+		history.add(v[0], v[1], 40);
+		history.add(v[1], v[2], 40);
+		assertEquals(80, history.sizeInBytes());
+
+		history.add(v[2], v[3], 40);
+		assertEquals(2, history.undoCount());
+		assertEquals(80, history.sizeInBytes());
+
+		// the newest edit is kept even when it is over the budget on its own
+		history.add(v[3], v[4], 500);
+		assertEquals(1, history.undoCount());
+		assertEquals(500, history.sizeInBytes());
+		assertSame(v[3], history.undo());
+		assertNull(history.undo());
+		assertSame(v[4], history.redo());
+	}
+
+	@Test
+	void clearDropsEverything() {
+		EditHistory history = new EditHistory(3, Long.MAX_VALUE);
+		ShapeSnapshot[] v = versions(5);
+		for (int i = 1; i < v.length; i++) {
+			history.add(v[i - 1], v[i], 7);
+		}
+		history.undo();
+		history.clear();
+		assertEquals(0, history.undoCount());
+		assertEquals(0, history.redoCount());
+		assertEquals(0, history.sizeInBytes());
+		assertNull(history.undo());
+		assertNull(history.redo());
+
+		history.add(v[0], v[1], 7);
+		assertSame(v[0], history.undo());
+	}
+
+	@Test
+	void historyKeepsAtLeastOneEdit() {
+		assertThrows(IllegalArgumentException.class, () -> new EditHistory(0, 100));
+	}
+}
@@ -0,0 +1,132 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javafx.scene.paint.Color;
+
+/**
+ * Checks that the columnar format reads back what it wrote, and that a damaged file is rejected
+ * with an IOException rather than read past its end.
+ */
+class ShapeBinaryFileTest {
+
+	@TempDir
+	File dir;
+
+	private ArrayList<MyShape> shapes;
+	private File file;
+
+	@BeforeEach
+	void write() throws IOException {
+		shapes = Drawings.randomDrawing(new Random(3), 200);
+		for (MyShape s : shapes) {
+			toRgb(s);
+		}
+		// a moved group is written where it is drawn
+		shapes.get(9).move(5, 6);
+		file = new File(dir, "drawing.shp");
+		ShapeBinaryFile.write(shapes, file);
+	}
+
+	/**
+	 * Rounds the colors of a shape to the 8 bits per channel the columnar format keeps.
+	 */
+	private static void toRgb(MyShape s) {
+		if (s instanceof ShapeGroup) {
+			for (MyShape member : ((ShapeGroup) s).getMemberView()) {
+				toRgb(member);
+			}
+			return;
+		}
+		Color c = s.getColor();
+		s.setColor(Color.rgb((int) Math.round(c.getRed() * 255), (int) Math.round(c.getGreen() * 255),
+				(int) Math.round(c.getBlue() * 255)));
+	}
+
+	private void putInt(long position, int value) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.seek(position);
+			raf.writeInt(value);
+		}
+	}
+
+	private int getInt(long position) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			raf.seek(position);
+			return raf.readInt();
+		}
+	}
+
+	@Test
+	void drawingReadsBackTheSame() throws IOException {
+		assertTrue(ShapeBinaryFile.isColumnar(file));
+		assertEquals(Drawings.text(shapes), Drawings.text(ShapeBinaryFile.read(file)));
+	}
+
+	@Test
+	void textFileIsNotColumnar() throws IOException {
+		File text = new File(dir, "drawing.txt");
+		Files.write(text.toPath(), Drawings.text(shapes).getBytes(StandardCharsets.ISO_8859_1));
+		assertFalse(ShapeBinaryFile.isColumnar(text));
+		assertThrows(IOException.class, () -> ShapeBinaryFile.read(text));
+	}
+
+	@Test
+	void unknownVersionIsRejected() throws IOException {
+		putInt(4, ShapeBinaryFile.VERSION + 1);
+		assertThrows(IOException.class, () -> ShapeBinaryFile.read(file));
+	}
+
+	@Test
+	void invalidCountsAreRejected() throws IOException {
+		// more top-level shapes than records
+		putInt(12, Integer.MAX_VALUE);
+		assertThrows(IOException.class, () -> ShapeBinaryFile.read(file));
+	}
+
+	@Test
+	void wrongTopLevelCountIsRejected() throws IOException {
+		// the records make up one more top-level shape than the header says
+		int top = getInt(12);
+		putInt(12, top - 1);
+		assertThrows(IOException.class, () -> ShapeBinaryFile.read(file));
+
+		// and one less
+		putInt(12, top + 1);
+		assertThrows(IOException.class, () -> ShapeBinaryFile.read(file));
+	}
+
+	@Test
+	void truncatedFileIsRejected() throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(raf.length() - 1);
+		}
+		assertThrows(IOException.class, () -> ShapeBinaryFile.read(file));
+	}
+
+	@Test
+	void damagedEndColumnIsRejected() throws IOException {
+		// the end column is the last one, with an int per record counted in the header
+		long end = file.length() - 4L * getInt(8);
+		// the first record now ends before it starts
+		putInt(end, 0);
+		assertThrows(IOException.class, () -> ShapeBinaryFile.read(file));
+
+		// and now past the last record
+		putInt(end, Integer.MAX_VALUE);
+		assertThrows(IOException.class, () -> ShapeBinaryFile.read(file));
+	}
+}
@@ -0,0 +1,136 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that undo and redo on a ShapeCanvas, which restore versions of the document, bring back exactly the
+ * drawing from before and after each edit, with the index and the document following the shapes.
+ */
+class ShapeCanvasUndoTest {
+
+	/**
+	 * Returns the text of the drawing, after checking that the document and the index hold the same shapes
+	 * in the same order as the canvas.
+	 */
+	private static String drawing(ShapeCanvas canvas) {
+		String text = Drawings.text(canvas.getShapes());
+		assertEquals(text, Drawings.text(canvas.snapshot().toShapes()), "document");
+		assertEquals(canvas.getShapes(), canvas.shapesIntersecting(-1e9, -1e9, 2e9, 2e9), "index");
+		return text;
+	}
+
+	/**
+	 * Makes a random edit the way the tools do, between beginEdit and endEdit.
+	 */
+	private static void edit(ShapeCanvas canvas, Random random) {
+		ArrayList<MyShape> shapes = canvas.getShapes();
+		MyShape some = shapes.isEmpty() ? null : shapes.get(random.nextInt(shapes.size()));
+		canvas.beginEdit();
+		switch (some == null ? 0 : random.nextInt(5)) {
+		case 0:
+			canvas.addShape(Drawings.randomShape(random, 1000));
+			break;
+		case 1:
+			some.move(random.nextInt(100) - 50, random.nextInt(100) - 50);
+			break;
+		case 2:
+			MyShape copy = (MyShape) some.clone();
+			canvas.addShape(copy);
+			copy.move(random.nextInt(100), random.nextInt(100));
+			break;
+		case 3:
+			List<MyShape> captured = new ArrayList<>();
+			for (MyShape s : shapes) {
+				if (random.nextInt(4) == 0) {
+					captured.add(s);
+				}
+			}
+			ShapeGroup group = new ShapeGroup();
+			canvas.removeShapes(captured);
+			for (MyShape s : captured) {
+				group.addMember(s);
+			}
+			if (group.isEmpty()) {
+				break;
+			}
+			group.setP1(group.getULX(), group.getULY());
+			group.setP2(group.getULX() + group.getWidth(), group.getULY() + group.getHeight());
+			canvas.addShape(group);
+			break;
+		default:
+			canvas.deleteShape(some);
+		}
+		canvas.endEdit();
+	}
+
+	@Test
+	void undoAndRedoGoThroughTheSameDrawings() {
+		for (int seed = 0; seed < 50; seed++) {
+			Random random = new Random(seed);
+			ShapeCanvas canvas = new ShapeCanvas(200, 200);
+			for (MyShape s : Drawings.randomDrawing(random, 20)) {
+				canvas.addShape(s);
+			}
+
+			List<String> drawings = new ArrayList<>();
+			drawings.add(drawing(canvas));
+			for (int i = 0; i < 30; i++) {
+				edit(canvas, random);
+				drawings.add(drawing(canvas));
+			}
+
+			for (int i = drawings.size() - 2; i >= 0; i--) {
+				canvas.undo();
+				assertEquals(drawings.get(i), drawing(canvas), "seed " + seed + " undo to " + i);
+			}
+			// there is nothing more to undo
+			canvas.undo();
+			assertEquals(drawings.get(0), drawing(canvas));
+
+			for (int i = 1; i < drawings.size(); i++) {
+				canvas.redo();
+				assertEquals(drawings.get(i), drawing(canvas), "seed " + seed + " redo to " + i);
+			}
+			canvas.redo();
+			assertEquals(drawings.get(drawings.size() - 1), drawing(canvas));
+
+			// a new edit after undoing drops the edits that were undone
+			for (int i = 0; i < 10; i++) {
+				canvas.undo();
+			}
+			edit(canvas, random);
+			String edited = drawing(canvas);
+			canvas.redo();
+			assertEquals(edited, drawing(canvas), "seed " + seed + " redo after a new edit");
+			canvas.undo();
+			assertEquals(drawings.get(drawings.size() - 11), drawing(canvas), "seed " + seed + " undo after a new edit");
+		}
+	}
+
+	@Test
+	void undoingAMoveKeepsTheShapes() {
+		ShapeCanvas canvas = new ShapeCanvas(200, 200);
+		ArrayList<MyShape> shapes = Drawings.randomDrawing(new Random(3), 1000);
+		canvas.addShapes(shapes);
+		MyShape moved = shapes.get(500), group = shapes.get(509);
+
+		canvas.beginEdit();
+		moved.move(10, 20);
+		group.move(-5, 5);
+		canvas.endEdit();
+		String after = drawing(canvas);
+		canvas.undo();
+		canvas.redo();
+
+		// the shapes are moved back and forth in place, not replaced
+		assertEquals(after, drawing(canvas));
+		for (int i = 0; i < shapes.size(); i++) {
+			assertSame(shapes.get(i), canvas.getShapes().get(i));
+		}
+	}
+}
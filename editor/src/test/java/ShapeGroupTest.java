@@ -0,0 +1,171 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the pending offset of ShapeGroup: a move only changes the offset, the bounds and the center, and
+ * the members are drawn, hit, written and recorded where the offset puts them until it is pushed down into them.
+ */
+class ShapeGroupTest {
+
+	private ShapeGroup group;
+	private ShapeGroup nested;
+
+	@BeforeEach
+	void build() {
+		Random random = new Random(37);
+		group = Drawings.randomGroup(random, 100, 4);
+		nested = Drawings.randomGroup(random, 100, 2);
+		nested.move(3, 4);
+		group.addMember(nested);
+	}
+
+	private static double[] corners(MyShape s) {
+		return new double[] { s.getULX(), s.getULY(), s.getWidth(), s.getHeight(), s.getCenterX(), s.getCenterY() };
+	}
+
+	private static List<double[]> memberCorners(ShapeGroup g) {
+		ArrayList<double[]> corners = new ArrayList<>();
+		for (MyShape member : g.getMemberView()) {
+			corners.add(corners(member));
+		}
+		return corners;
+	}
+
+	private static void assertSameCorners(List<double[]> expected, List<double[]> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertArrayEquals(expected.get(i), actual.get(i), 1e-9);
+		}
+	}
+
+	private static double[] moved(double[] corners, double dx, double dy) {
+		return new double[] { corners[0] + dx, corners[1] + dy, corners[2], corners[3], corners[4] + dx, corners[5] + dy };
+	}
+
+	@Test
+	void moveOnlyChangesTheOffset() {
+		double[] bounds = corners(group);
+		List<double[]> members = memberCorners(group);
+
+		group.move(10, -20);
+		group.move(5, 5);
+
+		assertEquals(15, group.getOffsetX());
+		assertEquals(-15, group.getOffsetY());
+		assertArrayEquals(moved(bounds, 15, -15), corners(group), 1e-9);
+		assertSameCorners(members, memberCorners(group));
+	}
+
+	@Test
+	void getMembersPushesTheOffsetDown() {
+		List<double[]> members = memberCorners(group);
+		List<double[]> nestedMembers = memberCorners(nested);
+		group.move(10, -20);
+		double[] bounds = corners(group);
+
+		group.getMembers();
+		assertEquals(0, group.getOffsetX());
+		assertEquals(0, group.getOffsetY());
+		assertArrayEquals(bounds, corners(group), 1e-9);
+		List<double[]> pushed = memberCorners(group);
+		for (int i = 0; i < members.size(); i++) {
+			assertArrayEquals(moved(members.get(i), 10, -20), pushed.get(i), 1e-9);
+		}
+
+		// the nested group only takes the offset over, its own members stay as they are
+		assertEquals(13, nested.getOffsetX());
+		assertEquals(-16, nested.getOffsetY());
+		assertSameCorners(nestedMembers, memberCorners(nested));
+	}
+
+	@Test
+	void movedGroupIsHitWhereItIsDrawn() {
+		Rect rect = new Rect(0, 0, 10, 10);
+		rect.setFilled(true);
+		Oval oval = new Oval(40, 0, 50, 10);
+		oval.setFilled(true);
+		ShapeGroup inner = new ShapeGroup();
+		inner.addMember(oval);
+		inner.move(0, 100);
+		ShapeGroup outer = new ShapeGroup();
+		outer.addMember(rect);
+		outer.addMember(inner);
+		outer.move(100, 0);
+
+		assertTrue(outer.hitTest(105, 5, 1));
+		assertFalse(outer.hitTest(5, 5, 1));
+		assertTrue(outer.hitTest(145, 105, 1));
+		assertFalse(outer.hitTest(45, 5, 1));
+		assertFalse(outer.hitTest(145, 5, 1));
+	}
+
+	@Test
+	void printingDoesNotMoveTheMembers() {
+		group.move(10, -20);
+		List<double[]> members = memberCorners(group);
+		String text = group.toString();
+
+		assertEquals(10, group.getOffsetX());
+		assertEquals(-20, group.getOffsetY());
+		assertSameCorners(members, memberCorners(group));
+
+		// and prints the members where they are drawn
+		group.getMembers();
+		assertEquals(group.toString(), text);
+	}
+
+	@Test
+	void newMemberStaysWhereItIs() {
+		group.move(10, -20);
+		Rect added = new Rect(500, 500, 520, 530);
+		double[] corners = corners(added);
+		List<double[]> members = memberCorners(group);
+		group.addMember(added);
+
+		assertArrayEquals(corners, corners(added), 1e-9);
+		List<double[]> pushed = memberCorners(group);
+		for (int i = 0; i < members.size(); i++) {
+			assertArrayEquals(moved(members.get(i), 10, -20), pushed.get(i), 1e-9);
+		}
+		assertEquals(520, group.getULX() + group.getWidth(), 1e-9);
+		assertEquals(530, group.getULY() + group.getHeight(), 1e-9);
+
+		group.removeMember(added);
+		assertTrue(group.getULX() + group.getWidth() < 500);
+	}
+
+	@Test
+	void recordFollowsTheOffset() {
+		String text = Drawings.text(List.of(group));
+		assertEquals(text, Drawings.text(List.of(group.record().toShape())));
+
+		group.move(10, -20);
+		text = Drawings.text(List.of(group));
+		assertEquals(text, Drawings.text(List.of(group.record().toShape())));
+
+		group.getMembers();
+		assertEquals(text, Drawings.text(List.of(group.record().toShape())));
+	}
+
+	@Test
+	void attachedGroupMovesInTheIndex() {
+		ShapeStore store = new ShapeStore();
+		ShapeIndex index = new ShapeIndex(store);
+		store.attach(group);
+		index.insert(group);
+		double[] bounds = corners(group);
+
+		group.move(1000, 1000);
+		assertEquals(List.of(group), index.search(bounds[0] + 1000, bounds[1] + 1000, bounds[2], bounds[3]));
+		assertTrue(index.search(bounds[0], bounds[1], bounds[2], bounds[3]).isEmpty());
+	}
+}
@@ -0,0 +1,120 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.geom.Line2D;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that lines, rects and ovals are picked by their exact geometry rather than their bounding boxes,
+ * and that ShapeCanvas.hitTest finds the topmost shape the exact test hits.
+ */
+class ShapeHitTest {
+
+	private static final double TOLERANCE = 2;
+
+	private static MyShape filled(MyShape s) {
+		s.setFilled(true);
+		return s;
+	}
+
+	@Test
+	void lineIsHitNearTheSegmentOnly() {
+		Line diagonal = new Line(0, 0, 100, 100);
+		assertTrue(diagonal.hitTest(50, 50, TOLERANCE));
+		assertTrue(diagonal.hitTest(51.4, 48.6, TOLERANCE));
+		// inside the bounding box, but far from the line
+		assertFalse(diagonal.hitTest(60, 40, TOLERANCE));
+		// around the ends the tolerance is a circle
+		assertTrue(diagonal.hitTest(101.4, 101.4, TOLERANCE));
+		assertFalse(diagonal.hitTest(101.5, 101.5, TOLERANCE));
+
+		Line dot = new Line(5, 5, 5, 5);
+		assertTrue(dot.hitTest(6, 6, TOLERANCE));
+		assertFalse(dot.hitTest(7, 7, TOLERANCE));
+	}
+
+	@Test
+	void lineMatchesTheDistanceToTheSegment() {
+		Random random = new Random(23);
+		for (int i = 0; i < 10000; i++) {
+			double x1 = random.nextInt(100), y1 = random.nextInt(100), x2 = random.nextInt(100), y2 = random.nextInt(100);
+			double x = random.nextDouble() * 120 - 10, y = random.nextDouble() * 120 - 10;
+			double distance = Line2D.ptSegDist(x1, y1, x2, y2, x, y);
+			if (Math.abs(distance - TOLERANCE) < 1e-9) {
+				continue;
+			}
+			assertEquals(distance <= TOLERANCE, new Line(x1, y1, x2, y2).hitTest(x, y, TOLERANCE),
+					x1 + " " + y1 + " " + x2 + " " + y2 + " at " + x + " " + y);
+		}
+	}
+
+	@Test
+	void outlinedRectIsHitNearItsEdgesOnly() {
+		Rect rect = new Rect(10, 10, 110, 60);
+		assertTrue(rect.hitTest(10, 35, TOLERANCE));
+		assertTrue(rect.hitTest(8.1, 35, TOLERANCE));
+		assertTrue(rect.hitTest(11.9, 35, TOLERANCE));
+		assertTrue(rect.hitTest(60, 61.9, TOLERANCE));
+		assertFalse(rect.hitTest(7.9, 35, TOLERANCE));
+		assertFalse(rect.hitTest(12.1, 35, TOLERANCE));
+		assertFalse(rect.hitTest(60, 35, TOLERANCE));
+
+		MyShape solid = filled(new Rect(10, 10, 110, 60));
+		assertTrue(solid.hitTest(60, 35, TOLERANCE));
+		assertTrue(solid.hitTest(8.1, 35, TOLERANCE));
+		assertFalse(solid.hitTest(7.9, 35, TOLERANCE));
+	}
+
+	@Test
+	void ovalIsHitByItsEllipse() {
+		Oval oval = new Oval(0, 0, 200, 100);
+		assertTrue(oval.hitTest(0, 50, TOLERANCE));
+		assertTrue(oval.hitTest(1.9, 50, TOLERANCE));
+		assertTrue(oval.hitTest(100, 101.9, TOLERANCE));
+		assertFalse(oval.hitTest(2.1, 50, TOLERANCE));
+		assertFalse(oval.hitTest(100, 50, TOLERANCE));
+		// the corners of the bounding box are outside the ellipse
+		assertFalse(oval.hitTest(1, 1, TOLERANCE));
+
+		MyShape solid = filled(new Oval(0, 0, 200, 100));
+		assertTrue(solid.hitTest(100, 50, TOLERANCE));
+		assertTrue(solid.hitTest(-1.9, 50, TOLERANCE));
+		assertFalse(solid.hitTest(5, 5, TOLERANCE));
+
+		// an oval thinner than the tolerance is hit all the way through
+		assertTrue(new Oval(0, 0, 100, 2).hitTest(50, 1, TOLERANCE));
+	}
+
+	@Test
+	void canvasFindsTheTopmostShapeHit() {
+		ShapeCanvas canvas = new ShapeCanvas(200, 200);
+		MyShape outline = new Rect(0, 0, 100, 100), inner = filled(new Oval(40, 40, 60, 60));
+		canvas.addShape(outline);
+		canvas.addShape(inner);
+		assertSame(inner, canvas.hitTest(50, 50, TOLERANCE));
+		assertSame(outline, canvas.hitTest(0, 50, TOLERANCE));
+		// inside the outline, but on neither shape
+		assertNull(canvas.hitTest(20, 20, TOLERANCE));
+
+		// on a random drawing the index finds what a scan of every shape does
+		ArrayList<MyShape> shapes = Drawings.randomDrawing(new Random(29), 2000);
+		canvas.addShapes(shapes);
+		Random random = new Random(31);
+		for (int i = 0; i < 1000; i++) {
+			double x = random.nextDouble() * 1100 - 50, y = random.nextDouble() * 1100 - 50;
+			MyShape expected = null;
+			for (MyShape s : canvas.getShapes()) {
+				if (s.hitTest(x, y, TOLERANCE)) {
+					expected = s;
+				}
+			}
+			assertSame(expected, canvas.hitTest(x, y, TOLERANCE), x + " " + y);
+		}
+	}
+}
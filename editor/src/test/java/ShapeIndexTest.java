@@ -0,0 +1,116 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the queries of ShapeIndex against a scan of every shape, on random drawings that are changed
+ * after they were indexed, so that the tree is checked after inserts, moves and removals alike.
+ */
+class ShapeIndexTest {
+
+	private Random random = new Random(1234);
+	private ShapeStore store = new ShapeStore();
+	private ShapeIndex index = new ShapeIndex(store);
+	// the indexed shapes in drawing order
+	private ArrayList<MyShape> shapes = new ArrayList<>();
+
+	private void add(int n) {
+		for (MyShape s : Drawings.randomDrawing(random, n)) {
+			store.attach(s);
+			index.insert(s);
+			shapes.add(s);
+		}
+	}
+
+	private void moveAndRemoveSome() {
+		for (int i = 0; i < shapes.size() / 4; i++) {
+			shapes.get(random.nextInt(shapes.size())).move(random.nextInt(400) - 200, random.nextInt(400) - 200);
+		}
+		for (int i = 0; i < shapes.size() / 10; i++) {
+			MyShape s = shapes.remove(random.nextInt(shapes.size()));
+			index.remove(s);
+			store.detach(s);
+		}
+	}
+
+	private ArrayList<MyShape> scan(double x, double y, double w, double h) {
+		ArrayList<MyShape> found = new ArrayList<>();
+		for (MyShape s : shapes) {
+			if (s.getULX() <= x + w && s.getULY() <= y + h && s.getULX() + s.getWidth() >= x && s.getULY() + s.getHeight() >= y) {
+				found.add(s);
+			}
+		}
+		return found;
+	}
+
+	private static double distance(MyShape s, double x, double y) {
+		return Math.hypot(s.getCenterX() - x, s.getCenterY() - y);
+	}
+
+	private void checkSearch() {
+		for (int i = 0; i < 200; i++) {
+			double x = random.nextInt(1200) - 100, y = random.nextInt(1200) - 100;
+			double w = random.nextInt(300), h = random.nextInt(300);
+			assertEquals(scan(x, y, w, h), index.search(x, y, w, h), "search " + x + " " + y + " " + w + " " + h);
+		}
+	}
+
+	private void checkNearest() {
+		for (int i = 0; i < 200; i++) {
+			double x = random.nextDouble() * 1200 - 100, y = random.nextDouble() * 1200 - 100;
+			double best = Double.POSITIVE_INFINITY;
+			for (MyShape s : shapes) {
+				best = Math.min(best, distance(s, x, y));
+			}
+			MyShape found = index.nearest(x, y);
+			assertTrue(index.contains(found));
+			assertEquals(best, distance(found, x, y), 1e-9, "nearest " + x + " " + y);
+		}
+	}
+
+	@Test
+	void searchFindsTheIntersectingShapesInDrawingOrder() {
+		add(3000);
+		checkSearch();
+	}
+
+	@Test
+	void searchFollowsMovesAndRemovals() {
+		add(3000);
+		moveAndRemoveSome();
+		add(500);
+		checkSearch();
+	}
+
+	@Test
+	void nearestFindsTheClosestCenter() {
+		add(3000);
+		checkNearest();
+	}
+
+	@Test
+	void nearestFollowsMovesAndRemovals() {
+		add(3000);
+		moveAndRemoveSome();
+		checkNearest();
+	}
+
+	@Test
+	void emptyIndexFindsNothing() {
+		assertNull(index.nearest(0, 0));
+		assertTrue(index.search(-1e9, -1e9, 2e9, 2e9).isEmpty());
+
+		add(10);
+		for (MyShape s : new ArrayList<>(shapes)) {
+			index.remove(s);
+		}
+		shapes.clear();
+		assertNull(index.nearest(0, 0));
+		assertEquals(0, index.size());
+	}
+}
@@ -0,0 +1,129 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the persistent tree of ShapeSnapshot against a sorted map, and that diff finds exactly the keys
+ * whose records differ between two versions, however many records the versions share.
+ */
+class ShapeSnapshotTest {
+
+	private Random random = new Random(99);
+
+	private ShapeRecord record() {
+		return ShapeRecord.of(Drawings.randomShape(random, 1000));
+	}
+
+	private static void assertMatches(Map<Long, ShapeRecord> expected, ShapeSnapshot snapshot) {
+		assertEquals(expected.size(), snapshot.size());
+		ArrayList<Long> keys = new ArrayList<>();
+		ArrayList<ShapeRecord> records = new ArrayList<>();
+		snapshot.forEachKeyed((r, key) -> {
+			keys.add(key);
+			records.add(r);
+		});
+		assertEquals(new ArrayList<>(expected.keySet()), keys);
+		assertEquals(new ArrayList<>(expected.values()), records);
+	}
+
+	/**
+	 * Changes a version the way edits do: puts new records, some under new keys, and removes others.
+	 */
+	private ShapeSnapshot change(ShapeSnapshot snapshot, TreeMap<Long, ShapeRecord> map, int changes, long nextKey) {
+		ArrayList<Long> keys = new ArrayList<>(map.keySet());
+		for (int i = 0; i < changes; i++) {
+			int op = random.nextInt(3);
+			if (op == 0 || keys.isEmpty()) {
+				long key = nextKey + i;
+				ShapeRecord r = record();
+				map.put(key, r);
+				snapshot = snapshot.with(key, r);
+			}
+			else if (op == 1) {
+				long key = keys.get(random.nextInt(keys.size()));
+				ShapeRecord r = record();
+				map.put(key, r);
+				snapshot = snapshot.with(key, r);
+			}
+			else {
+				long key = keys.remove(random.nextInt(keys.size()));
+				map.remove(key);
+				snapshot = snapshot.without(key);
+			}
+		}
+		return snapshot;
+	}
+
+	private static List<String> expectedDiff(Map<Long, ShapeRecord> a, Map<Long, ShapeRecord> b) {
+		TreeMap<Long, String> diff = new TreeMap<>();
+		for (Map.Entry<Long, ShapeRecord> e : a.entrySet()) {
+			if (b.get(e.getKey()) != e.getValue()) {
+				diff.put(e.getKey(), e.getKey() + " " + e.getValue() + " " + b.get(e.getKey()));
+			}
+		}
+		for (Map.Entry<Long, ShapeRecord> e : b.entrySet()) {
+			if (!a.containsKey(e.getKey())) {
+				diff.put(e.getKey(), e.getKey() + " null " + e.getValue());
+			}
+		}
+		return new ArrayList<>(diff.values());
+	}
+
+	private static List<String> diff(ShapeSnapshot a, ShapeSnapshot b) {
+		ArrayList<String> diff = new ArrayList<>();
+		a.diff(b, (key, before, after) -> diff.add(key + " " + before + " " + after));
+		return diff;
+	}
+
+	@Test
+	void versionsMatchASortedMap() {
+		TreeMap<Long, ShapeRecord> map = new TreeMap<>();
+		ShapeSnapshot snapshot = ShapeSnapshot.EMPTY;
+		for (int round = 0; round < 20; round++) {
+			ShapeSnapshot before = snapshot;
+			TreeMap<Long, ShapeRecord> old = new TreeMap<>(map);
+			snapshot = change(snapshot, map, 200, round * 1000L);
+			assertMatches(map, snapshot);
+			// the earlier version is left as it was
+			assertMatches(old, before);
+		}
+	}
+
+	@Test
+	void builtSnapshotMatchesItsRecords() {
+		int n = 1000;
+		long[] keys = new long[n];
+		ShapeRecord[] records = new ShapeRecord[n];
+		TreeMap<Long, ShapeRecord> map = new TreeMap<>();
+		for (int i = 0; i < n; i++) {
+			keys[i] = 3L * i + 1;
+			records[i] = record();
+			map.put(keys[i], records[i]);
+		}
+		ShapeSnapshot snapshot = ShapeSnapshot.build(keys, records, n, 1);
+		assertMatches(map, snapshot);
+		assertSame(records[500], snapshot.get(keys[500]));
+	}
+
+	@Test
+	void diffFindsTheChangedKeys() {
+		TreeMap<Long, ShapeRecord> map = new TreeMap<>();
+		ShapeSnapshot base = change(ShapeSnapshot.EMPTY, map, 2000, 0);
+		for (int changes : new int[] { 0, 1, 5, 50, 500, 5000 }) {
+			TreeMap<Long, ShapeRecord> other = new TreeMap<>(map);
+			ShapeSnapshot next = change(base, other, changes, 10000L * (changes + 1));
+
+			assertEquals(expectedDiff(map, other), diff(base, next), changes + " changes");
+			assertEquals(expectedDiff(other, map), diff(next, base), changes + " changes, backwards");
+		}
+		assertEquals(expectedDiff(map, new TreeMap<>()), diff(base, ShapeSnapshot.EMPTY));
+		assertEquals(expectedDiff(new TreeMap<>(), map), diff(ShapeSnapshot.EMPTY, base));
+	}
+}
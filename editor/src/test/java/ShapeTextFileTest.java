@@ -0,0 +1,65 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that ShapeTextFile reads drawings larger than one chunk the same as the sequential reader,
+ * with the groups that a chunk boundary falls into put back together.
+ */
+class ShapeTextFileTest {
+
+	// the first chunk of a file is one megabyte
+	private static final int CHUNK_SIZE = 1 << 20;
+
+	@TempDir
+	File dir;
+
+	private File write(String text) throws IOException {
+		File file = new File(dir, "drawing.txt");
+		Files.write(file.toPath(), text.getBytes(StandardCharsets.ISO_8859_1));
+		return file;
+	}
+
+	@Test
+	void drawingReadsBackTheSameInChunks() throws IOException {
+		String text = Drawings.text(Drawings.randomDrawing(new Random(11), 100000));
+		assertTrue(text.length() > 3 * CHUNK_SIZE);
+
+		assertEquals(text, Drawings.text(ShapeTextFile.read(write(text))));
+	}
+
+	@Test
+	void groupAcrossChunksIsPutTogether() throws IOException {
+		Random random = new Random(12);
+		ShapeGroup group = Drawings.randomGroup(random, 1000, 60000);
+		group.addMember(Drawings.randomGroup(random, 1000, 3));
+		List<MyShape> shapes = List.of(Drawings.randomShape(random, 1000), group, Drawings.randomShape(random, 1000));
+		String text = Drawings.text(shapes);
+		assertTrue(text.length() > CHUNK_SIZE);
+
+		ArrayList<MyShape> read = ShapeTextFile.read(write(text));
+		assertEquals(3, read.size());
+		assertEquals(60001, ((ShapeGroup) read.get(1)).size());
+		assertEquals(text, Drawings.text(read));
+	}
+
+	@Test
+	void wrongCountIsRejected() throws IOException {
+		String text = Drawings.text(Drawings.randomDrawing(new Random(13), 100));
+		String body = text.substring(text.indexOf('\n'));
+
+		assertThrows(IOException.class, () -> ShapeTextFile.read(write("101" + body)));
+		assertThrows(IOException.class, () -> ShapeTextFile.read(write("99" + body)));
+	}
+}
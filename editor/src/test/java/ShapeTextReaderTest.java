@@ -0,0 +1,81 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import javafx.scene.paint.Color;
+
+/**
+ * Checks that ShapeTextReader reads back the drawings ShapeTextWriter writes, parses numbers as
+ * Double.parseDouble does, and rejects malformed text with an IOException.
+ */
+class ShapeTextReaderTest {
+
+	private static void assertSameShape(MyShape expected, MyShape actual) {
+		assertEquals(expected.getClass(), actual.getClass());
+		assertEquals(expected.getULX(), actual.getULX(), 1e-9);
+		assertEquals(expected.getULY(), actual.getULY(), 1e-9);
+		assertEquals(expected.getWidth(), actual.getWidth(), 1e-9);
+		assertEquals(expected.getHeight(), actual.getHeight(), 1e-9);
+		if (expected instanceof ShapeGroup) {
+			List<MyShape> members = ((ShapeGroup) expected).getMembers(), read = ((ShapeGroup) actual).getMembers();
+			assertEquals(members.size(), read.size());
+			for (int i = 0; i < members.size(); i++) {
+				assertSameShape(members.get(i), read.get(i));
+			}
+			return;
+		}
+		assertEquals(expected.isFilled(), actual.isFilled());
+		Color c = expected.getColor(), d = actual.getColor();
+		assertEquals(c.getRed(), d.getRed(), 1e-9);
+		assertEquals(c.getGreen(), d.getGreen(), 1e-9);
+		assertEquals(c.getBlue(), d.getBlue(), 1e-9);
+	}
+
+	@Test
+	void drawingReadsBackTheSame() throws IOException {
+		ArrayList<MyShape> shapes = Drawings.randomDrawing(new Random(7), 500);
+		String text = Drawings.text(shapes);
+		ArrayList<MyShape> read = Drawings.read(text);
+
+		assertEquals(shapes.size(), read.size());
+		for (int i = 0; i < shapes.size(); i++) {
+			assertSameShape(shapes.get(i), read.get(i));
+		}
+		assertEquals(text, Drawings.text(read));
+	}
+
+	@Test
+	void numbersAreParsedLikeParseDouble() throws IOException {
+		Random random = new Random(17);
+		StringBuilder text = new StringBuilder("0 -0 0.5 -12.250 +3 1e3 2.5E-4 123456789012345678 0.1234567890123456789\n");
+		for (int i = 0; i < 1000; i++) {
+			double d = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(12));
+			text.append(d).append(' ').append(String.format(Locale.ROOT, "%.3f", d)).append('\n');
+		}
+		String[] tokens = text.toString().trim().split("\\s+");
+
+		ShapeTextReader reader = new ShapeTextReader(new StringReader(text.toString()));
+		for (String token : tokens) {
+			assertEquals(Double.parseDouble(token), reader.nextDouble(), token);
+		}
+		assertEquals(false, reader.hasNext());
+	}
+
+	@Test
+	void malformedTextIsRejected() {
+		// fewer shapes than counted
+		assertThrows(IOException.class, () -> Drawings.read("2\nrect 1 2 3 4 true 0 0 0\n"));
+		// a coordinate that is not a number
+		assertThrows(IOException.class, () -> Drawings.read("1\nrect 1 2 x 4 true 0 0 0\n"));
+		// a group with fewer members than counted
+		assertThrows(IOException.class, () -> Drawings.read("1\nShapeGroup 2 0 0 9 9\nline 1 2 3 4 false 0 0 0\n"));
+	}
+}
@@ -0,0 +1,89 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javafx.scene.paint.Color;
+
+/**
+ * Checks that ShapeTextWriter writes the same text as the toString of the shapes, which the text files
+ * were written with before, and that moved groups are written where they are drawn without moving them.
+ */
+class ShapeTextWriterTest {
+
+	private Locale locale;
+
+	@BeforeEach
+	void useRootLocale() {
+		// toString formats with the default locale, the writer always with a '.'
+		locale = Locale.getDefault();
+		Locale.setDefault(Locale.ROOT);
+	}
+
+	@AfterEach
+	void restoreLocale() {
+		Locale.setDefault(locale);
+	}
+
+	private static String toStrings(List<MyShape> shapes) {
+		StringBuilder text = new StringBuilder().append(shapes.size()).append('\n');
+		for (MyShape s : shapes) {
+			text.append(s).append('\n');
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Moves the corners of a shape off whole numbers, to halves as often as not, so that rounding is checked.
+	 */
+	private static void roughen(Random random, MyShape s) {
+		if (s instanceof ShapeGroup) {
+			for (MyShape member : ((ShapeGroup) s).getMemberView()) {
+				roughen(random, member);
+			}
+			return;
+		}
+		double dx = random.nextBoolean() ? 0.5 : random.nextDouble(), dy = random.nextBoolean() ? -0.5 : -random.nextDouble();
+		s.setP1(s.getX1() + dx, s.getY1() + dy);
+		s.setP2(s.getX2() + dx, s.getY2() + dy);
+		s.setColor(Color.color(random.nextDouble(), random.nextDouble(), random.nextDouble()));
+	}
+
+	@Test
+	void textMatchesToString() throws IOException {
+		Random random = new Random(21);
+		ArrayList<MyShape> shapes = Drawings.randomDrawing(random, 2000);
+		for (MyShape s : shapes) {
+			roughen(random, s);
+		}
+		assertEquals(toStrings(shapes), Drawings.text(shapes));
+	}
+
+	@Test
+	void movedGroupIsWrittenWhereItIsDrawn() throws IOException {
+		ShapeGroup group = Drawings.randomGroup(new Random(8), 100, 4);
+		ShapeGroup nested = Drawings.randomGroup(new Random(9), 100, 2);
+		nested.move(3, 4);
+		group.addMember(nested);
+		group.move(10, -20);
+		String text = Drawings.text(List.of(group));
+
+		// writing leaves the offset pending
+		assertEquals(10, group.getOffsetX());
+		assertEquals(-20, group.getOffsetY());
+		assertEquals(toStrings(List.of(group)), text);
+		assertEquals(text, Drawings.text(Drawings.read(text)));
+
+		// pushing the offsets into the members does not change where they are drawn
+		group.getMembers();
+		nested.getMembers();
+		assertEquals(text, Drawings.text(List.of(group)));
+	}
+}
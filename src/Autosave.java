@@ -0,0 +1,452 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Autosave keeps a copy of the drawing on disk that survives a crash of the editor, in two files of a directory:
+ * a base file with the whole drawing and a journal that is only ever appended to.
+ * <p>
+ * After every edit the canvas calls checkpoint. It brings the ShapeDocument snapshot up to date, which costs
+ * only the shapes the edit changed, and hands the records put into the snapshot and the keys taken out of it
+ * to a background thread. That thread appends them to the journal as one frame and forces it to the disk,
+ * so saving an edit costs the size of the edit and not the size of the drawing, and the editor never waits
+ * for the disk. A group moved as a whole is journaled as its new position only, without its members.
+ * Once the journal has grown larger than the base, or an edit changed most of the drawing,
+ * the thread writes the snapshot as a new base instead and empties the journal.
+ * <p>
+ * Each base has a generation number, and each journal frame carries the generation it applies to and a checksum.
+ * recover reads the base and replays the frames of its generation in order, up to the first one that was torn
+ * or damaged by a crash, so it returns the drawing as it was after the last edit that reached the disk.
+ * <p>
+ * An Autosave holds a lock on the journal from the start, so the files it recovers cannot be those of another
+ * editor that is still running and saving into the same directory.
+ */
+public class Autosave {
+
+	private static final String BASE_FILE = "autosave.base";
+	private static final String JOURNAL_FILE = "autosave.journal";
+	private static final int BASE_MAGIC = 0x53454231; // "SEB1"
+
+	private static final byte PUT = 1, REMOVE = 2, MOVE = 3;
+
+	/** The journal is never compacted below this size, so small drawings are not written again after every edit. */
+	private static final long MIN_COMPACT_BYTES = 1L << 20;
+	/** The largest frame recover accepts, against a length damaged by a crash. */
+	private static final int MAX_FRAME_BYTES = 1 << 30;
+
+	private ShapeDocument document;
+	private File dir;
+	private ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "shape-autosave");
+		t.setDaemon(true);
+		return t;
+	});
+
+	// the changes of the snapshot since the last checkpoint, a null record being a removal
+	private long[] keys = new long[64];
+	private ShapeRecord[] records = new ShapeRecord[64];
+	private boolean[] moves = new boolean[64];
+	private int count;
+	private boolean cleared;
+
+	// only used on the writer thread
+	private FileChannel journal;
+	private long generation;
+	private long baseBytes;
+	private boolean compact = true;
+
+	/**
+	 * Constructs an Autosave that saves the drawing of a document into a directory,
+	 * starting with a new base at the first checkpoint. The files in the directory are left alone until then,
+	 * so that what an earlier editor left in them can still be recovered.
+	 *
+	 * @param document The document of the canvas.
+	 * @param dir      The directory of the files, which is created if needed.
+	 * @throws IOException If the journal cannot be opened, or another editor is saving into the directory.
+	 */
+	public Autosave(ShapeDocument document, File dir) throws IOException {
+		this.document = document;
+		this.dir = dir;
+		Files.createDirectories(dir.toPath());
+		journal = FileChannel.open(new File(dir, JOURNAL_FILE).toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		boolean locked;
+		try {
+			locked = journal.tryLock() != null;
+		}
+		catch (OverlappingFileLockException e) {
+			// held by another Autosave of this process
+			locked = false;
+		}
+		if (!locked) {
+			journal.close();
+			throw new IOException(dir + " is used by another editor");
+		}
+		generation = readGeneration(new File(dir, BASE_FILE));
+
+		// the shapes already in the snapshot are in no journal, so the first checkpoint writes a base
+		document.snapshot();
+		document.setListener(new ShapeDocument.Listener() {
+			@Override
+			public void put(long key, ShapeRecord previous, ShapeRecord record) {
+				add(key, record, record.isMoveOf(previous));
+			}
+
+			@Override
+			public void removed(long key) {
+				add(key, null, false);
+			}
+
+			@Override
+			public void cleared() {
+				count = 0;
+				cleared = true;
+			}
+		});
+		cleared = true;
+	}
+
+	/**
+	 * Returns the directory the editor autosaves into by default.
+	 *
+	 * @return The directory .shape-editor in the home directory of the user.
+	 */
+	public static File defaultDirectory() {
+		return new File(System.getProperty("user.home"), ".shape-editor");
+	}
+
+	/**
+	 * Notes a change of the snapshot.
+	 */
+	private void add(long key, ShapeRecord record, boolean move) {
+		if (count == keys.length) {
+			keys = Arrays.copyOf(keys, count * 2);
+			records = Arrays.copyOf(records, count * 2);
+			moves = Arrays.copyOf(moves, count * 2);
+		}
+		keys[count] = key;
+		moves[count] = move;
+		records[count++] = record;
+	}
+
+	/**
+	 * Saves the changes of the drawing since the last checkpoint in the background.
+	 * Must be called on the thread that edits the drawing.
+	 */
+	public void checkpoint() {
+		ShapeSnapshot snapshot = document.snapshot();
+		if (count == 0 && !cleared) {
+			return;
+		}
+		long[] k = Arrays.copyOf(keys, count);
+		ShapeRecord[] r = Arrays.copyOf(records, count);
+		boolean[] m = Arrays.copyOf(moves, count);
+		boolean full = cleared || count > snapshot.size() / 2;
+		count = 0;
+		cleared = false;
+		writer.execute(() -> write(snapshot, k, r, m, full));
+	}
+
+	/**
+	 * Waits until the checkpoints made so far have been written.
+	 */
+	void flush() {
+		try {
+			writer.submit(() -> { }).get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Finishes the pending writes and removes the files, for when the editor exits normally.
+	 */
+	public void close() {
+		document.setListener(null);
+		writer.shutdown();
+		try {
+			writer.awaitTermination(1, TimeUnit.MINUTES);
+			journal.close();
+			Files.deleteIfExists(new File(dir, JOURNAL_FILE).toPath());
+			Files.deleteIfExists(new File(dir, BASE_FILE).toPath());
+		}
+		catch (IOException | InterruptedException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Saves one checkpoint, on the writer thread: as a journal frame, or as a new base
+	 * when that is cheaper in the long run or the journal cannot be trusted.
+	 */
+	private void write(ShapeSnapshot snapshot, long[] k, ShapeRecord[] r, boolean[] m, boolean full) {
+		try {
+			if (compact || full) {
+				writeBase(snapshot);
+				return;
+			}
+			append(k, r, m);
+			if (journal.size() > Math.max(MIN_COMPACT_BYTES, baseBytes)) {
+				writeBase(snapshot);
+			}
+		}
+		catch (IOException e) {
+			// the next checkpoint starts over with a new base
+			compact = true;
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Appends a frame to the journal: its length and checksum, then the generation and the changes.
+	 * A moved group is written as where it is now, the record it had before being in the journal or the base.
+	 */
+	private void append(long[] k, ShapeRecord[] r, boolean[] m) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(0);
+		out.writeInt(0);
+		out.writeLong(generation);
+		out.writeInt(k.length);
+		for (int i = 0; i < k.length; i++) {
+			out.writeByte(r[i] == null ? REMOVE : m[i] ? MOVE : PUT);
+			out.writeLong(k[i]);
+			if (r[i] == null) {
+				continue;
+			}
+			if (m[i]) {
+				r[i].writeMoveTo(out);
+			}
+			else {
+				r[i].writeTo(out);
+			}
+		}
+		out.flush();
+
+		ByteBuffer frame = ByteBuffer.wrap(bytes.toByteArray());
+		CRC32 crc = new CRC32();
+		crc.update(frame.array(), 8, frame.limit() - 8);
+		frame.putInt(0, frame.limit() - 8);
+		frame.putInt(4, (int) crc.getValue());
+
+		long position = journal.size();
+		while (frame.hasRemaining()) {
+			position += journal.write(frame, position);
+		}
+		journal.force(false);
+	}
+
+	/**
+	 * Writes the snapshot as the base of the next generation and empties the journal.
+	 * The base is written to a temporary file that then replaces the old one, so there is always a whole base.
+	 */
+	private void writeBase(ShapeSnapshot snapshot) throws IOException {
+		File tmp = new File(dir, BASE_FILE + ".tmp");
+		FileOutputStream file = new FileOutputStream(tmp);
+		CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file, 1 << 16), new CRC32());
+		DataOutputStream out = new DataOutputStream(checked);
+		try {
+			out.writeInt(BASE_MAGIC);
+			out.writeLong(generation + 1);
+			out.writeInt(snapshot.size());
+			IOException[] failure = new IOException[1];
+			snapshot.forEachKeyed((r, key) -> {
+				if (failure[0] == null) {
+					try {
+						out.writeLong(key);
+						r.writeTo(out);
+					}
+					catch (IOException e) {
+						failure[0] = e;
+					}
+				}
+			});
+			if (failure[0] != null) {
+				throw failure[0];
+			}
+			out.writeInt((int) checked.getChecksum().getValue());
+			out.flush();
+			file.getFD().sync();
+		}
+		finally {
+			out.close();
+		}
+		Files.move(tmp.toPath(), new File(dir, BASE_FILE).toPath(),
+				StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+		// the old frames belong to the old generation now, even if the editor crashes before they are gone
+		generation++;
+		baseBytes = new File(dir, BASE_FILE).length();
+		journal.truncate(0);
+		journal.force(false);
+		compact = false;
+	}
+
+	/**
+	 * Returns the generation of a base file.
+	 *
+	 * @return The generation, or 0 if there is no readable base.
+	 */
+	private static long readGeneration(File base) {
+		try (DataInputStream in = new DataInputStream(new FileInputStream(base))) {
+			return in.readInt() == BASE_MAGIC ? in.readLong() : 0;
+		}
+		catch (IOException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Reads back the drawing an editor left in the directory when it crashed. Must be called before the first
+	 * checkpoint, which replaces the files. The lock on the journal is held, so no other editor is writing them.
+	 *
+	 * @return The top-level shapes in drawing order, or null if there is nothing to recover.
+	 */
+	public ArrayList<MyShape> recover() {
+		ArrayList<MyShape> shapes = read(dir);
+		if (shapes != null) {
+			System.out.println("Recovered " + shapes.size() + " shapes from " + dir);
+		}
+		return shapes;
+	}
+
+	/**
+	 * Reads the drawing in the files of a directory.
+	 *
+	 * @param dir The directory the editor saved into.
+	 * @return The top-level shapes in drawing order, or null if there is nothing to read.
+	 */
+	private static ArrayList<MyShape> read(File dir) {
+		File base = new File(dir, BASE_FILE);
+		if (!base.exists()) {
+			return null;
+		}
+		TreeMap<Long, ShapeRecord> drawing = new TreeMap<>();
+		long generation;
+		try {
+			generation = readBase(base, drawing);
+			replay(new File(dir, JOURNAL_FILE), generation, drawing);
+		}
+		catch (IOException e) {
+			System.out.println("The autosave in " + dir + " could not be read");
+			e.printStackTrace();
+			return null;
+		}
+
+		ArrayList<MyShape> shapes = new ArrayList<>(drawing.size());
+		for (ShapeRecord r : drawing.values()) {
+			shapes.add(r.toShape());
+		}
+		return shapes;
+	}
+
+	/**
+	 * Reads a base file into a map from keys to records.
+	 *
+	 * @return The generation of the base.
+	 */
+	private static long readBase(File base, Map<Long, ShapeRecord> drawing) throws IOException {
+		CheckedInputStream checked = new CheckedInputStream(
+				new BufferedInputStream(new FileInputStream(base), 1 << 16), new CRC32());
+		try (DataInputStream in = new DataInputStream(checked)) {
+			if (in.readInt() != BASE_MAGIC) {
+				throw new IOException(base + " is not an autosave base");
+			}
+			long generation = in.readLong();
+			int n = in.readInt();
+			for (int i = 0; i < n; i++) {
+				long key = in.readLong();
+				drawing.put(key, ShapeRecord.readFrom(in));
+			}
+			int crc = (int) checked.getChecksum().getValue();
+			if (in.readInt() != crc) {
+				throw new IOException(base + " is damaged");
+			}
+			return generation;
+		}
+	}
+
+	/**
+	 * Applies the frames of a generation in a journal to a map from keys to records,
+	 * stopping at the first frame that is incomplete or does not match its checksum.
+	 */
+	private static void replay(File journal, long generation, Map<Long, ShapeRecord> drawing) throws IOException {
+		if (!journal.exists()) {
+			return;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journal), 1 << 16))) {
+			while (true) {
+				byte[] frame;
+				int crc;
+				try {
+					int length = in.readInt();
+					crc = in.readInt();
+					if (length < 12 || length > MAX_FRAME_BYTES) {
+						return;
+					}
+					frame = new byte[length];
+					in.readFully(frame);
+				}
+				catch (EOFException e) {
+					return;
+				}
+				CRC32 check = new CRC32();
+				check.update(frame);
+				if ((int) check.getValue() != crc) {
+					return;
+				}
+
+				DataInputStream ops = new DataInputStream(new ByteArrayInputStream(frame));
+				if (ops.readLong() != generation) {
+					continue;
+				}
+				int n = ops.readInt();
+				for (int i = 0; i < n; i++) {
+					byte op = ops.readByte();
+					long key = ops.readLong();
+					if (op == PUT) {
+						drawing.put(key, ShapeRecord.readFrom(ops));
+					}
+					else if (op == MOVE) {
+						drawing.put(key, ShapeRecord.readMove(ops, drawing.get(key)));
+					}
+					else if (op == REMOVE) {
+						drawing.remove(key);
+					}
+					else {
+						throw new IOException("unknown journal entry " + op);
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,69 @@
+import javafx.scene.input.MouseEvent;
+
+/**
+ * A tool for copying shapes on a ShapeCanvas.
+ */
+public class CopyTool extends Tool {
+
+    private MyShape shape, copy;
+    private double curX, curY, newX, newY, x0, y0;
+
+    /**
+     * Constructs a new CopyTool with the specified ShapeCanvas.
+     *
+     * @param sc The ShapeCanvas associated with this CopyTool.
+     */
+    public CopyTool(ShapeCanvas sc) {
+        super(sc);
+        on(MouseEvent.MOUSE_PRESSED, this::mousePressed);
+        on(MouseEvent.MOUSE_DRAGGED, this::mouseDragged);
+        on(MouseEvent.MOUSE_RELEASED, this::mouseReleased);
+    }
+    /**
+     * Handles mouse pressed event.
+     *
+     * @param e The MouseEvent representing the mouse pressed event.
+     */
+    private void mousePressed(MouseEvent e) {
+        x0 = canvas.toDrawingX(e.getX());
+        y0 = canvas.toDrawingY(e.getY());
+        shape = canvas.shapeAt(x0, y0);
+        copy = null;
+
+        if (shape != null) {
+            curX = x0;
+            curY = y0;
+            copy = (MyShape) shape.clone();
+            canvas.beginEdit();
+            canvas.addShape(copy);
+            canvas.beginDrag(copy);
+        }
+    }
+
+    /**
+     * Handles mouse dragged event.
+     *
+     * @param e The MouseEvent representing the mouse dragged event.
+     */
+    private void mouseDragged(MouseEvent e) {
+        if (copy != null) {
+            newX = canvas.toDrawingX(e.getX());
+            newY = canvas.toDrawingY(e.getY());
+            canvas.markDirty(copy);
+            copy.move(newX - curX, newY - curY);
+            canvas.markDirty(copy);
+            curX = newX;
+            curY = newY;
+            canvas.requestRepaint();
+        }
+    }
+    
+    private void mouseReleased(MouseEvent e) {
+    	if (copy != null) {
+    		shape = null;
+    		canvas.endEdit();
+    		canvas.endDrag();
+    		copy = null;
+    	}
+    }
+}
@@ -0,0 +1,32 @@
+import javafx.scene.input.MouseEvent;
+
+/**
+ * A tool for deleting the shape under the mouse on a ShapeCanvas.
+ */
+public class DeleteTool extends Tool {
+
+    /**
+     * Constructs a new DeleteTool with the specified ShapeCanvas.
+     *
+     * @param sc The ShapeCanvas associated with this DeleteTool.
+     */
+    public DeleteTool(ShapeCanvas sc) {
+        super(sc);
+        on(MouseEvent.MOUSE_CLICKED, this::mouseClicked);
+    }
+
+    /**
+     * Handles the mouse click to delete the shape under the mouse.
+     *
+     * @param e The MouseEvent representing the mouse clicked event.
+     */
+    private void mouseClicked(MouseEvent e) {
+        MyShape shape = canvas.shapeAt(canvas.toDrawingX(e.getX()), canvas.toDrawingY(e.getY()));
+        if(shape != null) {
+            canvas.beginEdit();
+            canvas.deleteShape(shape);
+            canvas.endEdit();
+        }
+        canvas.requestRepaint();
+    }
+}
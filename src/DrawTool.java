@@ -0,0 +1,76 @@
+/**
+ * The DrawTool class implements the tool for drawing shapes.
+ * It creates a new shape when the mouse is pressed and stretches it from the press to the pointer while
+ * the mouse is dragged. The kind of shape comes from a factory, such as Line::new, so one tool draws lines,
+ * ovals and rects alike.
+ */
+import java.util.function.Supplier;
+
+import javafx.scene.input.MouseEvent;
+
+
+public class DrawTool extends Tool {
+
+	private Supplier<MyShape> factory;
+	protected MyShape shape; 
+
+	/**
+	 * Constructs a DrawTool object with the specified ShapeCanvas.
+	 *
+	 * @param sc      The ShapeCanvas where shapes are drawn.
+	 * @param factory Creates the shape drawn by each press of the mouse.
+	 */
+	public DrawTool(ShapeCanvas sc, Supplier<MyShape> factory) {
+		super(sc);
+		this.factory = factory;
+		on(MouseEvent.MOUSE_PRESSED, this::mousePressed);
+		on(MouseEvent.MOUSE_DRAGGED, this::mouseDragged);
+		on(MouseEvent.MOUSE_RELEASED, this::mouseReleased);
+	}
+
+	/**
+	 * Handles the mouse pressed event.
+	 *
+	 * @param e The MouseEvent representing the mouse press event.
+	 */
+	protected void mousePressed(MouseEvent e) {
+		shape = factory.get();
+		canvas.beginEdit();
+		canvas.setCurrentShape(shape);
+		shape.setP1(canvas.toDrawingX(e.getX()), canvas.toDrawingY(e.getY()));
+		canvas.beginDrag(shape);
+	}
+
+	/**
+	 * Handles the mouse dragged event.
+	 *
+	 * @param e The MouseEvent representing the mouse drag event.
+	 */
+	protected void mouseDragged(MouseEvent e) {
+		if (shape != null) {
+			canvas.markDirty(shape);
+			shape.setP2(canvas.toDrawingX(e.getX()), canvas.toDrawingY(e.getY()));
+			canvas.markDirty(shape);
+			canvas.requestRepaint();
+		}
+	}
+
+	/**
+	 * Handles the mouse released event.
+	 *
+	 * @param e The MouseEvent representing the mouse release event.
+	 */
+	protected void mouseReleased(MouseEvent e) {
+		if (shape != null) {
+			// Ensure that P2 is not null to avoid null pointer exception
+			if (shape.getP2() == null) {
+				shape.setP2(shape.getP1());
+			}
+			canvas.addShape(shape);
+			canvas.endEdit();
+			canvas.setCurrentShape(null);
+			canvas.endDrag();
+			shape = null;
+		}
+	}
+}
@@ -0,0 +1,164 @@
+/**
+ * EditHistory keeps the edits that can be undone and redone in a ring buffer with a fixed number of slots.
+ * The done edits come first, followed by the undone edits that can still be redone.
+ * <p>
+ * An edit is kept as two versions of the drawing, the ShapeSnapshot before it and the one after it, and undoing or
+ * redoing it hands back the version to restore. The versions share all their unchanged records with each other, so an
+ * edit only holds on to what it changed, and no edit keeps a shape of the canvas alive.
+ * The history is bounded by the number of edits and by an estimate of that memory; when either limit is exceeded
+ * the oldest edits are dropped. A drag is recorded as one edit when it ends, so dragging does not fill the history,
+ * and each drag is undone on its own.
+ */
+public class EditHistory {
+
+	private ShapeSnapshot[] before;
+	private ShapeSnapshot[] after;
+	private long[] sizes;
+	private int head;
+	private int count;
+	private int done;
+	private long bytes;
+	private long maxBytes;
+
+	/**
+	 * Constructs an empty EditHistory.
+	 *
+	 * @param maxEdits The largest number of edits kept.
+	 * @param maxBytes The largest estimated number of bytes the kept edits may hold on to.
+	 */
+	public EditHistory(int maxEdits, long maxBytes) {
+		if (maxEdits < 1) {
+			throw new IllegalArgumentException("the history must keep at least one edit");
+		}
+		before = new ShapeSnapshot[maxEdits];
+		after = new ShapeSnapshot[maxEdits];
+		sizes = new long[maxEdits];
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Records a new edit. The edits that were undone can no longer be redone, and the oldest edits are dropped
+	 * when the history is over its limits. The newest edit is always kept.
+	 *
+	 * @param previous The version of the drawing before the edit.
+	 * @param next     The version of the drawing after the edit.
+	 * @param size     The estimated number of bytes the version after the edit holds on to of its own.
+	 */
+	public void add(ShapeSnapshot previous, ShapeSnapshot next, long size) {
+		// so that re-do can only be used right after un-do
+		while (count > done) {
+			drop(count - 1);
+			count--;
+		}
+
+		if (count == before.length) {
+			dropOldest();
+		}
+		int s = slot(count);
+		before[s] = previous;
+		after[s] = next;
+		sizes[s] = size;
+		bytes += size;
+		count++;
+		done++;
+
+		while (bytes > maxBytes && count > 1) {
+			dropOldest();
+		}
+	}
+
+	/**
+	 * Marks the newest done edit as undone.
+	 *
+	 * @return The version of the drawing before the edit, or null if there is nothing to undo.
+	 */
+	public ShapeSnapshot undo() {
+		if (done == 0) {
+			return null;
+		}
+		done--;
+		return before[slot(done)];
+	}
+
+	/**
+	 * Marks the oldest undone edit as done again.
+	 *
+	 * @return The version of the drawing after the edit, or null if there is nothing to redo.
+	 */
+	public ShapeSnapshot redo() {
+		if (done == count) {
+			return null;
+		}
+		done++;
+		return after[slot(done - 1)];
+	}
+
+	/**
+	 * Drops all edits.
+	 */
+	public void clear() {
+		while (count > 0) {
+			drop(count - 1);
+			count--;
+		}
+		head = 0;
+		done = 0;
+	}
+
+	/**
+	 * Returns the number of edits that can be undone.
+	 *
+	 * @return The number of done edits.
+	 */
+	public int undoCount() {
+		return done;
+	}
+
+	/**
+	 * Returns the number of edits that can be redone.
+	 *
+	 * @return The number of undone edits.
+	 */
+	public int redoCount() {
+		return count - done;
+	}
+
+	/**
+	 * Returns the estimated number of bytes the kept edits hold on to.
+	 *
+	 * @return The estimate in bytes.
+	 */
+	public long sizeInBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Drops the oldest edit, which is always a done one since the newest edit is never dropped.
+	 */
+	private void dropOldest() {
+		drop(0);
+		head = (head + 1) % before.length;
+		count--;
+		done--;
+	}
+
+	/**
+	 * Empties a position of the history, so that the versions it held can be collected.
+	 *
+	 * @param i The position, counted from the oldest edit.
+	 */
+	private void drop(int i) {
+		int s = slot(i);
+		bytes -= sizes[s];
+		before[s] = null;
+		after[s] = null;
+		sizes[s] = 0;
+	}
+
+	/**
+	 * Maps a position, counted from the oldest edit, to its slot in the ring buffer.
+	 */
+	private int slot(int i) {
+		return (head + i) % before.length;
+	}
+}
@@ -0,0 +1,80 @@
+import java.util.ArrayList;
+
+import javafx.scene.input.MouseEvent;
+
+/**
+ * A tool for grouping shapes on a ShapeCanvas.
+ */
+public class GroupTool extends Tool {
+
+    private ShapeGroup shapeGroup;
+
+    /**
+     * Constructs a new GroupTool with the specified ShapeCanvas.
+     *
+     * @param sc The ShapeCanvas associated with this GroupTool.
+     */
+    public GroupTool(ShapeCanvas sc) {
+        super(sc);
+        on(MouseEvent.MOUSE_PRESSED, this::mousePressed);
+        on(MouseEvent.MOUSE_DRAGGED, this::mouseDragged);
+        on(MouseEvent.MOUSE_RELEASED, this::mouseReleased);
+    }
+
+    /**
+     * Handles mouse pressed event.
+     *
+     * @param e The MouseEvent representing the mouse pressed event.
+     */
+    private void mousePressed(MouseEvent e) {
+        shapeGroup = new ShapeGroup();
+        canvas.beginEdit();
+        canvas.setCurrentShape(shapeGroup);
+        shapeGroup.setP1(canvas.toDrawingX(e.getX()), canvas.toDrawingY(e.getY()));
+        canvas.beginDrag(shapeGroup);
+    }
+
+    /**
+     * Handles mouse dragged event.
+     *
+     * @param e The MouseEvent representing the mouse dragged event.
+     */
+    private void mouseDragged(MouseEvent e) {
+        if (shapeGroup != null) {
+            canvas.markDirty(shapeGroup);
+            shapeGroup.setP2(canvas.toDrawingX(e.getX()), canvas.toDrawingY(e.getY()));
+            canvas.markDirty(shapeGroup);
+            canvas.requestRepaint();
+        }
+    }
+
+    /**
+     * Handles mouse released event. The shapes lying entirely inside the rubber band become the members of the group.
+     *
+     * @param e The MouseEvent representing the mouse released event.
+     */
+    private void mouseReleased(MouseEvent e) {
+        if (shapeGroup == null) {
+            return;
+        }
+        // only the shapes near the rubber band are looked at, and the result is a list of its own
+        ArrayList<MyShape> captured = canvas.shapesContainedIn(shapeGroup.getULX(), shapeGroup.getULY(),
+                shapeGroup.getWidth(), shapeGroup.getHeight());
+
+        canvas.removeShapes(captured);
+        for (MyShape shape : captured) {
+            shapeGroup.addMember(shape);
+        }
+
+        if (!shapeGroup.isEmpty()) {
+            canvas.addShape(shapeGroup);
+            canvas.endEdit();
+            canvas.setCurrentShape(null);
+        } 
+        else {
+            canvas.setCurrentShape(null);
+        }
+        canvas.endDrag(); // also removes the group from canvas if it has no members
+        shapeGroup = null;
+    }
+}
@@ -10,6 +10,7 @@ import javafx.scene.canvas.GraphicsContext;
 
 
 public class Line extends MyShape {
+	private static final long serialVersionUID = -8351731273063479390L;
 
 	/**
 	 * Constructs a default Line object.
@@ -50,20 +51,42 @@ public class Line extends MyShape {
 		// Draw bounds if available
 		//drawBounds(gc);
 		// Set the stroke color
-		gc.setStroke(color);
+		gc.setStroke(getColor());
 
 		// Draw the line between the specified points
-		gc.strokeLine(p1.getX(), p1.getY(), p2.getX(), p2.getY());
+		gc.strokeLine(getX1(), getY1(), getX2(), getY2());
 
 
 	}
 	
+	/**
+	 * Checks whether a point is within the tolerance of the line segment.
+	 *
+	 * @param x         The x-coordinate of the point.
+	 * @param y         The y-coordinate of the point.
+	 * @param tolerance How far from the line the point may be.
+	 * @return True if the point hits the line.
+	 */
+	@Override
+	public boolean hitTest(double x, double y, double tolerance) {
+		if (!inBounds(x, y, tolerance)) {
+			return false;
+		}
+		double x1 = getX1(), y1 = getY1();
+		double dx = getX2() - x1, dy = getY2() - y1;
+		double length2 = dx * dx + dy * dy;
+		// the point of the segment closest to (x, y), as a fraction of the way from P1 to P2
+		double t = length2 == 0 ? 0 : Math.max(0, Math.min(1, ((x - x1) * dx + (y - y1) * dy) / length2));
+		double ex = x1 + t * dx - x, ey = y1 + t * dy - y;
+		return ex * ex + ey * ey <= tolerance * tolerance;
+	}
+
 	/**
 	 * A string representation for the shape
 	 */
 	@Override
-	public String toString() {
-		return "line " + super.toString();
+	String toString(double dx, double dy) {
+		return "line " + super.toString(dx, dy);
 	}
 }
 
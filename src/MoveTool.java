@@ -0,0 +1,65 @@
+import javafx.scene.input.MouseEvent;
+
+/**
+ * A tool for moving the shape under the mouse on a ShapeCanvas.
+ */
+public class MoveTool extends Tool {
+
+    private MyShape hitShape;
+    private double x0, y0, x1, y1, clickX, clickY;
+
+    /**
+     * Constructs a new MoveTool with the specified ShapeCanvas.
+     *
+     * @param sc The ShapeCanvas associated with this MoveTool.
+     */
+    public MoveTool(ShapeCanvas sc) {
+        super(sc);
+        on(MouseEvent.MOUSE_PRESSED, this::mousePressed);
+        on(MouseEvent.MOUSE_DRAGGED, this::mouseDragged);
+        on(MouseEvent.MOUSE_RELEASED, this::mouseReleased);
+    }
+
+    /**
+     * Handles mouse pressed event.
+     *
+     * @param e The MouseEvent representing the mouse pressed event.
+     */
+    private void mousePressed(MouseEvent e) {
+        clickX = canvas.toDrawingX(e.getX());
+        clickY = canvas.toDrawingY(e.getY());
+        hitShape = canvas.shapeAt(clickX, clickY);
+        if (hitShape != null) {
+            x0 = clickX;
+            y0 = clickY;
+            canvas.beginEdit();
+            canvas.beginDrag(hitShape);
+        }
+    }
+
+    /**
+     * Handles mouse dragged event.
+     *
+     * @param e The MouseEvent representing the mouse dragged event.
+     */
+    private void mouseDragged(MouseEvent e) {
+        if (hitShape != null) {
+            x1 = canvas.toDrawingX(e.getX());
+            y1 = canvas.toDrawingY(e.getY());
+            canvas.markDirty(hitShape);
+            hitShape.move(x1 - x0, y1 - y0);
+            canvas.markDirty(hitShape);
+            x0 = x1;
+            y0 = y1;
+            canvas.requestRepaint();
+        }
+    }
+    
+    private void mouseReleased(MouseEvent e) {
+    	if (hitShape != null) {
+    		canvas.endEdit();
+    		canvas.endDrag();
+    		hitShape = null;
+    	}
+    }
+}
@@ -1,11 +1,15 @@
 /**
  *  Writing the abstract shape class that serves as a base for other shapes such as line, oval and rectangle. 
+ *  The geometry of a shape lives in a slot of a ShapeStore once the shape is attached to one, and otherwise in a
+ *  small holder of its own that is dropped on attaching, so an attached shape is no more than its store and id.
+ *  All reads and writes go through the accessors below, which pick the right place.
  */
 
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 
 import javafx.geometry.Point2D;
@@ -13,10 +17,18 @@ import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.Color;
 
 public abstract class MyShape implements Serializable, Cloneable {
-	protected transient Point2D p1, p2 , center;
-	protected transient Color color;
-	protected double ulx , uly, width, height;
-	protected boolean filled; 
+	private static final long serialVersionUID = -2630780583718948351L;
+	// the fields the shape was serialized with before its state moved out of it, so old files still load
+	private static final ObjectStreamField[] serialPersistentFields = {
+			new ObjectStreamField("ulx", double.class),
+			new ObjectStreamField("uly", double.class),
+			new ObjectStreamField("width", double.class),
+			new ObjectStreamField("height", double.class),
+			new ObjectStreamField("filled", boolean.class) };
+	// the state of the shape while it is not attached to a store, null while it is
+	private transient Own own = new Own();
+	protected transient ShapeStore store;
+	protected transient int id = -1;
 	private static final Color COLOR = Color.BLACK;
 
 	/**
@@ -33,11 +45,7 @@ public abstract class MyShape implements Serializable, Cloneable {
 	 * @param p2 The second point of the shape.
 	 */
 	public MyShape(Point2D p1, Point2D p2) {
-		this.p1 = p1;
-		this.p2 = p2;
-		color = COLOR;
-		updateCenter();
-		updateBounds();    
+		this(p1.getX(), p1.getY(), p2.getX(), p2.getY());
 	}
 
 	/**
@@ -50,25 +58,67 @@ public abstract class MyShape implements Serializable, Cloneable {
 	 * @param y2 The y-coordinate of the second point.
 	 */
 	public MyShape( double x1, double y1, double  x2, double y2) {
-		this( new Point2D(x1, y1), new Point2D(x2, y2));
+		own.x1 = x1;
+		own.y1 = y1;
+		own.x2 = x2;
+		own.y2 = y2;
+		own.color = COLOR;
+		updateCenter();
+		updateBounds();    
 	}
 
 	/**
 	 * Retrieves the first point of the shape.
 	 * 
-	 * @return The first point of the shape.
+	 * @return The first point of the shape, or null if it has not been set.
 	 */
 	public Point2D getP1() {
-		return p1;
+		return Double.isNaN(getX1()) ? null : new Point2D(getX1(), getY1());
 	}
 
 	/**
 	 * Retrieves the second point of the shape.
 	 * 
-	 * @return The second point of the shape.
+	 * @return The second point of the shape, or null if it has not been set.
 	 */
 	public Point2D getP2() {
-		return p2;
+		return Double.isNaN(getX2()) ? null : new Point2D(getX2(), getY2());
+	}
+
+	/**
+	 * Retrieves the x-coordinate of the first point.
+	 * 
+	 * @return The x-coordinate of the first point.
+	 */
+	public double getX1() {
+		return store == null ? own.x1 : store.x1[id];
+	}
+
+	/**
+	 * Retrieves the y-coordinate of the first point.
+	 * 
+	 * @return The y-coordinate of the first point.
+	 */
+	public double getY1() {
+		return store == null ? own.y1 : store.y1[id];
+	}
+
+	/**
+	 * Retrieves the x-coordinate of the second point.
+	 * 
+	 * @return The x-coordinate of the second point.
+	 */
+	public double getX2() {
+		return store == null ? own.x2 : store.x2[id];
+	}
+
+	/**
+	 * Retrieves the y-coordinate of the second point.
+	 * 
+	 * @return The y-coordinate of the second point.
+	 */
+	public double getY2() {
+		return store == null ? own.y2 : store.y2[id];
 	}
 
 	/**
@@ -77,7 +127,7 @@ public abstract class MyShape implements Serializable, Cloneable {
 	 * @return The color of the shape.
 	 */
 	public Color getColor() {
-		return color;
+		return store == null ? own.color : store.color[id];
 	}
 
 	/**
@@ -86,7 +136,7 @@ public abstract class MyShape implements Serializable, Cloneable {
 	 * @return True if the shape is filled, false otherwise.
 	 */
 	public Boolean isFilled() {
-		return filled;
+		return store == null ? own.filled : store.filled[id];
 	}
 
 	/**
@@ -95,7 +145,7 @@ public abstract class MyShape implements Serializable, Cloneable {
 	 * @return The x-coordinate of the upper-left corner of the bounding box.
 	 */
 	public double getULX() {
-		return ulx;
+		return store == null ? own.ulx : store.ulx[id];
 	}
 
 	/**
@@ -104,7 +154,7 @@ public abstract class MyShape implements Serializable, Cloneable {
 	 * @return The y-coordinate of the upper-left corner of the bounding box.
 	 */
 	public double getULY() {
-		return uly;
+		return store == null ? own.uly : store.uly[id];
 	}
 
 	/**
@@ -113,7 +163,7 @@ public abstract class MyShape implements Serializable, Cloneable {
 	 * @return The width of the bounding box.
 	 */
 	public double getWidth() {
-		return width;
+		return store == null ? own.width : store.width[id];
 	}
 
 	/**
@@ -122,7 +172,7 @@ public abstract class MyShape implements Serializable, Cloneable {
 	 * @return The height of the bounding box.
 	 */
 	public double getHeight() {
-		return height;
+		return store == null ? own.height : store.height[id];
 	}
 
 	/**
@@ -131,28 +181,87 @@ public abstract class MyShape implements Serializable, Cloneable {
 	 * @return The center point of the shape.
 	 */
 	public Point2D getCenter() {
-		return center;
+		return new Point2D(getCenterX(), getCenterY());
+	}
+
+	/**
+	 * Retrieves the x-coordinate of the center of the shape.
+	 * 
+	 * @return The x-coordinate of the center.
+	 */
+	public double getCenterX() {
+		return store == null ? own.cx : store.cx[id];
+	}
+
+	/**
+	 * Retrieves the y-coordinate of the center of the shape.
+	 * 
+	 * @return The y-coordinate of the center.
+	 */
+	public double getCenterY() {
+		return store == null ? own.cy : store.cy[id];
 	}
 
 	/**
 	 * Updates the bounding box of the shape.
 	 */
 	public void updateBounds() {
-		double x1 = p1.getX();
-		double x2 = p2.getX();
-		double y1 = p1.getY();
-		double y2 = p2.getY();
-		ulx = Math.min(x1, x2);
-		uly = Math.min(y1, y2);
-		width = Math.abs(x1-x2);
-		height = Math.abs(y1-y2);
+		double x1 = getX1();
+		double x2 = getX2();
+		double y1 = getY1();
+		double y2 = getY2();
+		setBounds(Math.min(x1, x2), Math.min(y1, y2), Math.abs(x1-x2), Math.abs(y1-y2));
 	}
 
 	/**
 	 * Updates the center point of the shape.
 	 */
 	public void updateCenter() {
-		center = p1.midpoint(p2);
+		setCenter((getX1() + getX2()) / 2, (getY1() + getY2()) / 2);
+	}
+
+	/**
+	 * Stores a new bounding box for the shape.
+	 * If the shape is held by a spatial index, the index is told about the new bounds.
+	 * 
+	 * @param x The x-coordinate of the upper-left corner.
+	 * @param y The y-coordinate of the upper-left corner.
+	 * @param w The width of the bounding box.
+	 * @param h The height of the bounding box.
+	 */
+	protected void setBounds(double x, double y, double w, double h) {
+		if (store == null) {
+			own.ulx = x;
+			own.uly = y;
+			own.width = w;
+			own.height = h;
+			return;
+		}
+
+		store.ulx[id] = x;
+		store.uly[id] = y;
+		store.width[id] = w;
+		store.height[id] = h;
+		if (store.index != null) {
+			store.index.update(id);
+		}
+	}
+
+	/**
+	 * Stores a new center for the shape.
+	 * 
+	 * @param x The x-coordinate of the center.
+	 * @param y The y-coordinate of the center.
+	 */
+	protected void setCenter(double x, double y) {
+		if (store == null) {
+			own.cx = x;
+			own.cy = y;
+		}
+		else {
+			store.cx[id] = x;
+			store.cy[id] = y;
+		}
 	}
 
 	/**
@@ -161,7 +270,7 @@ public abstract class MyShape implements Serializable, Cloneable {
 	 * @param p1 The new first point of the shape.
 	 */
 	public void setP1(Point2D p1) {
-		this.p1 = p1;
+		setP1(p1.getX(), p1.getY());
 	}
 
 	/**
@@ -171,7 +280,14 @@ public abstract class MyShape implements Serializable, Cloneable {
 	 * @param y1 The y-coordinate of the new first point.
 	 */
 	public void setP1(double x1, double y1) {
-		p1 = new Point2D(x1, y1);
+		if (store == null) {
+			own.x1 = x1;
+			own.y1 = y1;
+		}
+		else {
+			store.x1[id] = x1;
+			store.y1[id] = y1;
+		}
 	}
 
 	/**
@@ -180,9 +296,7 @@ public abstract class MyShape implements Serializable, Cloneable {
 	 * @param p2 The new second point of the shape.
 	 */
 	public void setP2(Point2D p2) {
-		this.p2 = p2;
-		updateCenter();
-		updateBounds();
+		setP2(p2.getX(), p2.getY());
 	}
 
 	/**
@@ -192,7 +306,14 @@ public abstract class MyShape implements Serializable, Cloneable {
 	 * @param y2 The y-coordinate of the new second point.
 	 */
 	public void setP2(double x2, double y2) {
-		p2 = new Point2D(x2, y2);
+		if (store == null) {
+			own.x2 = x2;
+			own.y2 = y2;
+		}
+		else {
+			store.x2[id] = x2;
+			store.y2[id] = y2;
+		}
 		updateCenter();
 		updateBounds();
 	}
@@ -203,7 +324,13 @@ public abstract class MyShape implements Serializable, Cloneable {
 	 * @param color The new color of the shape.
 	 */
 	public void setColor(Color color) {
-		this.color = color;
+		if (store == null) {
+			own.color = color;
+		}
+		else {
+			store.color[id] = color;
+			store.paint[id] = store.paintId(color);
+		}
 	}
 
 	/**
@@ -212,7 +339,12 @@ public abstract class MyShape implements Serializable, Cloneable {
 	 * @param filled True if the shape should be filled, false otherwise.
 	 */
 	public void setFilled(boolean filled) {
-		this.filled = filled;
+		if (store == null) {
+			own.filled = filled;
+		}
+		else {
+			store.filled[id] = filled;
+		}
 	}
 
 	/**
@@ -223,7 +355,37 @@ public abstract class MyShape implements Serializable, Cloneable {
 	 * @return The distance between the center of the shape and the specified point.
 	 */
 	public double distance(double x, double y) {
-		return center.distance(x, y);
+		double dx = getCenterX() - x;
+		double dy = getCenterY() - y;
+		return Math.sqrt(dx * dx + dy * dy);
+	}
+
+	/**
+	 * Checks whether a point lies on the shape, or within the tolerance of it.
+	 * This base version tests the bounding box; the shapes override it with their exact geometry.
+	 * 
+	 * @param x         The x-coordinate of the point.
+	 * @param y         The y-coordinate of the point.
+	 * @param tolerance How far from the shape the point may be.
+	 * @return True if the point hits the shape.
+	 */
+	public boolean hitTest(double x, double y, double tolerance) {
+		return inBounds(x, y, tolerance);
+	}
+
+	/**
+	 * Checks whether a point lies inside the bounding box of the shape grown by the tolerance on every side.
+	 * It is the cheap test done before the exact one.
+	 * 
+	 * @param x         The x-coordinate of the point.
+	 * @param y         The y-coordinate of the point.
+	 * @param tolerance The distance the box is grown by.
+	 * @return True if the point lies inside the grown box.
+	 */
+	protected boolean inBounds(double x, double y, double tolerance) {
+		double ulx = getULX(), uly = getULY();
+		return x >= ulx - tolerance && y >= uly - tolerance
+				&& x <= ulx + getWidth() + tolerance && y <= uly + getHeight() + tolerance;
 	}
 
 	/**
@@ -233,8 +395,8 @@ public abstract class MyShape implements Serializable, Cloneable {
 	 */
 	public void drawBounds(GraphicsContext gc) {
 		gc.setLineDashes(5);
-		gc.setStroke(color);
-		gc.strokeRect(ulx, uly, width, height);
+		gc.setStroke(getColor());
+		gc.strokeRect(getULX(), getULY(), getWidth(), getHeight());
 		gc.setLineDashes(null);
 	}
 
@@ -246,8 +408,43 @@ public abstract class MyShape implements Serializable, Cloneable {
 	 * @param dy The distance to move in the y-direction.
 	 */
 	public void move(double dx, double dy) {
-		setP1(p1.add(dx,dy));
-		setP2(p2.add(dx,dy));
+		translate(dx, dy);
+	}
+
+	/**
+	 * Shifts the points, the center and the bounding box of the shape in place.
+	 * A translation does not change the shape, so nothing has to be recomputed and no objects are created,
+	 * which keeps dragging free of garbage.
+	 *
+	 * @param dx The distance to move in the x-direction.
+	 * @param dy The distance to move in the y-direction.
+	 */
+	protected void translate(double dx, double dy) {
+		if (store == null) {
+			Own o = own;
+			o.x1 += dx;
+			o.y1 += dy;
+			o.x2 += dx;
+			o.y2 += dy;
+			o.cx += dx;
+			o.cy += dy;
+			o.ulx += dx;
+			o.uly += dy;
+			return;
+		}
+
+		int i = id;
+		store.x1[i] += dx;
+		store.y1[i] += dy;
+		store.x2[i] += dx;
+		store.y2[i] += dy;
+		store.cx[i] += dx;
+		store.cy[i] += dy;
+		store.ulx[i] += dx;
+		store.uly[i] += dy;
+		if (store.index != null) {
+			store.index.update(i);
+		}
 	}
 	
 	
@@ -260,7 +457,72 @@ public abstract class MyShape implements Serializable, Cloneable {
 
 	@Override
 	public String toString() {
-		return String.format("%-3.0f %-3.0f %-3.0f %-3.0f %b %.3f %.3f %.3f",p1.getX(), p1.getY(), p2.getX(), p2.getY(), filled, color.getRed(),color.getGreen(), color.getBlue());
+		return toString(0, 0);
+	}
+
+	/**
+	 * Returns the string representation of the shape moved by the given distances, which is where a member
+	 * of a moved group is drawn, without moving the shape itself.
+	 * 
+	 * @param dx The distance to move by in the x-direction.
+	 * @param dy The distance to move by in the y-direction.
+	 * @return A string representation of the moved shape.
+	 */
+	String toString(double dx, double dy) {
+		Color color = getColor();
+		return String.format("%-3.0f %-3.0f %-3.0f %-3.0f %b %.3f %.3f %.3f", ShapeGroup.shift(getX1(), dx), ShapeGroup.shift(getY1(), dy),
+				ShapeGroup.shift(getX2(), dx), ShapeGroup.shift(getY2(), dy), isFilled(), color.getRed(),color.getGreen(), color.getBlue());
+	}
+
+	/**
+	 * Copies the state of the shape into a slot of a store, after which the shape reads and writes that slot
+	 * and lets go of its own state.
+	 * 
+	 * @param s  The store to move to.
+	 * @param id The slot of the shape in the store.
+	 */
+	void saveTo(ShapeStore s, int id) {
+		s.x1[id] = getX1();
+		s.y1[id] = getY1();
+		s.x2[id] = getX2();
+		s.y2[id] = getY2();
+		s.cx[id] = getCenterX();
+		s.cy[id] = getCenterY();
+		s.ulx[id] = getULX();
+		s.uly[id] = getULY();
+		s.width[id] = getWidth();
+		s.height[id] = getHeight();
+		s.filled[id] = isFilled();
+		s.color[id] = getColor();
+		s.paint[id] = s.paintId(s.color[id]);
+		store = s;
+		this.id = id;
+		own = null;
+	}
+
+	/**
+	 * Copies the state in a slot of a store back into the shape, after which the shape is on its own again.
+	 * 
+	 * @param s  The store to copy from.
+	 * @param id The slot of the shape in the store.
+	 */
+	void loadFrom(ShapeStore s, int id) {
+		Own o = new Own();
+		o.x1 = s.x1[id];
+		o.y1 = s.y1[id];
+		o.x2 = s.x2[id];
+		o.y2 = s.y2[id];
+		o.cx = s.cx[id];
+		o.cy = s.cy[id];
+		o.ulx = s.ulx[id];
+		o.uly = s.uly[id];
+		o.width = s.width[id];
+		o.height = s.height[id];
+		o.filled = s.filled[id];
+		o.color = s.color[id];
+		own = o;
+		store = null;
+		this.id = -1;
 	}
 
 	//customize serialization
@@ -271,22 +533,28 @@ public abstract class MyShape implements Serializable, Cloneable {
 	 * @throws IOException
 	 */
 	private void writeObject(ObjectOutputStream out) throws IOException {
-		//default serialization all basic types,
-
-		out.defaultWriteObject();
+		//the basic types, under the names of the fields they were once written from
+		ObjectOutputStream.PutField fields = out.putFields();
+		fields.put("ulx", getULX());
+		fields.put("uly", getULY());
+		fields.put("width", getWidth());
+		fields.put("height", getHeight());
+		fields.put("filled", (boolean) isFilled());
+		out.writeFields();
 
 
 		//serialize color
+		Color color = getColor();
 
 		out.writeDouble(color.getRed());
 		out.writeDouble(color.getGreen());
 		out.writeDouble(color.getBlue());
 		
 		//serialize points
-		out.writeDouble(p1.getX());
-		out.writeDouble(p1.getY());
-		out.writeDouble(p2.getX());
-		out.writeDouble(p2.getY());
+		out.writeDouble(getX1());
+		out.writeDouble(getY1());
+		out.writeDouble(getX2());
+		out.writeDouble(getY2());
 
 	}
 
@@ -298,20 +566,30 @@ public abstract class MyShape implements Serializable, Cloneable {
 	 */
 	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException{
 
-		in.defaultReadObject();
+		Own o = new Own();
+		ObjectInputStream.GetField fields = in.readFields();
+		o.ulx = fields.get("ulx", 0.0);
+		o.uly = fields.get("uly", 0.0);
+		o.width = fields.get("width", 0.0);
+		o.height = fields.get("height", 0.0);
+		o.filled = fields.get("filled", false);
+
 		double r = in.readDouble();
 		double g = in.readDouble();
 		double b = in.readDouble();
 
 		//reading the point coordinates
-		double x1 = in.readDouble();
-		double y1 = in.readDouble();
-		double x2 = in.readDouble();
-		double y2 = in.readDouble();
-
-		setP1(x1,y1);
-		setP2(x2,y2);
-		color = Color.color(r, g, b);
+		o.x1 = in.readDouble();
+		o.y1 = in.readDouble();
+		o.x2 = in.readDouble();
+		o.y2 = in.readDouble();
+
+		//the fields of subclasses are not read yet, so nothing that they override may be called here
+		o.cx = (o.x1 + o.x2) / 2;
+		o.cy = (o.y1 + o.y2) / 2;
+		o.color = Color.color(r, g, b);
+		own = o;
+		id = -1;
 	}
 
 	
@@ -326,10 +604,13 @@ public abstract class MyShape implements Serializable, Cloneable {
 			//default shallow-copy
 			 MyShape copy = (MyShape) super.clone();
 			 
-			 //customization
-			 copy.setP1(new Point2D(p1.getX(), p1.getY()));
-			 copy.setP2(new Point2D(p2.getX(), p2.getY()));
-			 copy.setColor(Color.color(color.getRed(), color.getGreen(), color.getBlue())); 
+			 //customization: the copy is not in any store or on any canvas yet, so it takes its own copy of the geometry
+			 if (store != null) {
+				 copy.loadFrom(store, id);
+			 }
+			 else {
+				 copy.own = own.copy();
+			 }
 			 
 			 return copy;
 		}
@@ -341,4 +622,23 @@ public abstract class MyShape implements Serializable, Cloneable {
 	}
 	
 	
-}
\ No newline at end of file
+	/**
+	 * The state of a shape that is not attached to a store.
+	 */
+	private static final class Own implements Cloneable {
+		double x1 = Double.NaN, y1 = Double.NaN, x2 = Double.NaN, y2 = Double.NaN;
+		double cx, cy;
+		double ulx, uly, width, height;
+		boolean filled;
+		Color color;
+
+		Own copy() {
+			try {
+				return (Own) super.clone();
+			}
+			catch (CloneNotSupportedException e) {
+				throw new AssertionError(e);
+			}
+		}
+	}
+}
@@ -7,6 +7,7 @@ import javafx.scene.canvas.GraphicsContext;
 
 
 public class Oval extends MyShape {
+	private static final long serialVersionUID = 3312968501227179228L;
 
 	/**
 	 * Constructs a default Oval object.
@@ -45,23 +46,53 @@ public class Oval extends MyShape {
 	@Override
 	public void draw(GraphicsContext gc) {
 		//drawBounds(gc);
-		if (filled) {
+		if (isFilled()) {
 			// Fill the oval with the specified color
-			gc.setFill(color);
-			gc.fillOval(ulx, uly, width, height);
+			gc.setFill(getColor());
+			gc.fillOval(getULX(), getULY(), getWidth(), getHeight());
 		} else {
 			// Draw the outline of the oval with the specified color
-			gc.setStroke(color);
-			gc.strokeOval(ulx, uly, width, height);
+			gc.setStroke(getColor());
+			gc.strokeOval(getULX(), getULY(), getWidth(), getHeight());
 		}
 	
 	}
 	
+	/**
+	 * Checks whether a point hits the oval: anywhere inside it if it is filled, otherwise near its outline,
+	 * that is inside the oval with radii grown by the tolerance but not inside the one with radii shrunk by it.
+	 *
+	 * @param x         The x-coordinate of the point.
+	 * @param y         The y-coordinate of the point.
+	 * @param tolerance How far from the oval the point may be.
+	 * @return True if the point hits the oval.
+	 */
+	@Override
+	public boolean hitTest(double x, double y, double tolerance) {
+		if (!inBounds(x, y, tolerance)) {
+			return false;
+		}
+		double rx = getWidth() / 2, ry = getHeight() / 2;
+		double dx = x - (getULX() + rx), dy = y - (getULY() + ry);
+		if (!insideEllipse(dx, dy, rx + tolerance, ry + tolerance)) {
+			return false;
+		}
+		return isFilled() || rx <= tolerance || ry <= tolerance || !insideEllipse(dx, dy, rx - tolerance, ry - tolerance);
+	}
+
+	/**
+	 * Checks the ellipse equation (dx / rx)^2 + (dy / ry)^2 &lt;= 1 for a point relative to the center.
+	 */
+	private static boolean insideEllipse(double dx, double dy, double rx, double ry) {
+		double u = dx / rx, v = dy / ry;
+		return u * u + v * v <= 1;
+	}
+
 	/**
 	 * A string representation for the shape
 	 */
 	@Override
-	public String toString() {
-		return "oval " + super.toString();
+	String toString(double dx, double dy) {
+		return "oval " + super.toString(dx, dy);
 	}
 }
@@ -7,6 +7,7 @@ import javafx.scene.canvas.GraphicsContext;
 
 
 public class Rect extends MyShape {
+	private static final long serialVersionUID = -401528694349587984L;
 
 	/**
 	 * Constructs a default Rect object.
@@ -45,23 +46,47 @@ public class Rect extends MyShape {
 	@Override
 	public void draw(GraphicsContext gc) {
 		//drawBounds(gc);
-		if (filled) {
+		if (isFilled()) {
 			// Fill the rectangle with the specified color
-			gc.setFill(color);
-			gc.fillRect(ulx, uly, width, height);
+			gc.setFill(getColor());
+			gc.fillRect(getULX(), getULY(), getWidth(), getHeight());
 		}
 		else {
 			// Draw the outline of the rectangle with the specified color
-			gc.setStroke(color);
-			gc.strokeRect(ulx, uly, width, height);
+			gc.setStroke(getColor());
+			gc.strokeRect(getULX(), getULY(), getWidth(), getHeight());
 		
 		}
 	}
 	
+	/**
+	 * Checks whether a point hits the rectangle: anywhere inside it if it is filled,
+	 * otherwise within the tolerance of one of its edges.
+	 *
+	 * @param x         The x-coordinate of the point.
+	 * @param y         The y-coordinate of the point.
+	 * @param tolerance How far from the rectangle the point may be.
+	 * @return True if the point hits the rectangle.
+	 */
+	@Override
+	public boolean hitTest(double x, double y, double tolerance) {
+		if (!inBounds(x, y, tolerance)) {
+			return false;
+		}
+		if (isFilled()) {
+			return true;
+		}
+		// inside the grown box, so the point is on an edge unless it is also inside the shrunk one
+		double ulx = getULX(), uly = getULY();
+		return x < ulx + tolerance || y < uly + tolerance
+				|| x > ulx + getWidth() - tolerance || y > uly + getHeight() - tolerance;
+	}
+
 	/**
 	 * A string representation for the shape
 	 */
-	public String toString() {
-		return "rect " + super.toString();
+	@Override
+	String toString(double dx, double dy) {
+		return "rect " + super.toString(dx, dy);
 	}
 }
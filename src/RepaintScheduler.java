@@ -0,0 +1,161 @@
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+/**
+ * RepaintScheduler coalesces the repaints of a ShapeCanvas into at most one per frame.
+ * <p>
+ * Mice and tablets can deliver several drag events between two frames of the display. Instead of
+ * repainting after each of them, the handlers only mark the changed areas dirty and request a repaint;
+ * the next pulse of the JavaFX animation timer then repaints the union of those areas once.
+ * The timer only runs while a repaint is pending, so an idle canvas costs nothing.
+ * <p>
+ * The scheduler also keeps timing statistics of the frames it rendered.
+ */
+public class RepaintScheduler extends AnimationTimer {
+
+	private static final double NANOS_PER_MILLI = 1e6;
+
+	private ShapeCanvas canvas;
+	private boolean pending;
+	private boolean running;
+
+	private long frames;
+	private long requests;
+	private long renderNanos;
+	private long maxRenderNanos;
+	private long lastPulse;
+	private long intervalNanos;
+	private long intervals;
+
+	/**
+	 * Constructs a RepaintScheduler for a canvas.
+	 *
+	 * @param canvas The canvas to repaint.
+	 */
+	public RepaintScheduler(ShapeCanvas canvas) {
+		this.canvas = canvas;
+	}
+
+	/**
+	 * Requests a repaint of the dirty region of the canvas on the next frame.
+	 * Outside the JavaFX application thread, where there are no frames, the canvas is repainted at once.
+	 */
+	public void request() {
+		requests++;
+		if (!Platform.isFxApplicationThread()) {
+			render();
+			return;
+		}
+		pending = true;
+		if (!running) {
+			running = true;
+			lastPulse = 0;
+			start();
+		}
+	}
+
+	/**
+	 * Drops a pending repaint, for when the canvas was just painted in full anyway.
+	 */
+	public void cancel() {
+		pending = false;
+	}
+
+	/**
+	 * Repaints the canvas if a repaint was requested since the last frame, and stops the timer otherwise.
+	 *
+	 * @param now The time of the pulse in nanoseconds.
+	 */
+	@Override
+	public void handle(long now) {
+		if (!pending) {
+			running = false;
+			stop();
+			return;
+		}
+		if (lastPulse != 0) {
+			intervalNanos += now - lastPulse;
+			intervals++;
+		}
+		lastPulse = now;
+		pending = false;
+		render();
+	}
+
+	/**
+	 * Repaints the canvas and records how long it took.
+	 */
+	private void render() {
+		long start = System.nanoTime();
+		canvas.repaint();
+		long time = System.nanoTime() - start;
+
+		frames++;
+		renderNanos += time;
+		maxRenderNanos = Math.max(maxRenderNanos, time);
+	}
+
+	/**
+	 * Returns the number of frames rendered.
+	 *
+	 * @return The number of repaints done.
+	 */
+	public long getFrames() {
+		return frames;
+	}
+
+	/**
+	 * Returns the number of repaints requested. The ones beyond getFrames were coalesced into other frames.
+	 *
+	 * @return The number of repaint requests.
+	 */
+	public long getRequests() {
+		return requests;
+	}
+
+	/**
+	 * Returns the average time a frame took to render.
+	 *
+	 * @return The average render time in milliseconds, or 0 if no frame was rendered.
+	 */
+	public double getAverageRenderMillis() {
+		return frames == 0 ? 0 : renderNanos / NANOS_PER_MILLI / frames;
+	}
+
+	/**
+	 * Returns the longest time a frame took to render.
+	 *
+	 * @return The longest render time in milliseconds.
+	 */
+	public double getMaxRenderMillis() {
+		return maxRenderNanos / NANOS_PER_MILLI;
+	}
+
+	/**
+	 * Returns the average time between two frames rendered on consecutive pulses,
+	 * that is while the canvas keeps changing, for example during a drag.
+	 *
+	 * @return The average frame interval in milliseconds, or 0 if there were no consecutive frames.
+	 */
+	public double getAverageFrameMillis() {
+		return intervals == 0 ? 0 : intervalNanos / NANOS_PER_MILLI / intervals;
+	}
+
+	/**
+	 * Sets all the statistics back to zero.
+	 */
+	public void resetStats() {
+		frames = requests = renderNanos = maxRenderNanos = intervalNanos = intervals = 0;
+	}
+
+	/**
+	 * Returns the statistics on one line.
+	 *
+	 * @return A summary of the frame statistics.
+	 */
+	@Override
+	public String toString() {
+		return String.format("%d frames for %d requests, render %.2f ms average %.2f ms max, %.2f ms between frames",
+				frames, requests, getAverageRenderMillis(), getMaxRenderMillis(), getAverageFrameMillis());
+	}
+}
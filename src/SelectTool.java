@@ -0,0 +1,104 @@
+import java.util.ArrayList;
+
+import javafx.scene.input.MouseEvent;
+
+/**
+ * A tool for selecting several shapes on a ShapeCanvas with a rubber band, and moving them together.
+ * Dragging from a selected shape moves the whole selection; dragging anywhere else selects the shapes the
+ * rubber band touches, in addition to the current selection if shift is held down.
+ */
+public class SelectTool extends Tool {
+
+    private ShapeGroup band;
+    private boolean adding;
+    private boolean moving;
+    private double clickX, clickY, x0, y0;
+
+    /**
+     * Constructs a new SelectTool with the specified ShapeCanvas.
+     *
+     * @param sc The ShapeCanvas associated with this SelectTool.
+     */
+    public SelectTool(ShapeCanvas sc) {
+        super(sc);
+        on(MouseEvent.MOUSE_PRESSED, this::mousePressed);
+        on(MouseEvent.MOUSE_DRAGGED, this::mouseDragged);
+        on(MouseEvent.MOUSE_RELEASED, this::mouseReleased);
+    }
+
+    /**
+     * Handles mouse pressed event.
+     *
+     * @param e The MouseEvent representing the mouse pressed event.
+     */
+    private void mousePressed(MouseEvent e) {
+        clickX = x0 = canvas.toDrawingX(e.getX());
+        clickY = y0 = canvas.toDrawingY(e.getY());
+
+        MyShape shape = canvas.shapeAt(clickX, clickY);
+        moving = shape != null && canvas.isSelected(shape);
+        if (moving) {
+            // the rest of the drawing stays in the tiles or the cached layer while the selection moves
+            canvas.beginEdit();
+            canvas.beginDrag(canvas.getSelection());
+            return;
+        }
+
+        adding = e.isShiftDown();
+        band = new ShapeGroup();
+        canvas.setCurrentShape(band);
+        band.setP1(clickX, clickY);
+        band.setP2(clickX, clickY);
+        canvas.beginDrag(band);
+    }
+
+    /**
+     * Handles mouse dragged event.
+     *
+     * @param e The MouseEvent representing the mouse dragged event.
+     */
+    private void mouseDragged(MouseEvent e) {
+        if (moving) {
+            double x1 = canvas.toDrawingX(e.getX()), y1 = canvas.toDrawingY(e.getY());
+            for (MyShape shape : canvas.getSelection()) {
+                canvas.markDirty(shape);
+                shape.move(x1 - x0, y1 - y0);
+                canvas.markDirty(shape);
+            }
+            x0 = x1;
+            y0 = y1;
+            canvas.requestRepaint();
+        }
+        else if (band != null) {
+            canvas.markDirty(band);
+            band.setP2(canvas.toDrawingX(e.getX()), canvas.toDrawingY(e.getY()));
+            canvas.markDirty(band);
+            canvas.requestRepaint();
+        }
+    }
+
+    /**
+     * Handles mouse released event.
+     *
+     * @param e The MouseEvent representing the mouse released event.
+     */
+    private void mouseReleased(MouseEvent e) {
+        if (moving) {
+            moving = false;
+            // the moves of all the shapes are undone in one step
+            canvas.endEdit();
+            canvas.endDrag();
+            return;
+        }
+        if (band == null) {
+            return;
+        }
+
+        ArrayList<MyShape> touched = canvas.shapesIntersecting(band.getULX(), band.getULY(),
+                band.getWidth(), band.getHeight());
+        canvas.setCurrentShape(null);
+        canvas.endDrag();
+        canvas.select(touched, adding);
+        band = null;
+    }
+}
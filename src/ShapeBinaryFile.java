@@ -0,0 +1,400 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import javafx.scene.paint.Color;
+
+/**
+ * ShapeBinaryFile reads and writes the columnar binary drawing format.
+ * <p>
+ * The shapes are flattened in pre-order, so the members of a group directly follow the group,
+ * and every property is stored as its own fixed-width column of primitives:
+ * <pre>
+ *   header  int magic "SHPC", int version, int record count n, int top-level count
+ *   kind    byte[n]    shape type in the low bits, filled flag in the high bit
+ *   (padding to a multiple of 8)
+ *   x1, y1, x2, y2  double[n] each
+ *   rgb     int[n]     0xRRGGBB
+ *   end     int[n]     index one past the last record of the shape, so the members of a group are the range [i + 1, end)
+ * </pre>
+ * Colors are stored with 8 bits per channel and without their opacity, so unlike the serialized files, which keep
+ * the components as doubles, a color that is not a whole 0-255 value per channel or not opaque is rounded on saving.
+ * <p>
+ * Files are written through a FileChannel and read back through a MappedByteBuffer,
+ * which avoids object serialization with its class descriptors and per-object headers.
+ * The reader checks the counts of the header and the end column against the file, so a damaged file
+ * fails with an IOException instead of being decoded past its end or looping forever.
+ */
+public class ShapeBinaryFile {
+
+	public static final int MAGIC = 0x53485043; // "SHPC"
+	public static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 16;
+	private static final int CHUNK_SIZE = 1 << 16;
+
+	private static final byte LINE = 0, OVAL = 1, RECT = 2, GROUP = 3;
+	private static final byte TYPE_MASK = 0x0f;
+	private static final byte FILLED = (byte) 0x80;
+
+	/**
+	 * This class only has static methods.
+	 */
+	private ShapeBinaryFile() {
+	}
+
+	/**
+	 * Checks if a file starts with the header of the columnar format.
+	 *
+	 * @param fileObj The file to check.
+	 * @return True if the file is in the columnar format, false otherwise.
+	 * @throws IOException If the file cannot be read.
+	 */
+	public static boolean isColumnar(File fileObj) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(fileObj, "r")) {
+			return raf.length() >= HEADER_SIZE && raf.readInt() == MAGIC;
+		}
+	}
+
+	/**
+	 * Writes the given shapes to a file in the columnar format.
+	 *
+	 * @param shapes  The top-level shapes of the drawing.
+	 * @param fileObj The file to write to.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public static void write(List<MyShape> shapes, File fileObj) throws IOException {
+		ArrayList<MyShape> records = new ArrayList<>();
+		ArrayList<Integer> ends = new ArrayList<>();
+		ArrayList<double[]> offsets = new ArrayList<>();
+		for (MyShape s : shapes) {
+			flatten(s, 0, 0, records, ends, offsets);
+		}
+		int n = records.size();
+
+		try (RandomAccessFile raf = new RandomAccessFile(fileObj, "rw");
+				FileChannel channel = raf.getChannel()) {
+			channel.truncate(0);
+
+			ByteBuffer buf = ByteBuffer.allocateDirect(CHUNK_SIZE).order(ByteOrder.BIG_ENDIAN);
+			buf.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(shapes.size());
+
+			for (MyShape s : records) {
+				flush(channel, buf, 1);
+				buf.put(kind(s));
+			}
+			while (buf.position() % 8 != 0) {
+				flush(channel, buf, 1);
+				buf.put((byte) 0);
+			}
+
+			for (int column = 0; column < 4; column++) {
+				for (int i = 0; i < n; i++) {
+					flush(channel, buf, 8);
+					buf.putDouble(coordinate(records.get(i), column, offsets.get(i)));
+				}
+			}
+
+			for (MyShape s : records) {
+				flush(channel, buf, 4);
+				buf.putInt(s instanceof ShapeGroup ? 0 : rgb(s.getColor()));
+			}
+
+			for (int end : ends) {
+				flush(channel, buf, 4);
+				buf.putInt(end);
+			}
+
+			buf.flip();
+			while (buf.hasRemaining()) {
+				channel.write(buf);
+			}
+		}
+	}
+
+	/**
+	 * Reads the shapes of a file in the columnar format.
+	 *
+	 * @param fileObj The file to read from.
+	 * @return The top-level shapes of the drawing, in drawing order.
+	 * @throws IOException If the file cannot be read, is not in the columnar format or is damaged.
+	 */
+	public static ArrayList<MyShape> read(File fileObj) throws IOException {
+		Cursor cursor = open(fileObj);
+		ArrayList<MyShape> shapes = new ArrayList<>(cursor.size());
+		while (cursor.hasNext()) {
+			shapes.add(cursor.next());
+		}
+		return shapes;
+	}
+
+	/**
+	 * Opens a file in the columnar format for decoding its shapes one at a time.
+	 * The file is mapped into memory, so it does not have to be closed.
+	 *
+	 * @param fileObj The file to read from.
+	 * @return A cursor positioned before the first shape.
+	 * @throws IOException If the file cannot be read or is not in the columnar format.
+	 */
+	public static Cursor open(File fileObj) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(fileObj, "r");
+				FileChannel channel = raf.getChannel()) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException(fileObj.getName() + " is too large to map");
+			}
+			MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			buf.order(ByteOrder.BIG_ENDIAN);
+
+			if (buf.limit() < HEADER_SIZE || buf.getInt(0) != MAGIC) {
+				throw new IOException(fileObj.getName() + " is not a columnar shape file");
+			}
+			int version = buf.getInt(4);
+			if (version != VERSION) {
+				throw new IOException(fileObj.getName() + " has unsupported version " + version);
+			}
+			int n = buf.getInt(8);
+			int top = buf.getInt(12);
+			if (n < 0 || top < 0 || top > n) {
+				throw new IOException(fileObj.getName() + " has invalid counts " + n + " and " + top);
+			}
+
+			Columns columns = new Columns(buf, n);
+			if (columns.size > buf.limit()) {
+				throw new IOException(fileObj.getName() + " is truncated");
+			}
+			return new Cursor(columns, n, top);
+		}
+	}
+
+	/**
+	 * Appends a shape and, for a group, all its members to the record list in pre-order.
+	 * The members of a moved group are read without moving them, and get the offset they are drawn at.
+	 *
+	 * @param s       The shape to flatten.
+	 * @param dx      The distance the shape is drawn moved by in the x-direction.
+	 * @param dy      The distance the shape is drawn moved by in the y-direction.
+	 * @param records The list receiving the shapes.
+	 * @param ends    The list receiving the end index of each shape.
+	 * @param offsets The list receiving the offset of each shape, null for none.
+	 */
+	private static void flatten(MyShape s, double dx, double dy, ArrayList<MyShape> records,
+			ArrayList<Integer> ends, ArrayList<double[]> offsets) {
+		int i = records.size();
+		records.add(s);
+		ends.add(0);
+		offsets.add(dx == 0 && dy == 0 ? null : new double[] { dx, dy });
+		if (s instanceof ShapeGroup) {
+			ShapeGroup group = (ShapeGroup) s;
+			double memberDx = dx + group.getOffsetX(), memberDy = dy + group.getOffsetY();
+			for (MyShape member : group.getMemberView()) {
+				flatten(member, memberDx, memberDy, records, ends, offsets);
+			}
+		}
+		ends.set(i, records.size());
+	}
+
+	/**
+	 * Writes the buffer out to the channel when it has no room for the next value.
+	 */
+	private static void flush(FileChannel channel, ByteBuffer buf, int needed) throws IOException {
+		if (buf.remaining() < needed) {
+			buf.flip();
+			while (buf.hasRemaining()) {
+				channel.write(buf);
+			}
+			buf.clear();
+		}
+	}
+
+	/**
+	 * Encodes the type and the fill flag of a shape in one byte.
+	 */
+	private static byte kind(MyShape s) {
+		byte type;
+		if (s instanceof ShapeGroup) {
+			type = GROUP;
+		}
+		else if (s instanceof Line) {
+			type = LINE;
+		}
+		else if (s instanceof Oval) {
+			type = OVAL;
+		}
+		else {
+			type = RECT;
+		}
+		return s.isFilled() ? (byte) (type | FILLED) : type;
+	}
+
+	/**
+	 * Returns x1, y1, x2 or y2 of a shape, moved by its offset if it has one.
+	 */
+	private static double coordinate(MyShape s, int column, double[] offset) {
+		switch (column) {
+		case 0:
+			return offset == null ? s.getX1() : ShapeGroup.shift(s.getX1(), offset[0]);
+		case 1:
+			return offset == null ? s.getY1() : ShapeGroup.shift(s.getY1(), offset[1]);
+		case 2:
+			return offset == null ? s.getX2() : ShapeGroup.shift(s.getX2(), offset[0]);
+		default:
+			return offset == null ? s.getY2() : ShapeGroup.shift(s.getY2(), offset[1]);
+		}
+	}
+
+	/**
+	 * Packs a color into 0xRRGGBB.
+	 */
+	private static int rgb(Color c) {
+		int r = (int) Math.round(c.getRed() * 255);
+		int g = (int) Math.round(c.getGreen() * 255);
+		int b = (int) Math.round(c.getBlue() * 255);
+		return (r << 16) | (g << 8) | b;
+	}
+
+	/**
+	 * Decodes the top-level shapes of a mapped file one after the other, each with all its members.
+	 */
+	public static class Cursor {
+		private Columns columns;
+		private int n, top;
+		private int next;
+		// the number of top-level shapes decoded so far
+		private int count;
+
+		private Cursor(Columns columns, int n, int top) {
+			this.columns = columns;
+			this.n = n;
+			this.top = top;
+		}
+
+		/**
+		 * Returns the number of top-level shapes in the file.
+		 *
+		 * @return The number of top-level shapes.
+		 */
+		public int size() {
+			return top;
+		}
+
+		/**
+		 * Checks if there are shapes left to decode.
+		 *
+		 * @return True if next can be called, false otherwise.
+		 */
+		public boolean hasNext() {
+			return next < n;
+		}
+
+		/**
+		 * Decodes the next top-level shape.
+		 *
+		 * @return The shape, including the members of a group.
+		 * @throws IOException If the end column of the file is damaged, or the records do not make up
+		 *                     as many top-level shapes as the header says.
+		 */
+		public MyShape next() throws IOException {
+			if (++count > top) {
+				throw new IOException("expected " + top + " shapes but found more");
+			}
+			MyShape shape = columns.shape(next, n);
+			next = columns.end(next, n);
+			if (next == n && count != top) {
+				throw new IOException("expected " + top + " shapes but found " + count);
+			}
+			return shape;
+		}
+	}
+
+	/**
+	 * The column offsets of a mapped file, and the decoding of the records.
+	 * The offsets are computed as longs, and only fit in an int once size has been checked against the file.
+	 */
+	private static class Columns {
+		ByteBuffer buf;
+		int kind, x1, y1, x2, y2, rgb, end;
+		long size;
+
+		// consecutive shapes usually share their color, so the last one is reused
+		int lastRgb = -1;
+		Color lastColor;
+
+		Columns(ByteBuffer buf, int n) {
+			this.buf = buf;
+			long column = 8L * n;
+			long x1 = HEADER_SIZE + ((n + 7L) & ~7L);
+			long rgb = x1 + 4 * column;
+			long end = rgb + 4L * n;
+			size = end + 4L * n;
+
+			this.kind = HEADER_SIZE;
+			this.x1 = (int) x1;
+			this.y1 = (int) (x1 + column);
+			this.x2 = (int) (x1 + 2 * column);
+			this.y2 = (int) (x1 + 3 * column);
+			this.rgb = (int) rgb;
+			this.end = (int) end;
+		}
+
+		/**
+		 * Returns the end of record i, which must lie after it and no further than limit.
+		 */
+		int end(int i, int limit) throws IOException {
+			int e = buf.getInt(end + 4 * i);
+			if (e <= i || e > limit) {
+				throw new IOException("record " + i + " ends at " + e + ", outside (" + i + ", " + limit + "]");
+			}
+			return e;
+		}
+
+		/**
+		 * Decodes record i, and for a group its members, which must all end no further than limit.
+		 */
+		MyShape shape(int i, int limit) throws IOException {
+			byte k = buf.get(kind + i);
+			double ax = buf.getDouble(x1 + 8 * i);
+			double ay = buf.getDouble(y1 + 8 * i);
+			double bx = buf.getDouble(x2 + 8 * i);
+			double by = buf.getDouble(y2 + 8 * i);
+
+			MyShape shape;
+			switch (k & TYPE_MASK) {
+			case GROUP:
+				ShapeGroup group = new ShapeGroup();
+				group.setP1(ax, ay);
+				group.setP2(bx, by);
+				int last = end(i, limit);
+				int member = i + 1;
+				while (member < last) {
+					group.addMember(shape(member, last));
+					member = end(member, last);
+				}
+				return group;
+			case LINE:
+				shape = new Line(ax, ay, bx, by);
+				break;
+			case OVAL:
+				shape = new Oval(ax, ay, bx, by);
+				break;
+			default:
+				shape = new Rect(ax, ay, bx, by);
+				break;
+			}
+
+			shape.setFilled((k & FILLED) != 0);
+			int c = buf.getInt(rgb + 4 * i);
+			if (c != lastRgb) {
+				lastColor = Color.rgb((c >> 16) & 0xff, (c >> 8) & 0xff, c & 0xff);
+				lastRgb = c;
+			}
+			shape.setColor(lastColor);
+			return shape;
+		}
+	}
+}
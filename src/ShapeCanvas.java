@@ -11,28 +11,72 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.PrintWriter;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Scanner;
-import java.util.Stack;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
 
-import javafx.event.EventHandler;
+import javafx.event.EventType;
 import javafx.geometry.Point2D;
 import javafx.scene.canvas.Canvas;
+import javafx.scene.SnapshotParameters;
 import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.WritableImage;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
 import javafx.scene.paint.Color;
+import javafx.scene.transform.Transform;
+import javafx.stage.Window;
 
 
 public class ShapeCanvas extends Canvas {
 
-	private Stack<Edit> stackUndo, stackRedo;
+	private static final int HISTORY_EDITS = 1000;
+	private static final long HISTORY_BYTES = 64L << 20;
+	private static final long TILE_BYTES = 64L << 20;
+	// the zoom doubles every ZOOM_STEPS wheel steps
+	private static final int ZOOM_STEPS = 4;
+	private static final int MIN_ZOOM_LEVEL = -6 * ZOOM_STEPS, MAX_ZOOM_LEVEL = 4 * ZOOM_STEPS;
+	private static final Color SELECTION_COLOR = Color.DODGERBLUE;
+	// pixels of the screen a click may miss a shape by
+	private static final double HIT_TOLERANCE = 3;
+
+	private EditHistory history;
+	// the version of the drawing the edit in progress started from
+	private ShapeSnapshot editBase;
 	private GraphicsContext gc; 
 	private ArrayList<MyShape> shapes; 
+	private ShapeStore store;
+	private ShapeIndex index;
+	private ShapeDocument document;
+	private Autosave autosave;
+	private ShapeRenderer renderer;
 	private MyShape curShape; 
 	private Color curColor = Color.BLACK; 
 	private double width, height;
 	private boolean curFilled; 
+	private double dirtyMinX, dirtyMinY, dirtyMaxX, dirtyMaxY;
+	private static final double DIRTY_PADDING = 2;
+	private WritableImage staticLayer;
+	private double layerScaleX = 1, layerScaleY = 1;
+	private ArrayList<MyShape> dragShapes = new ArrayList<>();
+	// the dragged shapes that are part of the drawing, which the tiles and the cached layer leave out
+	private Set<MyShape> dragExcluded = Collections.newSetFromMap(new IdentityHashMap<>());
+	private TileCache tiles;
+	private int zoomLevel;
+	private double zoom = 1;
+	private double panX, panY;
+	private boolean panning;
+	private double panLastX, panLastY;
+	private Set<MyShape> selection = Collections.newSetFromMap(new IdentityHashMap<>());
+	private RepaintScheduler scheduler = new RepaintScheduler(this);
+	private Tool tool;
 
 	/**
 	 * Constructs a ShapeCanvas object with the specified width and height.
@@ -46,8 +90,33 @@ public class ShapeCanvas extends Canvas {
 		this.height = height;
 		gc = getGraphicsContext2D();
 		shapes = new ArrayList<>();
-		stackUndo = new Stack<>();
-		stackRedo = new Stack<>();
+		store = new ShapeStore();
+		index = new ShapeIndex(store);
+		document = new ShapeDocument(store, index);
+		renderer = new ShapeRenderer();
+		history = new EditHistory(HISTORY_EDITS, HISTORY_BYTES);
+		tiles = new TileCache(index, TILE_BYTES);
+		resetDirty();
+
+		// the wheel zooms and the middle or right button pans, before the tools see the events
+		addEventFilter(ScrollEvent.SCROLL, e -> {
+			if (e.getDeltaY() != 0) {
+				zoomAt(e.getX(), e.getY(), e.getDeltaY() > 0 ? 1 : -1);
+			}
+			e.consume();
+		});
+		addEventFilter(MouseEvent.ANY, this::filterPan);
+
+		// once a pulse has passed the renderer may write the images of the earlier frames again
+		Runnable nextFrame = renderer::nextFrame;
+		sceneProperty().addListener((observable, oldScene, newScene) -> {
+			if (oldScene != null) {
+				oldScene.removePostLayoutPulseListener(nextFrame);
+			}
+			if (newScene != null) {
+				newScene.addPostLayoutPulseListener(nextFrame);
+			}
+		});
 	}
 
 	/**
@@ -70,34 +139,429 @@ public class ShapeCanvas extends Canvas {
 	}
 	
 	/**
-	 * Clears the canvas and redraws all shapes.
+	 * Clears the canvas and redraws all shapes that lie in the visible part of the canvas.
+	 * The cached tiles are dropped, so every visible tile is rasterized again.
 	 */
 	public void paint() {
-		// Clear canvas
+		if (tiles != null) {
+			tiles.clear();
+		}
+		redraw();
+	}
+
+	/**
+	 * Redraws the visible part of the canvas, keeping the cached tiles apart from the ones
+	 * the dirty region touches.
+	 */
+	private void redraw() {
+		scheduler.cancel();
 		gc.clearRect(0, 0, width, height);
 
-		// Draw all shapes
-		for (MyShape s : shapes) {
-			s.draw(gc);
+		if (tiles != null) {
+			tiles.invalidate(dirtyMinX, dirtyMinY, dirtyMaxX - dirtyMinX, dirtyMaxY - dirtyMinY);
+			tiles.draw(gc, zoomLevel, zoom, panX, panY, 0, 0, width, height, dragExcluded);
+		}
+		else {
+			drawShapes(0, 0, width, height, null);
+		}
+		drawLive();
+
+		resetDirty();
+	}
+
+	/**
+	 * Redraws only the dirty region of the canvas, that is the union of the areas
+	 * marked by markDirty since the last paint. Only the shapes whose bounds intersect
+	 * that region are drawn, clipped to it.
+	 */
+	public void repaint() {
+		// the dirty region, on the screen snapped to whole pixels and limited to the viewport
+		double x0 = Math.max(0, Math.floor(dirtyMinX * zoom - panX));
+		double y0 = Math.max(0, Math.floor(dirtyMinY * zoom - panY));
+		double x1 = Math.min(width, Math.ceil(dirtyMaxX * zoom - panX));
+		double y1 = Math.min(height, Math.ceil(dirtyMaxY * zoom - panY));
+
+		if (tiles != null && dragShapes.isEmpty()) {
+			// during a drag only the dragged shapes change, and it is not in the tiles
+			tiles.invalidate(dirtyMinX, dirtyMinY, dirtyMaxX - dirtyMinX, dirtyMaxY - dirtyMinY);
+		}
+		resetDirty();
+
+		if (x0 >= x1 || y0 >= y1) {
+			return;
+		}
+
+		gc.save();
+		gc.beginPath();
+		gc.rect(x0, y0, x1 - x0, y1 - y0);
+		gc.clip();
+		gc.clearRect(x0, y0, x1 - x0, y1 - y0);
+
+		if (tiles != null) {
+			tiles.draw(gc, zoomLevel, zoom, panX, panY, x0, y0, x1, y1, dragExcluded);
+		}
+		else if (staticLayer != null) {
+			// during a drag everything but the dragged shape comes from the cached layer
+			gc.drawImage(staticLayer, x0 * layerScaleX, y0 * layerScaleY, (x1 - x0) * layerScaleX, (y1 - y0) * layerScaleY,
+					x0, y0, x1 - x0, y1 - y0);
+		}
+		else {
+			drawShapes(x0, y0, x1, y1, null);
+		}
+		drawLive();
+
+		gc.restore();
+	}
+
+	/**
+	 * Requests a repaint of the dirty region on the next frame, so that the changes of all the
+	 * events that arrive before it are drawn together, once.
+	 */
+	public void requestRepaint() {
+		scheduler.request();
+	}
+
+	/**
+	 * Returns the scheduler of the repaints, which keeps the timing statistics of the frames.
+	 *
+	 * @return The RepaintScheduler of this canvas.
+	 */
+	public RepaintScheduler getRepaintScheduler() {
+		return scheduler;
+	}
+
+	/**
+	 * Draws the shapes in a rectangle of the screen straight onto the canvas, without tiles.
+	 *
+	 * @param x0       The left edge of the rectangle on the screen.
+	 * @param y0       The top edge of the rectangle on the screen.
+	 * @param x1       The right edge of the rectangle on the screen.
+	 * @param y1       The bottom edge of the rectangle on the screen.
+	 * @param excluded The shapes that are left out, or null.
+	 */
+	private void drawShapes(double x0, double y0, double x1, double y1, Set<MyShape> excluded) {
+		double x = (x0 + panX) / zoom, y = (y0 + panY) / zoom;
+		double w = (x1 - x0) / zoom, h = (y1 - y0) / zoom;
+		// shapes just outside the region may still bleed into it with their strokes
+		ArrayList<MyShape> visible = index.search(x - DIRTY_PADDING, y - DIRTY_PADDING, w + 2 * DIRTY_PADDING, h + 2 * DIRTY_PADDING);
+		if (excluded != null && !excluded.isEmpty()) {
+			visible.removeIf(excluded::contains);
 		}
 
-		// Draw current shape if not null
+		gc.save();
+		gc.transform(zoom, 0, 0, zoom, -panX, -panY);
+		renderer.setScale(zoom);
+		renderer.draw(gc, visible, x, y, w, h);
+		gc.restore();
+	}
+
+	/**
+	 * Draws the outlines of the selected shapes, the shapes being dragged and the shape being drawn
+	 * on top of everything else.
+	 */
+	private void drawLive() {
+		if (dragShapes.isEmpty() && curShape == null && selection.isEmpty()) {
+			return;
+		}
+		gc.save();
+		gc.transform(zoom, 0, 0, zoom, -panX, -panY);
+		if (!selection.isEmpty()) {
+			drawSelection();
+		}
+		for (MyShape s : dragShapes) {
+			if (s != curShape) {
+				s.draw(gc);
+			}
+		}
 		if (curShape != null) {
 			curShape.draw(gc);
 		}
+		gc.restore();
+	}
+
+	/**
+	 * Outlines the bounding boxes of the selected shapes that lie in the visible part of the canvas.
+	 */
+	private void drawSelection() {
+		double x0 = toDrawingX(0), y0 = toDrawingY(0);
+		double x1 = toDrawingX(width), y1 = toDrawingY(height);
+		gc.setStroke(SELECTION_COLOR);
+		// one pixel wide at every zoom
+		gc.setLineWidth(1 / zoom);
+		gc.beginPath();
+		for (MyShape s : selection) {
+			if (s.getULX() <= x1 && s.getULY() <= y1 && s.getULX() + s.getWidth() >= x0 && s.getULY() + s.getHeight() >= y0) {
+				gc.rect(s.getULX(), s.getULY(), s.getWidth(), s.getHeight());
+			}
+		}
+		gc.stroke();
+		gc.setLineWidth(1);
 	}
 
 	/**
-	 * Adds a shape to the canvas and repaints.
+	 * Starts a drag of the given shape. The other shapes come from the tiles, or without tiles are rendered
+	 * once into a cached image, so that each frame of the drag only has to copy the dirty part back and
+	 * draw the dragged shape on top of it.
+	 *
+	 * @param active The shape being dragged, either the current shape or a shape on the canvas.
+	 */
+	public void beginDrag(MyShape active) {
+		beginDrag(active == null ? Collections.emptyList() : Collections.singletonList(active));
+	}
+
+	/**
+	 * Starts a drag of several shapes, such as the selection, in the same way as a drag of one shape.
+	 * The shapes are drawn on top of the others in their drawing order until the drag ends.
+	 *
+	 * @param active The shapes being dragged.
+	 */
+	public void beginDrag(Collection<MyShape> active) {
+		dragShapes.clear();
+		dragExcluded.clear();
+		dragShapes.addAll(active);
+		for (MyShape s : active) {
+			if (index.contains(s)) {
+				dragExcluded.add(s);
+			}
+		}
+		if (dragShapes.size() > 1) {
+			dragShapes.sort(Comparator.comparingLong(s -> dragExcluded.contains(s) ? store.order[s.id] : Long.MAX_VALUE));
+		}
+
+		if (tiles != null) {
+			// the tiles under the shapes are rasterized again without them
+			for (MyShape s : dragExcluded) {
+				tiles.invalidate(s.getULX(), s.getULY(), s.getWidth(), s.getHeight());
+			}
+			redraw();
+			return;
+		}
+
+		gc.clearRect(0, 0, width, height);
+		drawShapes(0, 0, width, height, dragExcluded);
+		if (curShape != null && !dragShapes.contains(curShape)) {
+			gc.save();
+			gc.transform(zoom, 0, 0, zoom, -panX, -panY);
+			curShape.draw(gc);
+			gc.restore();
+		}
+
+		// snapshot at the resolution of the screen so the cached layer stays sharp on HiDPI displays
+		Window window = getScene() != null ? getScene().getWindow() : null;
+		layerScaleX = window != null ? window.getOutputScaleX() : 1;
+		layerScaleY = window != null ? window.getOutputScaleY() : 1;
+
+		SnapshotParameters params = new SnapshotParameters();
+		params.setFill(Color.TRANSPARENT);
+		params.setTransform(Transform.scale(layerScaleX, layerScaleY));
+		staticLayer = snapshot(params, null);
+
+		if (!dragShapes.isEmpty()) {
+			gc.save();
+			gc.transform(zoom, 0, 0, zoom, -panX, -panY);
+			for (MyShape s : dragShapes) {
+				s.draw(gc);
+			}
+			gc.restore();
+		}
+		resetDirty();
+	}
+
+	/**
+	 * Ends the current drag: the dragged shapes are put back at their places in the drawing order,
+	 * in the tiles they now cover, or without tiles by painting the whole canvas again.
+	 */
+	public void endDrag() {
+		staticLayer = null;
+
+		if (tiles == null) {
+			dragShapes.clear();
+			dragExcluded.clear();
+			paint();
+			return;
+		}
+		tiles.dropPartial();
+		for (MyShape s : dragShapes) {
+			markDirty(s);
+		}
+		dragShapes.clear();
+		dragExcluded.clear();
+		redraw();
+	}
+
+	/**
+	 * Moves the view by the given number of pixels.
+	 *
+	 * @param dx The pixels to move the drawing to the right.
+	 * @param dy The pixels to move the drawing down.
+	 */
+	public void pan(double dx, double dy) {
+		panX = Math.round(panX - dx);
+		panY = Math.round(panY - dy);
+		redraw();
+	}
+
+	/**
+	 * Zooms the view in or out by whole zoom steps, keeping the point of the drawing under the
+	 * given point of the screen in place. Every ZOOM_STEPS steps double or halve the zoom.
+	 *
+	 * @param x     The x-coordinate on the screen to zoom around.
+	 * @param y     The y-coordinate on the screen to zoom around.
+	 * @param steps The number of steps to zoom in, or out when negative.
+	 */
+	public void zoomAt(double x, double y, int steps) {
+		int level = Math.max(MIN_ZOOM_LEVEL, Math.min(MAX_ZOOM_LEVEL, zoomLevel + steps));
+		if (level == zoomLevel || !dragShapes.isEmpty()) {
+			return;
+		}
+		double drawingX = toDrawingX(x), drawingY = toDrawingY(y);
+		zoomLevel = level;
+		zoom = Math.pow(2, (double) level / ZOOM_STEPS);
+		// whole pixels keep the tiles aligned with the pixels of the screen
+		panX = Math.round(drawingX * zoom - x);
+		panY = Math.round(drawingY * zoom - y);
+		redraw();
+	}
+
+	/**
+	 * Returns the number of pixels of the screen a unit of the drawing covers.
+	 *
+	 * @return The zoom factor.
+	 */
+	public double getZoom() {
+		return zoom;
+	}
+
+	/**
+	 * Converts an x-coordinate of the screen into the drawing.
+	 *
+	 * @param x The x-coordinate on the screen.
+	 * @return The x-coordinate in the drawing.
+	 */
+	public double toDrawingX(double x) {
+		return (x + panX) / zoom;
+	}
+
+	/**
+	 * Converts a y-coordinate of the screen into the drawing.
+	 *
+	 * @param y The y-coordinate on the screen.
+	 * @return The y-coordinate in the drawing.
+	 */
+	public double toDrawingY(double y) {
+		return (y + panY) / zoom;
+	}
+
+	/**
+	 * Changes the memory budget of the tile cache. A budget of 0 turns the tiles off,
+	 * and the shapes are then drawn straight onto the canvas.
+	 * <p>
+	 * The tiles are rasterized in software by Java 2D, while the canvas draws through JavaFX: the shapes
+	 * without tiles, and with tiles the shape being dragged or drawn on top of them. Both follow the same
+	 * level of detail rules, but their antialiasing differs slightly, so a shape can shift by a fraction
+	 * of a pixel when it is picked up or put down. That is accepted so that the tiles need neither
+	 * a display nor the JavaFX renderer.
+	 *
+	 * @param maxBytes The largest number of bytes the tiles may take.
+	 */
+	public void setTileBudget(long maxBytes) {
+		tiles = maxBytes > 0 ? new TileCache(index, maxBytes) : null;
+		if (tiles != null) {
+			// the new tiles follow the level of detail rules the renderer was given
+			tiles.setDetailThresholds(renderer.getDotSize(), renderer.getOutlineSize());
+		}
+		paint();
+	}
+
+	/**
+	 * Pans the view while the middle or the right button is dragged, and keeps those events from the tools.
+	 *
+	 * @param e The mouse event.
+	 */
+	private void filterPan(MouseEvent e) {
+		EventType<? extends MouseEvent> type = e.getEventType();
+		if (type == MouseEvent.MOUSE_PRESSED && e.getButton() != MouseButton.PRIMARY && dragShapes.isEmpty()) {
+			panning = true;
+			panLastX = e.getX();
+			panLastY = e.getY();
+		}
+		else if (type == MouseEvent.MOUSE_DRAGGED && panning) {
+			pan(e.getX() - panLastX, e.getY() - panLastY);
+			panLastX = e.getX();
+			panLastY = e.getY();
+		}
+		else if (type == MouseEvent.MOUSE_RELEASED && panning) {
+			panning = false;
+		}
+		else if (type != MouseEvent.MOUSE_CLICKED || e.getButton() == MouseButton.PRIMARY) {
+			return;
+		}
+		e.consume();
+	}
+
+	/**
+	 * Marks the area covered by a shape as needing to be redrawn by the next repaint.
+	 * Call it before and after changing a shape so that both the old and the new area are covered.
+	 *
+	 * @param s The shape whose bounds are marked.
+	 */
+	public void markDirty(MyShape s) {
+		markDirty(s.getULX(), s.getULY(), s.getWidth(), s.getHeight());
+	}
+
+	/**
+	 * Marks a rectangular area as needing to be redrawn by the next repaint.
+	 * The area is padded a little to cover the stroke width and anti-aliasing of the edges.
+	 *
+	 * @param x The x-coordinate of the upper-left corner of the area.
+	 * @param y The y-coordinate of the upper-left corner of the area.
+	 * @param w The width of the area.
+	 * @param h The height of the area.
+	 */
+	public void markDirty(double x, double y, double w, double h) {
+		dirtyMinX = Math.min(dirtyMinX, x - DIRTY_PADDING);
+		dirtyMinY = Math.min(dirtyMinY, y - DIRTY_PADDING);
+		dirtyMaxX = Math.max(dirtyMaxX, x + w + DIRTY_PADDING);
+		dirtyMaxY = Math.max(dirtyMaxY, y + h + DIRTY_PADDING);
+	}
+
+	/**
+	 * Empties the dirty region.
+	 */
+	private void resetDirty() {
+		dirtyMinX = dirtyMinY = Double.POSITIVE_INFINITY;
+		dirtyMaxX = dirtyMaxY = Double.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * Adds a shape to the canvas, moves its geometry into the shape store,
+	 * adds it to the spatial index and marks its area dirty.
 	 *
 	 * @param s The shape to be added.
 	 */
 	public void addShape(MyShape s) {
 		shapes.add(s);
+		store.attach(s);
+		index.insert(s);
+		markDirty(s);
 		//paint();
 		//System.out.println(s.toString());
 	}
 
+	/**
+	 * Adds several shapes to the canvas at once, on top of the shapes already there and in the given order.
+	 *
+	 * @param added The shapes to be added.
+	 */
+	public void addShapes(List<MyShape> added) {
+		shapes.addAll(added);
+		for (MyShape s : added) {
+			store.attach(s);
+			index.insert(s);
+			markDirty(s);
+		}
+	}
+
 	/**
 	 * Sets the current shape to be drawn.
 	 *
@@ -117,10 +581,61 @@ public class ShapeCanvas extends Canvas {
 		return shapes;
 	}
 	/**
-	 * Clears all shapes from the canvas.
+	 * Returns the current version of the drawing as a snapshot that never changes, so it can be saved
+	 * or drawn on another thread while the editing goes on. Only the shapes changed since the last
+	 * snapshot are recorded again.
+	 *
+	 * @return The snapshot of the drawing.
+	 */
+	public ShapeSnapshot snapshot() {
+		return document.snapshot();
+	}
+
+	/**
+	 * Starts saving the drawing into a directory after every edit, undo and redo, so that it can be
+	 * recovered if the editor crashes. A drawing left in the directory by an editor that crashed is
+	 * recovered first and added to the canvas.
+	 *
+	 * @param dir The directory to save into.
+	 * @return The autosave, to close when the editor exits normally.
+	 * @throws IOException If the directory cannot be saved into, for example since another editor is saving into it.
+	 */
+	public Autosave startAutosave(File dir) throws IOException {
+		autosave = new Autosave(document, dir);
+		// the directory is locked now, so the files are left from a crash and not those of a running editor
+		ArrayList<MyShape> recovered = autosave.recover();
+		if (recovered != null) {
+			addShapes(recovered);
+		}
+		autosave.checkpoint();
+		return autosave;
+	}
+
+	/**
+	 * Saves the changes of the drawing since the last checkpoint, if autosave is on.
+	 * The edits do this on their own; changes made without an edit, such as loading a file, need a call.
+	 */
+	public void checkpoint() {
+		if (autosave != null) {
+			autosave.checkpoint();
+		}
+	}
+
+	/**
+	 * Clears all shapes from the canvas, and the undo history with them, since the edits
+	 * were made to a drawing that is gone.
 	 */
 	public void clear() {
+		history.clear();
+		editBase = null;
 		shapes.clear();
+		index.clear();
+		store.clear();
+		selection.clear();
+		staticLayer = null;
+		dragShapes.clear();
+		dragExcluded.clear();
+		checkpoint();
 		paint();
 	}
 
@@ -128,60 +643,44 @@ public class ShapeCanvas extends Canvas {
 	/**
 	 * Writes shape data to a text file.
 	 * Each shape is represented as a string in the format:
-	 * "Type x1 y1 x2 y2 filled r g b"	 *
+	 * "Type x1 y1 x2 y2 filled r g b", written by a ShapeTextWriter straight into the file.
 	 * @param fileObj File object representing the text file to write shape data to
 	 */
 	public void toTextFile(File fileObj) {
 		try {
-			PrintWriter fileOut = new PrintWriter(fileObj);
-			fileOut.println(shapes.size());
+			ShapeTextWriter fileOut = new ShapeTextWriter(
+					new OutputStreamWriter(new FileOutputStream(fileObj), StandardCharsets.ISO_8859_1));
 
-			//get string format for each shape and write it on the file
-			for (MyShape s : shapes) {
-				fileOut.println(s.toString());
-				//System.out.println(s.toString()); //for testing
+			//the shapes are streamed to the file, members of groups included, without building their Strings
+			try {
+				fileOut.writeShapes(shapes);
+			}
+			finally {
+				fileOut.close();
 			}
-
-			fileOut.close();
 		}
 		catch(FileNotFoundException e) {
 			System.out.println(fileObj.getName() + " Couldn't be opened for writing");
 			e.printStackTrace();
 		}
+		catch(IOException e) {
+			System.out.println(fileObj.getName() + " could not be written");
+			e.printStackTrace();
+		}
 	}
 
 	/**
 	 * Reads shape data from a text file and adds shapes to the internal list.
-	 * Methods loadSingletonText and loadGroupText are used depending on the shape type
+	 * The file is parsed in chunks on all cores by ShapeTextFile, which also puts the shape groups together.
 	 * @param fileObj File object representing the text file with shape data
 	 */
 
 	public void fromTextFile(File fileObj) {
 		try {
-			Scanner fileIn = new Scanner(fileObj);
+			ArrayList<MyShape> loaded = ShapeTextFile.read(fileObj);
 
 			clear();
-			
-			int nShapes = fileIn.nextInt();
-
-			for( int i =0; i < nShapes; ++i) {
-				String type = fileIn.next();
-				MyShape shape = null;
-				
-				if( !type.equalsIgnoreCase("ShapeGroup")) {
-					shape = loadSingletonText(fileIn, type);
-				}
-				
-				else {
-					shape = loadGroupText(fileIn);
-				}
-				
-
-				shapes.add(shape);
-
-			}
-
-			fileIn.close();
+			addShapes(loaded);
 
 			paint();
 		}
@@ -189,28 +688,24 @@ public class ShapeCanvas extends Canvas {
 			System.out.println(fileObj.getName()+ " could not be opened for reading");
 			e.printStackTrace();
 		}
+		catch(IOException e){
+			System.out.println(fileObj.getName()+ " could not be read");
+			e.printStackTrace();
+			paint();
+		}
 	}
 
 	/**
-	 * Writes the shapes data to a binary file.
+	 * Writes the shapes data to a binary file in the columnar format of ShapeBinaryFile.
 	 * @param fileObj The file object to write the data to.
 	 */
 
 	public void toBinaryFile(File fileObj) {
 		try {
-			FileOutputStream fOS = new FileOutputStream(fileObj);
-			ObjectOutputStream fOut = new ObjectOutputStream(fOS);
-			fOut.writeInt(shapes.size());
-
-			for(MyShape s : shapes) {
-				fOut.writeObject(s);
-			}
-			
-			fOS.close();
-			fOut.close();
+			ShapeBinaryFile.write(shapes, fileObj);
 		}
 		catch(IOException e){
-			System.out.println(fileObj.getName()+ "could not be opened for reading");
+			System.out.println(fileObj.getName()+ " could not be opened for writing");
 			e.printStackTrace(); 
 		}
 	}
@@ -218,11 +713,39 @@ public class ShapeCanvas extends Canvas {
 
 	/**
 	 * Reads shapes data from a binary file.
+	 * Files in the columnar format are memory-mapped, files written with
+	 * object serialization by earlier versions are still read the old way.
 	 * @param fileObj The file object to read the data from.
 	 */
 
 	public void fromBinaryFile(File fileObj) {
 
+		try {
+			if (ShapeBinaryFile.isColumnar(fileObj)) {
+				ArrayList<MyShape> loaded = ShapeBinaryFile.read(fileObj);
+				clear();
+				for (MyShape s : loaded) {
+					addShape(s);
+				}
+				paint();
+			}
+			else {
+				fromSerializedFile(fileObj);
+			}
+		}
+		catch (IOException e) {
+			System.out.println(fileObj.getName()+ " could not be read");
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Reads shapes data from a binary file written with object serialization.
+	 * @param fileObj The file object to read the data from.
+	 */
+
+	private void fromSerializedFile(File fileObj) {
+
 		try {
 			FileInputStream fIS = new FileInputStream(fileObj);
 			ObjectInputStream fIn = new ObjectInputStream(fIS);
@@ -232,7 +755,7 @@ public class ShapeCanvas extends Canvas {
 
 			for ( int i = 0; i < n ; i ++) {
 				MyShape s = (MyShape) fIn.readObject();
-				shapes.add(s);
+				addShape(s);
 			}
 
 			fIn.close();
@@ -244,63 +767,234 @@ public class ShapeCanvas extends Canvas {
 
 
 		catch (IOException e) {
-			for( MyShape s : shapes)
-				e.printStackTrace();
+			e.printStackTrace();
 		}
 
 		catch (ClassNotFoundException e2) {
-			for( MyShape s : shapes)
-				e2.printStackTrace();
+			e2.printStackTrace();
 		}
 
 	}
 
 
-	public MyShape closestShape(double x, double y) {
-		if(shapes.size() == 0) {
-			return null;
+	/**
+	 * Finds the shapes whose bounding boxes intersect a rectangle, using the spatial index.
+	 * Only the shapes near the rectangle are looked at.
+	 *
+	 * @param x The x-coordinate of the upper-left corner of the rectangle.
+	 * @param y The y-coordinate of the upper-left corner of the rectangle.
+	 * @param w The width of the rectangle.
+	 * @param h The height of the rectangle.
+	 * @return The intersecting shapes in drawing order.
+	 */
+	public ArrayList<MyShape> shapesIntersecting(double x, double y, double w, double h) {
+		return index.search(x, y, w, h);
+	}
+
+	/**
+	 * Finds the shapes whose bounding boxes lie entirely inside a rectangle, using the spatial index.
+	 *
+	 * @param x The x-coordinate of the upper-left corner of the rectangle.
+	 * @param y The y-coordinate of the upper-left corner of the rectangle.
+	 * @param w The width of the rectangle.
+	 * @param h The height of the rectangle.
+	 * @return The contained shapes in drawing order.
+	 */
+	public ArrayList<MyShape> shapesContainedIn(double x, double y, double w, double h) {
+		ArrayList<MyShape> found = index.search(x, y, w, h);
+		found.removeIf(s -> s.getULX() < x || s.getULY() < y
+				|| s.getULX() + s.getWidth() > x + w || s.getULY() + s.getHeight() > y + h);
+		return found;
+	}
+
+	/**
+	 * Selects shapes, and outlines them on the canvas.
+	 *
+	 * @param selected The shapes to select.
+	 * @param add      True to add them to the current selection, false to replace it.
+	 */
+	public void select(Collection<MyShape> selected, boolean add) {
+		if (!add) {
+			for (MyShape s : selection) {
+				markDirty(s);
+			}
+			selection.clear();
+		}
+		for (MyShape s : selected) {
+			if (selection.add(s)) {
+				markDirty(s);
+			}
 		}
+		repaint();
+	}
 
-		double minDistance = Double.POSITIVE_INFINITY ;
-		double distance;
-		MyShape closestShape = null ;
+	/**
+	 * Tells whether a shape is selected.
+	 *
+	 * @param s The shape.
+	 * @return True if the shape is selected.
+	 */
+	public boolean isSelected(MyShape s) {
+		return selection.contains(s);
+	}
 
-		for (MyShape shape : shapes) {
-			distance = shape.distance(x,y);
-			if( distance < minDistance) {
-				closestShape = shape;
-				minDistance = distance;
+	/**
+	 * Returns the selected shapes, in no particular order.
+	 *
+	 * @return A read-only view of the selection.
+	 */
+	public Set<MyShape> getSelection() {
+		return Collections.unmodifiableSet(selection);
+	}
+
+	/**
+	 * Finds the topmost shape under a point. Only the shapes whose bounding boxes, grown by the tolerance,
+	 * contain the point are found by the spatial index, and only those are tested with their exact geometry.
+	 *
+	 * @param x         The x-coordinate of the point.
+	 * @param y         The y-coordinate of the point.
+	 * @param tolerance How far from a shape the point may be, in drawing units.
+	 * @return The last drawn shape the point hits, or null if it hits none.
+	 */
+	public MyShape hitTest(double x, double y, double tolerance) {
+		ArrayList<MyShape> candidates = index.search(x - tolerance, y - tolerance, 2 * tolerance, 2 * tolerance);
+		for (int i = candidates.size() - 1; i >= 0; i--) {
+			MyShape s = candidates.get(i);
+			if (s.hitTest(x, y, tolerance)) {
+				return s;
 			}
 		}
-		return closestShape;
+		return null;
 	}
 
 	/**
-	 * Removes the given shape object from the canvas
+	 * Finds the topmost shape under a point, allowing a few pixels of the screen around the point
+	 * so that thin lines and outlines are easy to pick at any zoom.
+	 *
+	 * @param x The x-coordinate of the point in the drawing.
+	 * @param y The y-coordinate of the point in the drawing.
+	 * @return The shape under the point, or null if there is none.
+	 */
+	public MyShape shapeAt(double x, double y) {
+		return hitTest(x, y, HIT_TOLERANCE / zoom);
+	}
+
+	/**
+	 * Finds the shape whose center is the closest to the given point, using the spatial index.
+	 *
+	 * @param x The x-coordinate of the point.
+	 * @param y The y-coordinate of the point.
+	 * @return The closest shape, or null if the canvas is empty.
+	 */
+	public MyShape closestShape(double x, double y) {
+		return index.nearest(x, y);
+	}
+
+	/**
+	 * Removes the given shape object from the canvas and marks its area dirty
 	 * @param s the shape object to be removed
 	 */
 	public void deleteShape(MyShape s) {
 		shapes.remove(s);
+		index.remove(s);
+		store.detach(s);
+		selection.remove(s);
+		markDirty(s);
 	}
 
 	/**
-	 * Adds a new edit action to the manager for potential undoing.
-	 * 
-	 * @param edit The edit action to be added for undoing.
+	 * Adds shapes on top of the drawing and draws only them, over what is already on the canvas,
+	 * instead of painting the whole drawing again. Used to show a drawing while it is still being loaded.
+	 *
+	 * @param added The shapes to be added.
 	 */
-	public void addEdit(Edit edit) {
-	    stackUndo.push(edit);
-        stackRedo.clear(); //so that re-do can only be used right after un-do
+	public void appendShapes(List<MyShape> added) {
+		shapes.addAll(added);
+		double x = toDrawingX(0), y = toDrawingY(0);
+		double w = width / zoom, h = height / zoom;
+		ArrayList<MyShape> visible = new ArrayList<>();
+		for (MyShape s : added) {
+			store.attach(s);
+			index.insert(s);
+			if (s.getULX() <= x + w && s.getULY() <= y + h
+					&& s.getULX() + s.getWidth() >= x && s.getULY() + s.getHeight() >= y) {
+				visible.add(s);
+			}
+		}
+
+		if (tiles != null) {
+			// the cached tiles get the shapes drawn on top, the others are rasterized with them when needed
+			tiles.drawOnTop(added, zoomLevel);
+			tiles.draw(gc, zoomLevel, zoom, panX, panY, 0, 0, width, height, dragExcluded);
+			drawLive();
+			return;
+		}
+		if (staticLayer != null) {
+			// a drag is in progress, its next frame picks the shapes up
+			for (MyShape s : visible) {
+				markDirty(s);
+			}
+			return;
+		}
+		gc.save();
+		gc.transform(zoom, 0, 0, zoom, -panX, -panY);
+		renderer.setScale(zoom);
+		renderer.draw(gc, visible, x, y, w, h);
+		gc.restore();
+		drawLive();
+	}
+
+	/**
+	 * Removes several shapes from the canvas in one pass over the drawing, instead of
+	 * searching the drawing once per shape, and marks their areas dirty.
+	 *
+	 * @param removed The shapes to be removed.
+	 */
+	public void removeShapes(Collection<MyShape> removed) {
+		Set<MyShape> set = Collections.newSetFromMap(new IdentityHashMap<>());
+		set.addAll(removed);
+		shapes.removeIf(set::contains);
+
+		for (MyShape s : set) {
+			index.remove(s);
+		}
+		for (MyShape s : set) {
+			store.detach(s);
+			selection.remove(s);
+			markDirty(s);
+		}
+	}
+
+	/**
+	 * Marks the start of an edit: undoing the edit ended next brings the drawing back to how it is now.
+	 * The tools call it before they change the drawing.
+	 */
+	public void beginEdit() {
+		editBase = document.snapshot();
+	}
+
+	/**
+	 * Marks the end of the edit begun last. Everything changed since, however many shapes that touched,
+	 * is recorded in the history as a single step with the versions of the drawing from before and after it,
+	 * and the drawing is saved if autosave is on.
+	 */
+	public void endEdit() {
+		long bytes = document.recordedBytes();
+		ShapeSnapshot after = document.snapshot();
+		// without a beginEdit there is nothing known to go back to, and undoing the edit changes nothing
+		history.add(editBase != null ? editBase : after, after, document.recordedBytes() - bytes);
+		editBase = null;
+		checkpoint();
 	}
 
 	/**
 	 * Undoes the last edit action if available.
 	 */
 	public void undo() {
-	    if (!stackUndo.empty()) {
-	        Edit edit = stackUndo.pop();
-	        stackRedo.push(edit);
-	        edit.undo();
+	    ShapeSnapshot version = history.undo();
+	    if (version != null) {
+	        restore(version);
+	        checkpoint();
 	    }
 	}
 
@@ -308,103 +1002,146 @@ public class ShapeCanvas extends Canvas {
 	 * Redoes the last undone edit action if available.
 	 */
 	public void redo() {
-	    if (!stackRedo.empty()) {
-	        Edit edit = stackRedo.pop();
-	        edit.redo();
-	        stackUndo.push(edit);
+	    ShapeSnapshot version = history.redo();
+	    if (version != null) {
+	        restore(version);
+	        checkpoint();
 	    }
 	}
 
-	
 	/**
-	 * Loads and returns a singleton shape object from the input Scanner.
-	 * The shape type is determined by the provided shapeType parameter.
+	 * Makes the shapes of the canvas match another version of the drawing. Only the shapes whose records differ
+	 * between the current version and that one are touched: a line, rect or oval, or a group that only moved,
+	 * is changed in place, and any other shape is replaced by a new one made from its record, at the place
+	 * in the drawing order it had in that version.
 	 *
-	 * @param fIn       The Scanner object used for reading input.
-	 * @param shapeType A String indicating the type of shape to load ("line", "oval", or "rect").
-	 * @return A MyShape object representing the loaded shape.
+	 * @param version The version to restore.
 	 */
+	private void restore(ShapeSnapshot version) {
+		ArrayList<MyShape> removed = new ArrayList<>();
+		ArrayList<MyShape> added = new ArrayList<>();
+		ArrayList<Long> keys = new ArrayList<>();
+		document.snapshot().diff(version, (key, before, after) -> {
+			MyShape s = before != null ? shapeWithOrder(key) : null;
+			if (s != null && after != null) {
+				markDirty(s);
+				if (before.changeInPlace(s, after)) {
+					markDirty(s);
+					return;
+				}
+			}
+			if (s != null) {
+				removed.add(s);
+			}
+			if (after != null) {
+				added.add(after.toShape());
+				keys.add(key);
+			}
+		});
 
-	private MyShape loadSingletonText(Scanner fIn, String shapeType) {
-		int x1 = fIn.nextInt();
-		int y1 = fIn.nextInt();
-		int x2 = fIn.nextInt();
-		int y2  = fIn.nextInt();
-		Boolean fill = fIn.nextBoolean(); 
-		double r    = fIn.nextDouble();
-		double g    = fIn.nextDouble();
-		double b    = fIn.nextDouble();
-		Color  col  = Color.color(r, g, b);
-
-		MyShape shape = null;
-		
-		if( shapeType.equalsIgnoreCase("line")) {
-			shape = new Line(x1, y1, x2, y2);
+		removeShapes(removed);
+		for (int i = 0; i < added.size(); i++) {
+			MyShape s = added.get(i);
+			store.attach(s);
+			index.insert(s, keys.get(i));
+			markDirty(s);
 		}
-
-		else if (shapeType.equalsIgnoreCase("oval")){
-			shape = new Oval(x1,y1,x2,y2);
+		if (!added.isEmpty()) {
+			mergeShapes(added, keys);
 		}
+		// the shapes match the version now, whose records are taken over as they are
+		document.restored(version);
+	}
 
-		else {
-			shape = new Rect(x1,y1,x2,y2);				
+	/**
+	 * Finds the shape at a position of the drawing order, by a binary search of the shapes, which are kept in that order.
+	 *
+	 * @param order The position in the drawing order.
+	 * @return The shape, or null if no shape has that position.
+	 */
+	private MyShape shapeWithOrder(long order) {
+		int lo = 0, hi = shapes.size() - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			long o = store.order[shapes.get(mid).id];
+			if (o < order) {
+				lo = mid + 1;
+			}
+			else if (o > order) {
+				hi = mid - 1;
+			}
+			else {
+				return shapes.get(mid);
+			}
 		}
-		
-		shape.setFilled(fill);
-		shape.setColor(col);
-		
-		return shape;
-
+		return null;
 	}
-	
-	
+
 	/**
-	 * Loads and returns a ShapeGroup object from the input Scanner.
+	 * Puts shapes that have just been indexed at their places in the drawing order into the list of shapes.
 	 *
-	 * @param fIn The file Scanner object used for reading input.
-	 * @return A ShapeGroup object representing the loaded shape group.
+	 * @param added The shapes, in drawing order.
+	 * @param keys  Their positions in the drawing order.
 	 */
-	
-	private ShapeGroup loadGroupText(Scanner fIn) {
-		
-		int n = fIn.nextInt();
-		int x1 = fIn.nextInt();
-		int y1 = fIn.nextInt();
-		int x2 = fIn.nextInt();
-		int y2  = fIn.nextInt();
-		
-		ShapeGroup group =  new ShapeGroup();
-		group.setP1(x1, y1);
-		group.setP2(x2, y2);
-		
-		for( int i = 0; i < n; i++) {
-			String type = fIn.next();
-			
-			MyShape s = null;
-			if(!type.equalsIgnoreCase("ShapeGroup")) {
-				s = loadSingletonText(fIn, type);
-			}		
-			else {
-				s = loadGroupText(fIn);
+	private void mergeShapes(List<MyShape> added, List<Long> keys) {
+		if (shapes.isEmpty() || keys.get(0) > store.order[shapes.get(shapes.size() - 1).id]) {
+			shapes.addAll(added);
+			return;
+		}
+		ArrayList<MyShape> merged = new ArrayList<>(shapes.size() + added.size());
+		int j = 0;
+		for (MyShape s : shapes) {
+			while (j < added.size() && keys.get(j) < store.order[s.id]) {
+				merged.add(added.get(j++));
 			}
-			group.addMember(s);
+			merged.add(s);
 		}
-			
-		return group;
+		merged.addAll(added.subList(j, added.size()));
+		shapes.clear();
+		shapes.addAll(merged);
 	}
-	
-	
+
+	/**
+	 * Changes how much undo history is kept. The edits already recorded are dropped.
+	 * 
+	 * @param maxEdits The largest number of edits kept.
+	 * @param maxBytes The largest estimated number of bytes the kept edits may hold on to.
+	 */
+	public void setHistoryLimits(int maxEdits, long maxBytes) {
+	    history.clear();
+	    history = new EditHistory(maxEdits, maxBytes);
+	}
+
+	/**
+	 * Changes the sizes below which shapes are drawn with less detail, and repaints.
+	 * Shapes smaller than the dot size become single pixels, groups smaller than the outline size
+	 * are drawn as their bounding box only. Sizes of 0 draw everything in full.
+	 * 
+	 * @param dotSize     The size in pixels below which shapes are drawn as a pixel.
+	 * @param outlineSize The size in pixels below which groups are drawn as their outline.
+	 */
+	public void setDetailThresholds(double dotSize, double outlineSize) {
+		renderer.setDetailThresholds(dotSize, outlineSize);
+		if (tiles != null) {
+			tiles.setDetailThresholds(dotSize, outlineSize);
+		}
+		paint();
+	}
+
 	
 	/**
-	 * Replaces the current mouse listener (clicked/press/release) and mouse motion listener (drag)
-	 * with the passed listener object
+	 * Replaces the current tool: the handlers of the previous tool are removed from the canvas
+	 * and the ones the new tool registered are added.
 	 *
-	 * @param listener An EventHandler object.
+	 * @param next The tool to use, or null for none.
 	 */
-	public void replaceMouseHandler(EventHandler listener) {
-		setOnMousePressed(listener);
-		setOnMouseDragged(listener);
-		setOnMouseReleased(listener);
-		setOnMouseClicked(listener);
+	public void setTool(Tool next) {
+		if (tool != null) {
+			tool.uninstall();
+		}
+		tool = next;
+		if (tool != null) {
+			tool.install();
+		}
 	}
 }
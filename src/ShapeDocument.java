@@ -0,0 +1,259 @@
+import java.util.Arrays;
+
+/**
+ * ShapeDocument keeps the drawing of a canvas as a ShapeSnapshot, a persistent version of it that never changes,
+ * so that it can be saved or drawn on another thread without copying the drawing or stopping the editor.
+ * <p>
+ * The document is the ChangeListener of a ShapeIndex, which reports every shape that is added to the drawing,
+ * removed from it or changed. The document only notes the ids, and brings its snapshot up to date when one is
+ * asked for: each noted shape costs a new record and O(log n) new tree nodes, and asking again without changes
+ * in between costs nothing.
+ * A Listener hears about every record put into the snapshot or taken out of it, which is how Autosave
+ * journals the changes of the drawing.
+ */
+public class ShapeDocument implements ShapeIndex.ChangeListener {
+
+	// rough footprint of a node of the snapshot tree
+	private static final long NODE_BYTES = 48;
+
+	/**
+	 * Receives the changes a ShapeDocument makes to its snapshot, in the order they are made.
+	 * The keys give the positions of the shapes in the drawing order.
+	 */
+	public interface Listener {
+
+		/**
+		 * A shape was added to the drawing or changed.
+		 *
+		 * @param key      The key of the shape.
+		 * @param previous The record the shape had in the snapshot before, or null if it was not in it.
+		 * @param record   The new record of the shape.
+		 */
+		void put(long key, ShapeRecord previous, ShapeRecord record);
+
+		/**
+		 * A shape was removed from the drawing.
+		 *
+		 * @param key The key of the shape.
+		 */
+		void removed(long key);
+
+		/**
+		 * Every shape was removed from the drawing.
+		 */
+		void cleared();
+	}
+
+	private ShapeStore store;
+	private ShapeIndex index;
+	private ShapeSnapshot snapshot = ShapeSnapshot.EMPTY;
+	private Listener listener;
+	// an estimate of the memory taken by all the records and nodes made so far
+	private long recordedBytes;
+
+	// the ids of the shapes added or changed since the last snapshot, each noted once
+	private boolean[] noted = new boolean[1024];
+	private int[] changed = new int[64];
+	private int changedCount;
+
+	// the keys of the shapes removed since the last snapshot
+	private long[] removed = new long[64];
+	private int removedCount;
+
+	/**
+	 * Constructs a ShapeDocument that follows the shapes of an index.
+	 *
+	 * @param store The store that holds the geometry of the shapes.
+	 * @param index The index of the shapes on the canvas.
+	 */
+	public ShapeDocument(ShapeStore store, ShapeIndex index) {
+		this.store = store;
+		this.index = index;
+		index.setChangeListener(this);
+	}
+
+	/**
+	 * Sets the listener that hears about the changes made to the snapshot from now on.
+	 *
+	 * @param listener The listener, or null for none.
+	 */
+	public void setListener(Listener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Returns the current version of the drawing.
+	 *
+	 * @return A snapshot that stays valid whatever happens to the drawing afterwards.
+	 */
+	public ShapeSnapshot snapshot() {
+		for (int i = 0; i < removedCount; i++) {
+			ShapeSnapshot next = snapshot.without(removed[i]);
+			if (next != snapshot && listener != null) {
+				listener.removed(removed[i]);
+			}
+			snapshot = next;
+		}
+		removedCount = 0;
+
+		if (snapshot.size() == 0 && changedCount > 0) {
+			build();
+			return snapshot;
+		}
+
+		for (int i = 0; i < changedCount; i++) {
+			int id = changed[i];
+			noted[id] = false;
+			if (index.containsId(id)) {
+				long key = store.order[id];
+				ShapeRecord record = record(store.shape(id));
+				ShapeRecord previous = snapshot.get(key);
+				if (listener != null) {
+					listener.put(key, previous, record);
+				}
+				snapshot = snapshot.with(key, record);
+				recordedBytes += record.sizeInBytes(previous) + NODE_BYTES * snapshot.depth();
+			}
+		}
+		changedCount = 0;
+		return snapshot;
+	}
+
+	/**
+	 * Returns an estimate of the memory taken by all the records and tree nodes the document has made so far.
+	 * The difference between two calls estimates what the snapshots made in between hold on to of their own.
+	 *
+	 * @return The estimated number of bytes, which only grows.
+	 */
+	public long recordedBytes() {
+		return recordedBytes;
+	}
+
+	/**
+	 * Takes an earlier version back as the current one, after the canvas has made its shapes match it again,
+	 * as undo and redo do. The changes the canvas made to its shapes on the way are not recorded again,
+	 * so the records of the earlier version are shared instead of copied, and the listener only hears
+	 * about the keys whose records differ between the two versions.
+	 *
+	 * @param version The version the drawing matches now, which must be based on the snapshot()
+	 *                taken right before the shapes were changed.
+	 */
+	public void restored(ShapeSnapshot version) {
+		for (int i = 0; i < changedCount; i++) {
+			noted[changed[i]] = false;
+		}
+		changedCount = 0;
+		removedCount = 0;
+		if (listener != null) {
+			snapshot.diff(version, (key, before, after) -> {
+				if (after == null) {
+					listener.removed(key);
+				}
+				else {
+					listener.put(key, before, after);
+				}
+			});
+		}
+		snapshot = version.renumbered(snapshot.getVersion() + 1);
+	}
+
+	/**
+	 * Builds the snapshot of a drawing that had none yet, such as one just loaded, in one pass.
+	 */
+	private void build() {
+		long[] keys = new long[changedCount];
+		int[] ids = new int[changedCount];
+		int n = 0;
+		for (int i = 0; i < changedCount; i++) {
+			int id = changed[i];
+			noted[id] = false;
+			if (index.containsId(id)) {
+				keys[n] = store.order[id];
+				ids[n++] = id;
+			}
+		}
+		changedCount = 0;
+
+		ShapeIndex.sortByOrder(keys, ids, 0, n - 1);
+		ShapeRecord[] records = new ShapeRecord[n];
+		for (int i = 0; i < n; i++) {
+			records[i] = record(store.shape(ids[i]));
+			recordedBytes += records[i].sizeInBytes(null) + NODE_BYTES;
+			if (listener != null) {
+				listener.put(keys[i], null, records[i]);
+			}
+		}
+		snapshot = ShapeSnapshot.build(keys, records, n, snapshot.getVersion() + 1);
+	}
+
+	/**
+	 * Records a shape of the canvas as it is now.
+	 */
+	private static ShapeRecord record(MyShape s) {
+		return s instanceof ShapeGroup ? ((ShapeGroup) s).record() : ShapeRecord.of(s);
+	}
+
+	/**
+	 * Notes that a shape was added to the drawing.
+	 *
+	 * @param id The id of the shape.
+	 */
+	@Override
+	public void inserted(int id) {
+		MyShape s = store.shape(id);
+		if (s instanceof ShapeGroup) {
+			// its members may have changed while it was off the canvas
+			((ShapeGroup) s).forgetRecords();
+		}
+		changed(id);
+	}
+
+	/**
+	 * Notes that a shape of the drawing changed.
+	 *
+	 * @param id The id of the shape.
+	 */
+	@Override
+	public void changed(int id) {
+		if (id >= noted.length) {
+			noted = Arrays.copyOf(noted, Math.max(id + 1, noted.length * 2));
+		}
+		if (noted[id]) {
+			return;
+		}
+		noted[id] = true;
+		if (changedCount == changed.length) {
+			changed = Arrays.copyOf(changed, changedCount * 2);
+		}
+		changed[changedCount++] = id;
+	}
+
+	/**
+	 * Notes that a shape is about to be removed from the drawing.
+	 *
+	 * @param id The id of the shape.
+	 */
+	@Override
+	public void removed(int id) {
+		if (removedCount == removed.length) {
+			removed = Arrays.copyOf(removed, removedCount * 2);
+		}
+		removed[removedCount++] = store.order[id];
+	}
+
+	/**
+	 * Notes that every shape was removed from the drawing.
+	 */
+	@Override
+	public void cleared() {
+		for (int i = 0; i < changedCount; i++) {
+			noted[changed[i]] = false;
+		}
+		changedCount = 0;
+		removedCount = 0;
+		snapshot = ShapeSnapshot.build(null, null, 0, snapshot.getVersion() + 1);
+		if (listener != null) {
+			listener.cleared();
+		}
+	}
+}
@@ -8,6 +8,10 @@
  * @date 04/18/24
  */
 import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import javafx.application.Application;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
@@ -16,6 +20,7 @@ import javafx.scene.control.ColorPicker;
 import javafx.scene.control.Menu;
 import javafx.scene.control.MenuBar;
 import javafx.scene.control.MenuItem;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.RadioButton;
 import javafx.scene.control.ToggleGroup;
 import javafx.scene.layout.BorderPane;
@@ -37,19 +42,20 @@ public class ShapeEditor extends Application{
 	private BorderPane mainPane;
 	private HBox controlPanel;
 	private ShapeCanvas canvas;
-	private RadioButton rbLine, rbOval, rbRect, rbDelete, rbMove, rbCopy, rbGroup;
+	private RadioButton rbLine, rbOval, rbRect, rbDelete, rbMove, rbCopy, rbGroup, rbSelect;
 	private Button bnClear, undo,redo;
 	private CheckBox cbFilled;
-	private LineHandler lineHandler;
-	private OvalHandler ovalHandler;
-	private RectHandler rectHandler;
-	private MoveHandler moveHandler;
-	private CopyHandler copyHandler;
-	private GroupHandler groupHandler;
+	private DrawTool lineTool;
+	private DrawTool ovalTool;
+	private DrawTool rectTool;
+	private MoveTool moveTool;
+	private CopyTool copyTool;
+	private GroupTool groupTool;
+	private SelectTool selectTool;
 	
 	
 
-	private DeleteHandler deleteHandler;
+	private DeleteTool deleteTool;
 	private ColorPicker colorPicker;
 
 	private Color curColor = Color.BLACK;
@@ -58,6 +64,19 @@ public class ShapeEditor extends Application{
 	private MenuItem miLoad, miSave, miLoadB, miSaveB;
 	private FileChooser fcLoad, fcSave;
 
+	/** Background loading */
+	private HBox loadPanel;
+	private ProgressBar pbLoad;
+	private Button bnCancelLoad;
+	private ShapeLoader loader;
+	private ExecutorService loadExecutor = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "shape-loader");
+		t.setDaemon(true);
+		return t;
+	});
+
+	/** Crash recovery */
+	private Autosave autosave;
 
 
 	@Override
@@ -73,17 +92,42 @@ public class ShapeEditor extends Application{
 		setupCanvas();
 		setupMenu();
 		setupControls();
+		setupLoadPanel();
 
 		Scene scene = new Scene(mainPane, APP_WIDTH, APP_HEIGHT);
 		stage.setScene(scene);
 		stage.setTitle("SHAPE EDITOR");
 
 		stage.show();
+		startAutosave();
 		canvas.paint();
 	}
 
 	/**
-	 * Sets up the control panel, and canvas as well the functionality for the control Panel elements using specific Line Handlers.
+	 * Saves the pending changes and removes the autosave files, since the editor exits normally.
+	 */
+	@Override
+	public void stop() {
+		if (autosave != null) {
+			autosave.close();
+		}
+	}
+
+	/**
+	 * Starts autosaving the drawing, which brings back the drawing the editor had when it last crashed, if any.
+	 */
+	private void startAutosave() {
+		File dir = Autosave.defaultDirectory();
+		try {
+			autosave = canvas.startAutosave(dir);
+		}
+		catch (IOException e) {
+			System.out.println("Autosave is off: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Sets up the control panel, and canvas as well the functionality for the control Panel elements using specific tools.
 	 */
 	private void setupControls() {
 		controlPanel = new HBox(10);
@@ -106,6 +150,8 @@ public class ShapeEditor extends Application{
 		
 		rbGroup = new RadioButton("Group");
 
+		rbSelect = new RadioButton("Select");
+
 		bnClear = new Button("Clear");
 		
 		colorPicker = new ColorPicker(curColor);
@@ -114,21 +160,23 @@ public class ShapeEditor extends Application{
 		
 		redo = new Button("redo");
 		
-		//Handlers
+		//Tools
 
-		lineHandler = new LineHandler(canvas);
+		lineTool = new DrawTool(canvas, Line::new);
 		
-		ovalHandler = new OvalHandler(canvas);
+		ovalTool = new DrawTool(canvas, Oval::new);
 		
-		rectHandler = new RectHandler(canvas);
+		rectTool = new DrawTool(canvas, Rect::new);
 		
-		deleteHandler = new DeleteHandler(canvas);
+		deleteTool = new DeleteTool(canvas);
 		
-		moveHandler = new MoveHandler(canvas);
+		moveTool = new MoveTool(canvas);
 
-		copyHandler = new CopyHandler(canvas);
+		copyTool = new CopyTool(canvas);
 		
-		groupHandler = new GroupHandler(canvas);
+		groupTool = new GroupTool(canvas);
+
+		selectTool = new SelectTool(canvas);
 
 
 		
@@ -141,30 +189,31 @@ public class ShapeEditor extends Application{
 		rbDelete.setToggleGroup(group);
 		rbCopy.setToggleGroup(group);
 		rbGroup.setToggleGroup(group);
+		rbSelect.setToggleGroup(group);
 		
 		cbFilled.setOnAction(e -> {
 			canvas.setCurFilled(cbFilled.isSelected());
 		});
 
 		rbLine.setSelected(true);
-		canvas.replaceMouseHandler(lineHandler);
+		canvas.setTool(lineTool);
 
 
 		rbLine.setOnAction(e -> {
 			if(rbLine.isSelected()) {
-				canvas.replaceMouseHandler(lineHandler);
+				canvas.setTool(lineTool);
 			}
 		});
 
 		rbOval.setOnAction(e -> {
 			if(rbOval.isSelected()) {
-				canvas.replaceMouseHandler(ovalHandler);
+				canvas.setTool(ovalTool);
 			}
 		});
 
 		rbRect.setOnAction(e -> {
 			if(rbRect.isSelected()) {
-				canvas.replaceMouseHandler(rectHandler);
+				canvas.setTool(rectTool);
 			}
 		});
 
@@ -176,12 +225,12 @@ public class ShapeEditor extends Application{
 
 		undo.setOnAction(e -> {
 			canvas.undo();
-			canvas.paint();
+			canvas.requestRepaint();
 		});
 		
 		redo.setOnAction(e ->{
 			canvas.redo();
-			canvas.paint();
+			canvas.requestRepaint();
 		});
 
 		colorPicker.setOnAction(e ->{
@@ -191,28 +240,34 @@ public class ShapeEditor extends Application{
 
 		rbMove.setOnAction(e -> {
 			if( rbMove.isSelected()) {
-				canvas.replaceMouseHandler(moveHandler);
+				canvas.setTool(moveTool);
 			}
 		});
 
 
 		rbDelete.setOnAction(e -> {
 			if( rbDelete.isSelected()) {
-				canvas.replaceMouseHandler(deleteHandler);
+				canvas.setTool(deleteTool);
 			}
 		});
 		
 		rbCopy.setOnAction(e -> {
 			if(rbCopy.isSelected()) {
-				canvas.replaceMouseHandler(copyHandler);
+				canvas.setTool(copyTool);
 			}
 		});
 		
 		rbGroup.setOnAction(e -> {
-			canvas.replaceMouseHandler(groupHandler);
+			canvas.setTool(groupTool);
 		});
 
-		controlPanel.getChildren().addAll(bnClear, cbFilled, rbLine, rbOval, rbRect, rbDelete, rbMove, rbCopy, rbGroup, colorPicker, undo,redo);
+		rbSelect.setOnAction(e -> {
+			if (rbSelect.isSelected()) {
+				canvas.setTool(selectTool);
+			}
+		});
+
+		controlPanel.getChildren().addAll(bnClear, cbFilled, rbLine, rbOval, rbRect, rbDelete, rbMove, rbCopy, rbGroup, rbSelect, colorPicker, undo,redo);
 
 		controlPanel.setPrefHeight(CONTROL_HEIGHT);
 		mainPane.setTop(controlPanel);
@@ -241,7 +296,7 @@ public class ShapeEditor extends Application{
 		miLoad.setOnAction(e ->{
 			File file = fcLoad.showOpenDialog(null);
 			if (file!=null) {
-				canvas.fromTextFile(file);
+				load(file, false);
 			}
 		});
 
@@ -261,7 +316,7 @@ public class ShapeEditor extends Application{
 
 			if (selectedFile != null) {
 
-				canvas.fromBinaryFile(selectedFile);
+				load(selectedFile, true);
 			}
 		});
 
@@ -281,6 +336,71 @@ public class ShapeEditor extends Application{
 		mainPane.setLeft(menuBar);
 	}
 
+	/**
+	 * Sets up the progress bar and the cancel button shown at the bottom while a drawing is being loaded.
+	 */
+	private void setupLoadPanel() {
+		pbLoad = new ProgressBar(0);
+		pbLoad.setPrefWidth(300);
+
+		bnCancelLoad = new Button("Cancel");
+		bnCancelLoad.setOnAction(e -> {
+			if (loader != null) {
+				loader.cancel();
+			}
+		});
+
+		loadPanel = new HBox(10, pbLoad, bnCancelLoad);
+		loadPanel.setVisible(false);
+		loadPanel.setManaged(false);
+		mainPane.setBottom(loadPanel);
+	}
+
+	/**
+	 * Loads a drawing on a background thread. The shapes show up on the canvas while the file is read,
+	 * so the canvas can be used right away, and the load can be cancelled from the load panel.
+	 *
+	 * @param file   The file to load.
+	 * @param binary True for a binary file, false for a text file.
+	 */
+	private void load(File file, boolean binary) {
+		if (loader != null) {
+			loader.cancel();
+		}
+		canvas.clear();
+
+		ShapeLoader task = new ShapeLoader(canvas, file, binary);
+		task.setOnSucceeded(e -> finishLoad(task));
+		task.setOnCancelled(e -> finishLoad(task));
+		task.setOnFailed(e -> {
+			System.out.println(file.getName() + " could not be loaded");
+			task.getException().printStackTrace();
+			finishLoad(task);
+		});
+
+		loader = task;
+		pbLoad.progressProperty().bind(task.progressProperty());
+		loadPanel.setVisible(true);
+		loadPanel.setManaged(true);
+		loadExecutor.execute(task);
+	}
+
+	/**
+	 * Hides the load panel once the current load has ended.
+	 *
+	 * @param task The load that ended.
+	 */
+	private void finishLoad(ShapeLoader task) {
+		if (loader != task) {
+			return;
+		}
+		loader = null;
+		canvas.checkpoint();
+		pbLoad.progressProperty().unbind();
+		loadPanel.setVisible(false);
+		loadPanel.setManaged(false);
+	}
+
 	/**
 	 * Sets up the canvas with the given dimensions and adds it to the mainPane.
 	 */
@@ -1,15 +1,35 @@
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
 
-import javafx.geometry.Point2D;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.Color;
 
 /**
  * Represents a group of shapes.
+ * The group keeps the sum of the centers of its members and its bounding box up to date
+ * as members come and go, so a membership change costs constant time instead of a pass over all members.
+ * <p>
+ * Moving a group does not touch its members either. The distance is added to an offset that is applied
+ * with a translation of the graphics context when the members are drawn, and is only pushed down into the
+ * members when they are handed out by getMembers or the membership changes. Code that only reads the members,
+ * such as the file writers, the rasterizer and toString, goes through getMemberView and adds the offset itself.
  */
 public class ShapeGroup extends MyShape {
 
+    private static final long serialVersionUID = -4556739655730326651L;
     private ArrayList<MyShape> group;
+    private transient Set<MyShape> members;
+    private transient double sumX, sumY;
+    private transient double offsetX, offsetY;
+    // the records of the members for ShapeDocument, and how far the members have moved since they were taken
+    private transient ShapeRecord[] memberRecords;
+    private transient double recordDx, recordDy;
     private static final Color color = Color.LIGHTGRAY;
 
     /**
@@ -17,6 +37,7 @@ public class ShapeGroup extends MyShape {
      */
     public ShapeGroup() {
         group = new ArrayList<>();
+        members = newMemberSet();
     }
 
     /**
@@ -44,9 +65,13 @@ public class ShapeGroup extends MyShape {
      */
     @Override
     public Object clone() {
+        applyOffset();
         ShapeGroup copy = (ShapeGroup) super.clone();
 
         copy.group = new ArrayList<>();
+        copy.members = newMemberSet();
+        copy.sumX = 0;
+        copy.sumY = 0;
         MyShape shapeCopy;
 
         for (MyShape shape : group) {
@@ -63,65 +88,138 @@ public class ShapeGroup extends MyShape {
      * @param shape The shape to add.
      */
     public void addMember(MyShape shape) {
-        if (!group.contains(shape)) {
-            group.add(shape);
-            updateCenter();
+        if (!members.add(shape)) {
+            return;
         }
+        applyOffset();
+        memberRecords = null;
+        group.add(shape);
+        sumX += shape.getCenterX();
+        sumY += shape.getCenterY();
+        setCenter(sumX / group.size(), sumY / group.size());
+
+        // the new bounds are the union of the old ones and the box of the new member
+        double minX = shape.getULX(), minY = shape.getULY();
+        double maxX = minX + shape.getWidth(), maxY = minY + shape.getHeight();
+        if (group.size() > 1 || !Double.isNaN(getX1()) && !Double.isNaN(getX2())) {
+            minX = Math.min(minX, getULX());
+            minY = Math.min(minY, getULY());
+            maxX = Math.max(maxX, getULX() + getWidth());
+            maxY = Math.max(maxY, getULY() + getHeight());
+        }
+        setBounds(minX, minY, maxX - minX, maxY - minY);
     }
 
     /**
      * Removes a shape from the group.
+     * The bounds only have to be computed again when the shape touched their edge.
      *
      * @param shape The shape to remove.
      */
     public void removeMember(MyShape shape) {
+        if (!members.remove(shape)) {
+            return;
+        }
+        applyOffset();
+        memberRecords = null;
         group.remove(shape);
-        updateCenter();
+        sumX -= shape.getCenterX();
+        sumY -= shape.getCenterY();
+        setCenter(sumX / group.size(), sumY / group.size());
+
+        boolean inside = shape.getULX() > getULX() && shape.getULY() > getULY()
+                && shape.getULX() + shape.getWidth() < getULX() + getWidth()
+                && shape.getULY() + shape.getHeight() < getULY() + getHeight();
+        if (!inside) {
+            updateBounds();
+        }
     }
 
     /**
-     * Checks if a given shape is within the bounding box of the group.
-     *
-     * @param shape The shape to check.
-     * @return True if the shape is within the bounding box of the group, false otherwise.
+     * Updates the center of the group based on the positions of its member shapes.
+     * The sum of the member centers is computed again from scratch, which is only needed when
+     * members may have been moved on their own.
      */
-    public boolean within(MyShape shape) {
-        double shapeX = shape.getCenter().getX();
-        double shapeY = shape.getCenter().getY();
-        boolean xWithin = shapeX > this.ulx && shapeX < (this.ulx + this.width);
-        boolean yWithin = shapeY > this.uly && shapeY < (this.uly + this.height);
+    @Override
+    public void updateCenter() {
+        applyOffset();
+        sumX = 0;
+        sumY = 0;
+        int n = group.size();
+
+        for (int i = 0; i < n; i++) {
+            MyShape curShape = group.get(i);
+            sumX += curShape.getCenterX();
+            sumY += curShape.getCenterY();
+        }
 
-        return xWithin && yWithin;
+        setCenter(sumX / n, sumY / n);
     }
 
     /**
-     * Updates the center of the group based on the positions of its member shapes.
+     * Updates the bounding box of the group so that it covers the selection rectangle
+     * as well as everything drawn by its member shapes.
      */
     @Override
-    public void updateCenter() {
-        Point2D point = new Point2D(0, 0);
+    public void updateBounds() {
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        applyOffset();
+
+        if (!Double.isNaN(getX1()) && !Double.isNaN(getX2())) {
+            minX = Math.min(getX1(), getX2());
+            minY = Math.min(getY1(), getY2());
+            maxX = Math.max(getX1(), getX2());
+            maxY = Math.max(getY1(), getY2());
+        }
 
-        for (MyShape curShape : group) {
-            point = point.add(curShape.getCenter());
+        for (MyShape shape : group) {
+            minX = Math.min(minX, shape.getULX());
+            minY = Math.min(minY, shape.getULY());
+            maxX = Math.max(maxX, shape.getULX() + shape.getWidth());
+            maxY = Math.max(maxY, shape.getULY() + shape.getHeight());
         }
 
-        center = point.multiply(1.0 / size());
+        if (minX > maxX) {
+            return;
+        }
+        setBounds(minX, minY, maxX - minX, maxY - minY);
     }
 
     /**
      * Moves the group by the specified distances in the x and y directions.
+     * The members are not moved yet; the distance is added to the pending offset of the group,
+     * and the center and the bounds of the group are shifted, so a move costs the same for any size of group.
      *
      * @param dx The distance to move in the x-direction.
      * @param dy The distance to move in the y-direction.
      */
     @Override
     public void move(double dx, double dy) {
-    	super.move(dx, dy);
-        for (MyShape shape : group) {
-            shape.move(dx, dy);
+        offsetX += dx;
+        offsetY += dy;
+        sumX += group.size() * dx;
+        sumY += group.size() * dy;
+        translate(dx, dy);
+    }
+
+    /**
+     * Pushes the pending offset down into the members, after which their own coordinates are current again.
+     * A nested group only adds the offset to its own pending offset, so this touches the direct members only.
+     */
+    private void applyOffset() {
+        if (offsetX == 0 && offsetY == 0) {
+            return;
+        }
+        double dx = offsetX, dy = offsetY;
+        offsetX = 0;
+        offsetY = 0;
+        recordDx += dx;
+        recordDy += dy;
+        int n = group.size();
+        for (int i = 0; i < n; i++) {
+            group.get(i).move(dx, dy);
         }
-        updateCenter();
-        
     }
 
     /**
@@ -131,33 +229,195 @@ public class ShapeGroup extends MyShape {
      */
     @Override
     public void draw(GraphicsContext g) {
-        for (MyShape shape : group) {
-            shape.draw(g);
+        if (offsetX != 0 || offsetY != 0) {
+            g.save();
+            g.translate(offsetX, offsetY);
+            for (MyShape shape : group) {
+                shape.draw(g);
+            }
+            g.restore();
         }
+        else {
+            for (MyShape shape : group) {
+                shape.draw(g);
+            }
+        }
+        drawOutline(g);
+    }
+
+    /**
+     * Draws only the dashed bounding box of the group, without its members.
+     *
+     * @param g The GraphicsContext to draw on.
+     */
+    public void drawOutline(GraphicsContext g) {
         setColor(color);
         drawBounds(g);
     }
     
     
+    /**
+     * Writes the group with object serialization, after moving the members to where they are drawn.
+     *
+     * @param out The stream to write to.
+     * @throws IOException If the stream cannot be written.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        applyOffset();
+        out.defaultWriteObject();
+    }
+
+    /**
+     * Reads a group written with object serialization and derives its center and bounds from the members.
+     *
+     * @param in The stream to read from.
+     * @throws IOException If the stream cannot be read.
+     * @throws ClassNotFoundException If the class of a member cannot be found.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        members = newMemberSet();
+        members.addAll(group);
+        updateCenter();
+        updateBounds();
+    }
+    
+    /**
+     * Returns the members of the group, with the pending offset of the group applied to them.
+     * This moves the members, so it is meant for code that takes them over.
+     *
+     * @return The member shapes, in drawing order.
+     */
     public ArrayList<MyShape> getMembers(){
+        applyOffset();
     	return group;
     }
 
     /**
-     * Returns a string representation of the group, including its size and bounding box coordinates.
+     * Returns the members of the group as they are kept, without pushing the pending offset down into them.
+     * A member is drawn at its own coordinates moved by getOffsetX and getOffsetY, and the members of a nested
+     * group are moved by its offset as well.
      *
+     * @return A read-only view of the member shapes, in drawing order.
+     */
+    public List<MyShape> getMemberView() {
+        return Collections.unmodifiableList(group);
+    }
+
+    /**
+     * Returns the distance the members are moved by in the x-direction, which is not in their own coordinates yet.
+     *
+     * @return The pending offset in the x-direction.
+     */
+    public double getOffsetX() {
+        return offsetX;
+    }
+
+    /**
+     * Returns the distance the members are moved by in the y-direction, which is not in their own coordinates yet.
+     *
+     * @return The pending offset in the y-direction.
+     */
+    public double getOffsetY() {
+        return offsetY;
+    }
+
+    /**
+     * Moves a coordinate of a member by a pending offset. A zero offset leaves the coordinate exactly as it is,
+     * so that a member of a group that has not moved reads the same as before, down to the sign of a zero.
+     *
+     * @param value  The coordinate.
+     * @param offset The offset.
+     * @return The moved coordinate.
+     */
+    static double shift(double value, double offset) {
+        return offset == 0 ? value : value + offset;
+    }
+
+    /**
+     * Creates the set used for membership checks. Shapes do not override equals,
+     * so membership is by identity.
+     *
+     * @return An empty identity set.
+     */
+    private static Set<MyShape> newMemberSet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    /**
+     * Records the group as it is now. The records of the members are taken once and kept, since moving the group
+     * does not change them but only the distance they are moved by, so recording a moved group costs constant time.
+     *
+     * @return The record of the group.
+     */
+    ShapeRecord record() {
+        if (memberRecords == null) {
+            memberRecords = new ShapeRecord[group.size()];
+            for (int i = 0; i < memberRecords.length; i++) {
+                MyShape member = group.get(i);
+                memberRecords[i] = member instanceof ShapeGroup ? ((ShapeGroup) member).record() : ShapeRecord.of(member);
+            }
+            recordDx = 0;
+            recordDy = 0;
+        }
+        return ShapeRecord.group(this, memberRecords, recordDx + offsetX, recordDy + offsetY);
+    }
+
+    /**
+     * Drops the records of the members, and those of nested groups, for when the members may have changed
+     * on their own while the group was off the canvas.
+     */
+    void forgetRecords() {
+        memberRecords = null;
+        for (MyShape member : group) {
+            if (member instanceof ShapeGroup) {
+                ((ShapeGroup) member).forgetRecords();
+            }
+        }
+    }
+
+    /**
+     * Checks whether a point hits one of the members of the group. The members are tested where they are drawn,
+     * so the offset of a moved group is taken into account without pushing it down into them.
+     *
+     * @param x         The x-coordinate of the point.
+     * @param y         The y-coordinate of the point.
+     * @param tolerance How far from a member the point may be.
+     * @return True if the point hits a member.
+     */
+    @Override
+    public boolean hitTest(double x, double y, double tolerance) {
+        if (!inBounds(x, y, tolerance)) {
+            return false;
+        }
+        for (MyShape member : group) {
+            if (member.hitTest(x - offsetX, y - offsetY, tolerance)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a string representation of the group, including its size and bounding box coordinates,
+     * followed by its members. The pending offset is added to the members as they are formatted,
+     * so printing a group does not move them.
+     *
+     * @param dx The distance to move by in the x-direction.
+     * @param dy The distance to move by in the y-direction.
      * @return A string representation of the group.
      */
     @Override
-    public String toString() {
-        String title = "ShapeGroup " + String.format("%d %-3.0f %-3.0f %-3.0f %-3.0f", size(), p1.getX(), p1.getY(), p2.getX(), p2.getY());
+    String toString(double dx, double dy) {
+        String title = "ShapeGroup " + String.format("%d %-3.0f %-3.0f %-3.0f %-3.0f", size(), shift(getX1(), dx), shift(getY1(), dy),
+                shift(getX2(), dx), shift(getY2(), dy));
 
-        String result = "";
-        for (MyShape shape : group) {
-        	
-        	result = result + "\n" + shape.toString();
+        StringBuilder result = new StringBuilder(title);
+        double memberDx = dx + offsetX, memberDy = dy + offsetY;
+        for (MyShape shape : getMemberView()) {
+            result.append('\n').append(shape.toString(memberDx, memberDy));
         }
 
-        return title + result;
+        return result.toString();
     }
 }
\ No newline at end of file
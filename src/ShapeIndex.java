@@ -0,0 +1,734 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * ShapeIndex is an R-tree over the bounding boxes (ulx, uly, width, height) of the shapes on a canvas.
+ * It is maintained incrementally: shapes are inserted and removed one at a time, and the ShapeStore
+ * holding the shapes reports every bounds change through update, so the tree is always in sync
+ * with the drawing. Nearest-neighbour queries use a best-first search and only visit the few nodes whose
+ * boxes can still hold a closer shape, which keeps picking logarithmic in the number of shapes.
+ * <p>
+ * The leaves hold shape ids and read the geometry straight from the columns of the store.
+ * Every shape added, removed or changed is also reported to the ChangeListener of the index, if it has one,
+ * which is how a ShapeDocument follows the drawing.
+ */
+public class ShapeIndex {
+
+	/**
+	 * Hears about the shapes that are added to the index, removed from it or changed, as it happens.
+	 */
+	public interface ChangeListener {
+
+		/**
+		 * A shape was added to the index.
+		 *
+		 * @param id The id of the shape.
+		 */
+		void inserted(int id);
+
+		/**
+		 * A shape is about to be removed from the index, so its id and drawing order are still valid.
+		 *
+		 * @param id The id of the shape.
+		 */
+		void removed(int id);
+
+		/**
+		 * The bounds of an indexed shape changed.
+		 *
+		 * @param id The id of the shape.
+		 */
+		void changed(int id);
+
+		/**
+		 * Every shape was removed from the index.
+		 */
+		void cleared();
+	}
+
+	private static final int MAX_ENTRIES = 16;
+	private static final int MIN_ENTRIES = 6;
+
+	private ShapeStore store;
+	private Node root;
+	private Node[] leafOf;
+	private int count;
+	private long sequence;
+
+	private int[] orphans = new int[64];
+	private int orphanCount;
+
+	private ChangeListener listener;
+
+	/**
+	 * Constructs an empty ShapeIndex over the shapes of a store.
+	 * Only shapes attached to that store can be indexed.
+	 *
+	 * @param store The store that holds the geometry of the shapes.
+	 */
+	public ShapeIndex(ShapeStore store) {
+		this.store = store;
+		store.index = this;
+		root = new Node(true);
+		leafOf = new Node[store.capacity()];
+	}
+
+	/**
+	 * Sets the listener that hears about the changes of the index from now on.
+	 *
+	 * @param listener The listener, or null for none.
+	 */
+	public void setChangeListener(ChangeListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Returns the number of shapes in the index.
+	 *
+	 * @return The number of indexed shapes.
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Checks if the given shape is held by this index.
+	 *
+	 * @param s The shape to look up.
+	 * @return True if the shape is indexed, false otherwise.
+	 */
+	public boolean contains(MyShape s) {
+		return s.store == store && leafOf[s.id] != null;
+	}
+
+	/**
+	 * Checks if the shape with the given id is held by this index.
+	 *
+	 * @param id The id of the shape in the store.
+	 * @return True if the shape is indexed, false otherwise.
+	 */
+	boolean containsId(int id) {
+		return id < leafOf.length && leafOf[id] != null;
+	}
+
+	/**
+	 * Removes every shape from the index.
+	 */
+	public void clear() {
+		Arrays.fill(leafOf, null);
+		root = new Node(true);
+		count = 0;
+		if (listener != null) {
+			listener.cleared();
+		}
+	}
+
+	/**
+	 * Adds a shape to the index. The shape goes after all the shapes already indexed in the drawing order.
+	 *
+	 * @param s The shape to be indexed, which must be attached to the store of the index.
+	 */
+	public void insert(MyShape s) {
+		insert(s, sequence + 1);
+	}
+
+	/**
+	 * Adds a shape to the index at a given position in the drawing order, such as the one it had before it was removed,
+	 * which undo puts it back at. The shapes added later without a position still go after it.
+	 *
+	 * @param s     The shape to be indexed, which must be attached to the store of the index.
+	 * @param order The position in the drawing order, which no other indexed shape may have.
+	 */
+	public void insert(MyShape s, long order) {
+		if (s.store != store) {
+			throw new IllegalArgumentException("shape is not attached to the store of this index");
+		}
+		if (leafOf[s.id] != null) {
+			return;
+		}
+		store.order[s.id] = order;
+		sequence = Math.max(sequence, order);
+		insertEntry(s.id);
+		count++;
+		if (listener != null) {
+			listener.inserted(s.id);
+		}
+	}
+
+	/**
+	 * Removes a shape from the index.
+	 *
+	 * @param s The shape to be removed.
+	 */
+	public void remove(MyShape s) {
+		if (!contains(s)) {
+			return;
+		}
+		if (listener != null) {
+			listener.removed(s.id);
+		}
+		Node leaf = leafOf[s.id];
+		leafOf[s.id] = null;
+		leaf.removeId(s.id);
+		count--;
+		condense(leaf);
+	}
+
+	/**
+	 * Re-positions a shape whose bounds have changed.
+	 * Ids that are not held by this index are ignored.
+	 *
+	 * @param id The id of the shape whose bounds have changed.
+	 */
+	public void update(int id) {
+		Node leaf = leafOf[id];
+		if (leaf == null) {
+			return;
+		}
+		if (listener != null) {
+			listener.changed(id);
+		}
+
+		// still fits where it is: only the boxes on the path to the root may need to shrink
+		if (leaf.contains(store, id)) {
+			adjustUpwards(leaf);
+			return;
+		}
+
+		leafOf[id] = null;
+		leaf.removeId(id);
+		condense(leaf);
+		insertEntry(id);
+	}
+
+	/**
+	 * Grows the id table along with the columns of the store.
+	 *
+	 * @param capacity The new capacity of the store.
+	 */
+	void grow(int capacity) {
+		leafOf = Arrays.copyOf(leafOf, capacity);
+	}
+
+	/**
+	 * Finds the shape whose center is the closest to the given point.
+	 * The bounding box of every node contains the centers of all the shapes below it,
+	 * so the distance to a box is a lower bound for the distance to any of those shapes.
+	 *
+	 * @param x The x-coordinate of the point.
+	 * @param y The y-coordinate of the point.
+	 * @return The closest shape, or null if the index is empty.
+	 */
+	public MyShape nearest(double x, double y) {
+		if (count == 0) {
+			return null;
+		}
+
+		double[] cx = store.cx, cy = store.cy;
+		PriorityQueue<Candidate> queue = new PriorityQueue<>();
+		queue.add(new Candidate(root.distance(x, y), root, -1));
+
+		while (!queue.isEmpty()) {
+			Candidate c = queue.poll();
+			if (c.node == null) {
+				return store.shape(c.id);
+			}
+
+			Node node = c.node;
+			if (node.leaf) {
+				for (int i = 0; i < node.count; i++) {
+					int id = node.ids[i];
+					double dx = cx[id] - x;
+					double dy = cy[id] - y;
+					queue.add(new Candidate(Math.sqrt(dx * dx + dy * dy), null, id));
+				}
+			}
+			else {
+				for (int i = 0; i < node.count; i++) {
+					queue.add(new Candidate(node.children[i].distance(x, y), node.children[i], -1));
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Finds the shapes whose bounding boxes intersect the given rectangle.
+	 * The result is sorted in the order the shapes were inserted, which is the order they are drawn in.
+	 *
+	 * @param x      The x-coordinate of the upper-left corner of the rectangle.
+	 * @param y      The y-coordinate of the upper-left corner of the rectangle.
+	 * @param width  The width of the rectangle.
+	 * @param height The height of the rectangle.
+	 * @return The intersecting shapes in drawing order.
+	 */
+	public ArrayList<MyShape> search(double x, double y, double width, double height) {
+		ArrayList<MyShape> result = new ArrayList<>();
+		if (count == 0) {
+			return result;
+		}
+
+		double maxX = x + width, maxY = y + height;
+		double[] ulx = store.ulx, uly = store.uly, w = store.width, h = store.height;
+		long[] order = store.order;
+
+		// collect (order, id) pairs; the order values are unique, so sorting the pairs sorts by drawing order
+		long[] orders = new long[16];
+		int[] ids = new int[16];
+		int found = 0;
+
+		ArrayList<Node> pending = new ArrayList<>();
+		pending.add(root);
+		while (!pending.isEmpty()) {
+			Node node = pending.remove(pending.size() - 1);
+			if (!node.leaf) {
+				for (int i = 0; i < node.count; i++) {
+					Node child = node.children[i];
+					if (child.minX <= maxX && child.minY <= maxY && child.maxX >= x && child.maxY >= y) {
+						pending.add(child);
+					}
+				}
+				continue;
+			}
+
+			for (int i = 0; i < node.count; i++) {
+				int id = node.ids[i];
+				if (ulx[id] <= maxX && uly[id] <= maxY && ulx[id] + w[id] >= x && uly[id] + h[id] >= y) {
+					if (found == ids.length) {
+						ids = Arrays.copyOf(ids, found * 2);
+						orders = Arrays.copyOf(orders, found * 2);
+					}
+					orders[found] = order[id];
+					ids[found++] = id;
+				}
+			}
+		}
+
+		sortByOrder(orders, ids, 0, found - 1);
+
+		result.ensureCapacity(found);
+		for (int i = 0; i < found; i++) {
+			result.add(store.shape(ids[i]));
+		}
+		return result;
+	}
+
+	/**
+	 * Sorts the ids by their order values with an in-place quicksort, without boxing.
+	 * ShapeRenderer uses it as well, to sort its draw items into batches.
+	 *
+	 * @param orders The order values, sorted along with the ids.
+	 * @param ids    The ids to sort.
+	 * @param lo     The first index of the range to sort.
+	 * @param hi     The last index of the range to sort.
+	 */
+	static void sortByOrder(long[] orders, int[] ids, int lo, int hi) {
+		while (lo < hi) {
+			long pivot = orders[(lo + hi) >>> 1];
+			int i = lo, j = hi;
+			while (i <= j) {
+				while (orders[i] < pivot) i++;
+				while (orders[j] > pivot) j--;
+				if (i <= j) {
+					long o = orders[i]; orders[i] = orders[j]; orders[j] = o;
+					int t = ids[i]; ids[i] = ids[j]; ids[j] = t;
+					i++;
+					j--;
+				}
+			}
+			// recurse into the smaller half to bound the stack depth
+			if (j - lo < hi - i) {
+				sortByOrder(orders, ids, lo, j);
+				lo = i;
+			}
+			else {
+				sortByOrder(orders, ids, i, hi);
+				hi = j;
+			}
+		}
+	}
+
+	/**
+	 * Places a shape in the leaf that needs the least enlargement and splits overflowing nodes.
+	 *
+	 * @param id The id of the shape to place.
+	 */
+	private void insertEntry(int id) {
+		Node leaf = chooseLeaf(id);
+		leaf.addId(id);
+		leafOf[id] = leaf;
+		leaf.include(store.ulx[id], store.uly[id], store.ulx[id] + store.width[id], store.uly[id] + store.height[id]);
+
+		Node node = leaf;
+		while (node != null) {
+			Node sibling = null;
+			if (node.count > MAX_ENTRIES) {
+				sibling = split(node);
+			}
+
+			if (node == root) {
+				if (sibling != null) {
+					Node newRoot = new Node(false);
+					newRoot.addChild(node);
+					newRoot.addChild(sibling);
+					newRoot.recalc(store);
+					root = newRoot;
+				}
+				break;
+			}
+
+			Node parent = node.parent;
+			if (sibling != null) {
+				parent.addChild(sibling);
+			}
+			parent.recalc(store);
+			node = parent;
+		}
+	}
+
+	/**
+	 * Walks down from the root following the child whose box grows the least.
+	 *
+	 * @param id The id of the shape to be placed.
+	 * @return The leaf the shape should go in.
+	 */
+	private Node chooseLeaf(int id) {
+		double minX = store.ulx[id];
+		double minY = store.uly[id];
+		double maxX = minX + store.width[id];
+		double maxY = minY + store.height[id];
+
+		Node node = root;
+		while (!node.leaf) {
+			Node best = null;
+			double bestGrowth = Double.POSITIVE_INFINITY;
+			double bestArea = Double.POSITIVE_INFINITY;
+
+			for (int i = 0; i < node.count; i++) {
+				Node child = node.children[i];
+				double area = child.area();
+				double growth = area(Math.min(minX, child.minX), Math.min(minY, child.minY),
+						Math.max(maxX, child.maxX), Math.max(maxY, child.maxY)) - area;
+				if (growth < bestGrowth || (growth == bestGrowth && area < bestArea)) {
+					best = child;
+					bestGrowth = growth;
+					bestArea = area;
+				}
+			}
+			node = best;
+		}
+		return node;
+	}
+
+	/**
+	 * Splits an overflowing node in two using the quadratic split of Guttman's R-tree:
+	 * the two entries that would waste the most area together seed the halves, and the
+	 * remaining entries are handed out one by one, the most decided one first.
+	 *
+	 * @param node The node to split, which keeps the first half.
+	 * @return The new node that holds the second half.
+	 */
+	private Node split(Node node) {
+		int n = node.count;
+		double[] x1 = new double[n], y1 = new double[n], x2 = new double[n], y2 = new double[n];
+		for (int i = 0; i < n; i++) {
+			if (node.leaf) {
+				int id = node.ids[i];
+				x1[i] = store.ulx[id];
+				y1[i] = store.uly[id];
+				x2[i] = x1[i] + store.width[id];
+				y2[i] = y1[i] + store.height[id];
+			}
+			else {
+				Node child = node.children[i];
+				x1[i] = child.minX;
+				y1[i] = child.minY;
+				x2[i] = child.maxX;
+				y2[i] = child.maxY;
+			}
+		}
+
+		int seedA = 0, seedB = 1;
+		double worst = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < n; i++) {
+			for (int j = i + 1; j < n; j++) {
+				double waste = area(Math.min(x1[i], x1[j]), Math.min(y1[i], y1[j]), Math.max(x2[i], x2[j]), Math.max(y2[i], y2[j]))
+						- area(x1[i], y1[i], x2[i], y2[i]) - area(x1[j], y1[j], x2[j], y2[j]);
+				if (waste > worst) {
+					worst = waste;
+					seedA = i;
+					seedB = j;
+				}
+			}
+		}
+
+		// the boxes of the two halves while they are being filled
+		double[] a = { x1[seedA], y1[seedA], x2[seedA], y2[seedA] };
+		double[] b = { x1[seedB], y1[seedB], x2[seedB], y2[seedB] };
+		boolean[] assigned = new boolean[n];
+		boolean[] toB = new boolean[n];
+		assigned[seedA] = assigned[seedB] = true;
+		toB[seedB] = true;
+		int countA = 1, countB = 1, left = n - 2;
+
+		while (left > 0) {
+			// make sure both halves end up with at least MIN_ENTRIES
+			boolean allToA = countA + left <= MIN_ENTRIES;
+			boolean allToB = countB + left <= MIN_ENTRIES;
+
+			int next = -1;
+			double maxDiff = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < n; i++) {
+				if (!assigned[i]) {
+					double diff = Math.abs(growth(a, x1[i], y1[i], x2[i], y2[i]) - growth(b, x1[i], y1[i], x2[i], y2[i]));
+					if (diff > maxDiff) {
+						maxDiff = diff;
+						next = i;
+					}
+				}
+			}
+
+			double growA = growth(a, x1[next], y1[next], x2[next], y2[next]);
+			double growB = growth(b, x1[next], y1[next], x2[next], y2[next]);
+			double areaA = area(a[0], a[1], a[2], a[3]);
+			double areaB = area(b[0], b[1], b[2], b[3]);
+			boolean chooseA = !allToB && (allToA || growA < growB
+					|| (growA == growB && (areaA < areaB || (areaA == areaB && countA <= countB))));
+
+			double[] box = chooseA ? a : b;
+			box[0] = Math.min(box[0], x1[next]);
+			box[1] = Math.min(box[1], y1[next]);
+			box[2] = Math.max(box[2], x2[next]);
+			box[3] = Math.max(box[3], y2[next]);
+			assigned[next] = true;
+			toB[next] = !chooseA;
+			if (chooseA) {
+				countA++;
+			}
+			else {
+				countB++;
+			}
+			left--;
+		}
+
+		// move the second half into a new node and compact the first half
+		Node sibling = new Node(node.leaf);
+		int kept = 0;
+		for (int i = 0; i < n; i++) {
+			if (node.leaf) {
+				int id = node.ids[i];
+				if (toB[i]) {
+					sibling.addId(id);
+					leafOf[id] = sibling;
+				}
+				else {
+					node.ids[kept++] = id;
+				}
+			}
+			else {
+				Node child = node.children[i];
+				if (toB[i]) {
+					sibling.addChild(child);
+				}
+				else {
+					node.children[kept++] = child;
+				}
+			}
+		}
+		if (!node.leaf) {
+			Arrays.fill(node.children, kept, n, null);
+		}
+		node.count = kept;
+
+		node.recalc(store);
+		sibling.recalc(store);
+		return sibling;
+	}
+
+	/**
+	 * Restores the tree after an entry has been removed from a leaf.
+	 * Nodes that fell below MIN_ENTRIES are cut out and their shapes are inserted again.
+	 *
+	 * @param leaf The leaf that lost an entry.
+	 */
+	private void condense(Node leaf) {
+		orphanCount = 0;
+
+		Node node = leaf;
+		while (node != root) {
+			Node parent = node.parent;
+			if (node.count < MIN_ENTRIES) {
+				parent.removeChild(node);
+				collect(node);
+			}
+			else {
+				node.recalc(store);
+			}
+			node = parent;
+		}
+		root.recalc(store);
+
+		if (!root.leaf && root.count == 1) {
+			root = root.children[0];
+			root.parent = null;
+		}
+		else if (!root.leaf && root.count == 0) {
+			root = new Node(true);
+		}
+
+		// inserting never condenses, so the orphan list stays intact while it is drained
+		for (int i = 0; i < orphanCount; i++) {
+			insertEntry(orphans[i]);
+		}
+		orphanCount = 0;
+	}
+
+	/**
+	 * Adds the ids of all the shapes below a node to the orphan list.
+	 *
+	 * @param node The node to collect from.
+	 */
+	private void collect(Node node) {
+		if (!node.leaf) {
+			for (int i = 0; i < node.count; i++) {
+				collect(node.children[i]);
+			}
+			return;
+		}
+
+		if (orphanCount + node.count > orphans.length) {
+			orphans = Arrays.copyOf(orphans, Math.max(orphans.length * 2, orphanCount + node.count));
+		}
+		System.arraycopy(node.ids, 0, orphans, orphanCount, node.count);
+		orphanCount += node.count;
+	}
+
+	/**
+	 * Recomputes the boxes of a node and its ancestors.
+	 *
+	 * @param node The first node to recompute, may be null.
+	 */
+	private void adjustUpwards(Node node) {
+		while (node != null) {
+			node.recalc(store);
+			node = node.parent;
+		}
+	}
+
+	private static double area(double x1, double y1, double x2, double y2) {
+		return x2 < x1 ? 0 : (x2 - x1) * (y2 - y1);
+	}
+
+	private static double growth(double[] box, double x1, double y1, double x2, double y2) {
+		return area(Math.min(box[0], x1), Math.min(box[1], y1), Math.max(box[2], x2), Math.max(box[3], y2))
+				- area(box[0], box[1], box[2], box[3]);
+	}
+
+	/**
+	 * A node of the tree: a leaf holds shape ids, an inner node holds other nodes.
+	 */
+	private static class Node {
+		boolean leaf;
+		Node parent;
+		int[] ids;
+		Node[] children;
+		int count;
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+
+		Node(boolean leaf) {
+			this.leaf = leaf;
+			if (leaf) {
+				ids = new int[MAX_ENTRIES + 1];
+			}
+			else {
+				children = new Node[MAX_ENTRIES + 1];
+			}
+		}
+
+		void addId(int id) {
+			ids[count++] = id;
+		}
+
+		void removeId(int id) {
+			for (int i = 0; i < count; i++) {
+				if (ids[i] == id) {
+					ids[i] = ids[--count];
+					return;
+				}
+			}
+		}
+
+		void addChild(Node child) {
+			children[count++] = child;
+			child.parent = this;
+		}
+
+		void removeChild(Node child) {
+			for (int i = 0; i < count; i++) {
+				if (children[i] == child) {
+					children[i] = children[--count];
+					children[count] = null;
+					return;
+				}
+			}
+		}
+
+		void include(double x1, double y1, double x2, double y2) {
+			minX = Math.min(minX, x1);
+			minY = Math.min(minY, y1);
+			maxX = Math.max(maxX, x2);
+			maxY = Math.max(maxY, y2);
+		}
+
+		void recalc(ShapeStore store) {
+			minX = minY = Double.POSITIVE_INFINITY;
+			maxX = maxY = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < count; i++) {
+				if (leaf) {
+					int id = ids[i];
+					include(store.ulx[id], store.uly[id], store.ulx[id] + store.width[id], store.uly[id] + store.height[id]);
+				}
+				else {
+					include(children[i].minX, children[i].minY, children[i].maxX, children[i].maxY);
+				}
+			}
+		}
+
+		boolean contains(ShapeStore store, int id) {
+			return store.ulx[id] >= minX && store.uly[id] >= minY
+					&& store.ulx[id] + store.width[id] <= maxX && store.uly[id] + store.height[id] <= maxY;
+		}
+
+		double area() {
+			return ShapeIndex.area(minX, minY, maxX, maxY);
+		}
+
+		double distance(double x, double y) {
+			double dx = Math.max(0, Math.max(minX - x, x - maxX));
+			double dy = Math.max(0, Math.max(minY - y, y - maxY));
+			return Math.sqrt(dx * dx + dy * dy);
+		}
+	}
+
+	/**
+	 * A queue entry of the nearest-neighbour search, either a node or a shape id, ordered by distance.
+	 */
+	private static class Candidate implements Comparable<Candidate> {
+		double distance;
+		Node node;
+		int id;
+
+		Candidate(double distance, Node node, int id) {
+			this.distance = distance;
+			this.node = node;
+			this.id = id;
+		}
+
+		@Override
+		public int compareTo(Candidate o) {
+			return Double.compare(distance, o.distance);
+		}
+	}
+}
@@ -0,0 +1,156 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Semaphore;
+
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+
+/**
+ * ShapeLoader reads a drawing on a background thread and hands the shapes to the canvas in batches,
+ * so that the application stays responsive and a large drawing shows up while it is still being read.
+ * <p>
+ * The first batch is small so the first shapes appear right away; the later batches are larger to keep the
+ * number of hand-overs to the JavaFX application thread down. Only one batch is handed over at a time: the loader
+ * waits until the canvas has taken the previous one, so a fast decoder cannot fill the event queue and the heap
+ * with batches the canvas has not drawn yet. The progress is the share of the top-level shapes read so far.
+ * When the loader is cancelled it stops reading and the shapes shown so far stay on the canvas.
+ */
+public class ShapeLoader extends Task<Integer> {
+
+	private static final int FIRST_BATCH = 1024;
+	private static final int BATCH = 8192;
+
+	private ShapeCanvas canvas;
+	private File file;
+	private boolean binary;
+
+	private ArrayList<MyShape> batch = new ArrayList<>();
+	private int batchLimit = FIRST_BATCH;
+	private int loaded;
+	// a permit while no batch is waiting on the JavaFX application thread
+	private Semaphore handOver = new Semaphore(1);
+
+	/**
+	 * Constructs a ShapeLoader. The canvas is expected to be cleared before the loader runs.
+	 *
+	 * @param canvas The canvas receiving the shapes.
+	 * @param file   The file to read.
+	 * @param binary True for a binary file, false for a text file.
+	 */
+	public ShapeLoader(ShapeCanvas canvas, File file, boolean binary) {
+		this.canvas = canvas;
+		this.file = file;
+		this.binary = binary;
+	}
+
+	/**
+	 * Reads the file, handing the shapes over as they are decoded.
+	 *
+	 * @return The number of top-level shapes loaded.
+	 * @throws IOException If the file cannot be read.
+	 * @throws ClassNotFoundException If a serialized file holds an unknown class.
+	 */
+	@Override
+	protected Integer call() throws IOException, ClassNotFoundException {
+		if (!binary) {
+			loadText();
+		}
+		else if (ShapeBinaryFile.isColumnar(file)) {
+			loadColumnar();
+		}
+		else {
+			loadSerialized();
+		}
+		flush(loaded);
+		return loaded;
+	}
+
+	/**
+	 * Reads a text file with ShapeTextFile, which parses it in chunks on all cores.
+	 */
+	private void loadText() throws IOException {
+		int n = ShapeTextFile.count(file);
+		ShapeTextFile.read(file, s -> {
+			if (isCancelled()) {
+				// stops the reading and the parsing of the chunks still waiting
+				throw new CancellationException();
+			}
+			emit(s, n);
+		});
+	}
+
+	/**
+	 * Decodes a file in the columnar format.
+	 */
+	private void loadColumnar() throws IOException {
+		ShapeBinaryFile.Cursor cursor = ShapeBinaryFile.open(file);
+		int n = cursor.size();
+		while (cursor.hasNext() && !isCancelled()) {
+			emit(cursor.next(), n);
+		}
+	}
+
+	/**
+	 * Reads a file written with object serialization by earlier versions.
+	 */
+	private void loadSerialized() throws IOException, ClassNotFoundException {
+		try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(file))) {
+			int n = in.readInt();
+			for (int i = 0; i < n && !isCancelled(); i++) {
+				emit((MyShape) in.readObject(), n);
+			}
+		}
+	}
+
+	/**
+	 * Adds a decoded shape to the current batch and hands the batch over once it is full.
+	 *
+	 * @param s     The decoded shape.
+	 * @param total The number of top-level shapes in the file.
+	 */
+	private void emit(MyShape s, int total) {
+		batch.add(s);
+		loaded++;
+		if (batch.size() >= batchLimit) {
+			flush(total);
+			batchLimit = BATCH;
+		}
+	}
+
+	/**
+	 * Hands the current batch to the canvas on the JavaFX application thread and reports the progress.
+	 *
+	 * Waits until the canvas has taken the previous batch first.
+	 *
+	 * @param total The number of top-level shapes in the file.
+	 */
+	private void flush(int total) {
+		if (!batch.isEmpty()) {
+			try {
+				handOver.acquire();
+			}
+			catch (InterruptedException e) {
+				// cancelling the task interrupts it
+				throw new CancellationException();
+			}
+			ArrayList<MyShape> ready = batch;
+			batch = new ArrayList<>(BATCH);
+			Platform.runLater(() -> {
+				try {
+					// batches still queued when the load is cancelled are dropped
+					if (!isCancelled()) {
+						canvas.appendShapes(ready);
+					}
+				}
+				finally {
+					handOver.release();
+				}
+			});
+		}
+		updateProgress(loaded, Math.max(total, 1));
+	}
+}
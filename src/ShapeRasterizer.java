@@ -0,0 +1,202 @@
+import java.awt.BasicStroke;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Stroke;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RectangularShape;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.List;
+
+import javafx.scene.paint.Color;
+
+/**
+ * ShapeRasterizer draws shapes into a BufferedImage through Java 2D, which renders in software and needs
+ * neither a display nor a running JavaFX toolkit. It draws every shape the way its draw method does on a
+ * JavaFX canvas: lines stroked, rects and ovals filled or stroked, and groups as their members followed by
+ * their dashed bounding box. It draws shapes smaller than the dot size as a single pixel and groups smaller than
+ * the outline size as their bounding box only, both measured in pixels of the image, with the rules and defaults
+ * of ShapeRenderer, so that the tiles look like the canvas drawn without them.
+ * <p>
+ * A ShapeRasterizer keeps up to MAX_COLORS of the Java 2D colors it converted, and is not meant to be shared between threads.
+ */
+public class ShapeRasterizer {
+
+	private static final Stroke SOLID = new BasicStroke(1f, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER);
+	private static final Stroke DASHED = new BasicStroke(1f, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER,
+			10f, new float[] { 5f }, 0f);
+	private static final Color GROUP_COLOR = Color.LIGHTGRAY;
+	// the converted colors are dropped when there are this many, so drawings with random colors do not pile them up
+	private static final int MAX_COLORS = 1024;
+
+	private HashMap<Color, java.awt.Color> colors = new HashMap<>();
+
+	private Line2D.Double line = new Line2D.Double();
+	private Rectangle2D.Double rect = new Rectangle2D.Double();
+	private Ellipse2D.Double oval = new Ellipse2D.Double();
+
+	private double dotSize = ShapeRenderer.DOT_SIZE;
+	private double outlineSize = ShapeRenderer.OUTLINE_SIZE;
+	// pixels per drawing unit of the shapes being drawn
+	private double scale = 1;
+
+	/**
+	 * Sets the sizes in pixels below which shapes are drawn with less detail. A size of 0 turns that part off.
+	 *
+	 * @param dotSize     Shapes narrower and lower than this are drawn as a single pixel.
+	 * @param outlineSize Groups narrower and lower than this are drawn as their bounding box only.
+	 */
+	public void setDetailThresholds(double dotSize, double outlineSize) {
+		this.dotSize = dotSize;
+		this.outlineSize = outlineSize;
+	}
+
+	/**
+	 * Renders a drawing into a new image, scaled to fit the image while keeping its proportions.
+	 *
+	 * @param shapes     The top-level shapes of the drawing.
+	 * @param width      The width of the image.
+	 * @param height     The height of the image.
+	 * @param background The color of the background, or null for a transparent one.
+	 * @return The image.
+	 */
+	public BufferedImage render(List<MyShape> shapes, int width, int height, Color background) {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = image.createGraphics();
+		try {
+			g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+			g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+			if (background != null) {
+				g.setColor(awtColor(background));
+				g.fillRect(0, 0, width, height);
+			}
+
+			g.transform(fit(shapes, width, height));
+			draw(g, shapes);
+		}
+		finally {
+			g.dispose();
+		}
+		return image;
+	}
+
+	/**
+	 * Draws shapes in the given order with the current transform of the graphics,
+	 * which must not rotate or shear.
+	 *
+	 * @param g      The graphics to draw on.
+	 * @param shapes The shapes to draw.
+	 */
+	public void draw(Graphics2D g, List<MyShape> shapes) {
+		scale = Math.abs(g.getTransform().getScaleX());
+		for (MyShape s : shapes) {
+			draw(g, s);
+		}
+	}
+
+	/**
+	 * Draws one shape, including the members of a group.
+	 */
+	private void draw(Graphics2D g, MyShape s) {
+		if (s instanceof ShapeGroup) {
+			if (ShapeRenderer.isOutline(s, scale, outlineSize)) {
+				drawOutline(g, s);
+				return;
+			}
+			// the members are drawn where the group has moved them, without moving them
+			ShapeGroup group = (ShapeGroup) s;
+			AffineTransform saved = null;
+			if (group.getOffsetX() != 0 || group.getOffsetY() != 0) {
+				saved = g.getTransform();
+				g.translate(group.getOffsetX(), group.getOffsetY());
+			}
+			for (MyShape member : group.getMemberView()) {
+				draw(g, member);
+			}
+			if (saved != null) {
+				g.setTransform(saved);
+			}
+			drawOutline(g, s);
+			return;
+		}
+
+		g.setColor(awtColor(s.getColor()));
+		if (ShapeRenderer.isDot(s, scale, dotSize)) {
+			// the pixel under the center, the same one ShapeRenderer sets
+			int px = ShapeRenderer.dotPixel(s.getULX() + s.getWidth() / 2, scale);
+			int py = ShapeRenderer.dotPixel(s.getULY() + s.getHeight() / 2, scale);
+			rect.setRect(px / scale, py / scale, 1 / scale, 1 / scale);
+			g.fill(rect);
+			return;
+		}
+		g.setStroke(SOLID);
+		if (s instanceof Line) {
+			line.setLine(s.getX1(), s.getY1(), s.getX2(), s.getY2());
+			g.draw(line);
+			return;
+		}
+
+		// anything else than an oval is drawn as a rect, like the file formats do
+		RectangularShape shape = s instanceof Oval ? oval : rect;
+		shape.setFrame(s.getULX(), s.getULY(), s.getWidth(), s.getHeight());
+		if (s.isFilled()) {
+			g.fill(shape);
+		}
+		else {
+			g.draw(shape);
+		}
+	}
+
+	/**
+	 * Draws the dashed bounding box of a group.
+	 */
+	private void drawOutline(Graphics2D g, MyShape s) {
+		g.setColor(awtColor(GROUP_COLOR));
+		g.setStroke(DASHED);
+		rect.setRect(s.getULX(), s.getULY(), s.getWidth(), s.getHeight());
+		g.draw(rect);
+	}
+
+	/**
+	 * Returns the transform that scales and moves the bounding box of the shapes into the image, centered.
+	 */
+	private static AffineTransform fit(List<MyShape> shapes, int width, int height) {
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		for (MyShape s : shapes) {
+			minX = Math.min(minX, s.getULX());
+			minY = Math.min(minY, s.getULY());
+			maxX = Math.max(maxX, s.getULX() + s.getWidth());
+			maxY = Math.max(maxY, s.getULY() + s.getHeight());
+		}
+		if (minX > maxX) {
+			return new AffineTransform();
+		}
+
+		// one pixel of margin, so the strokes on the edges of the drawing are not cut off
+		double scale = Math.min((width - 2) / Math.max(maxX - minX, 1), (height - 2) / Math.max(maxY - minY, 1));
+		AffineTransform transform = new AffineTransform();
+		transform.translate((width - scale * (maxX - minX)) / 2, (height - scale * (maxY - minY)) / 2);
+		transform.scale(scale, scale);
+		transform.translate(-minX, -minY);
+		return transform;
+	}
+
+	/**
+	 * Returns the Java 2D color for a JavaFX color, converting each color only once while it is kept.
+	 */
+	private java.awt.Color awtColor(Color c) {
+		java.awt.Color awt = colors.get(c);
+		if (awt == null) {
+			awt = new java.awt.Color((float) c.getRed(), (float) c.getGreen(), (float) c.getBlue(), (float) c.getOpacity());
+			if (colors.size() >= MAX_COLORS) {
+				colors.clear();
+			}
+			colors.put(c, awt);
+		}
+		return awt;
+	}
+}
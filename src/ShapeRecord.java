@@ -0,0 +1,281 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import javafx.scene.paint.Color;
+
+/**
+ * ShapeRecord is an immutable copy of one shape: its kind, its two points, whether it is filled and its color.
+ * The record of a group holds no color but the records of its members and the distance they are moved by, so a group
+ * that is moved as a whole gets a new record that shares the member records of the old one.
+ * <p>
+ * Records are what a ShapeSnapshot is made of. Being immutable, they can be shared between versions of
+ * the drawing and read on any thread while the editor goes on changing the live shapes.
+ */
+public final class ShapeRecord {
+
+	/** The kinds of shape a record can hold. */
+	public static final int LINE = 0, RECT = 1, OVAL = 2, GROUP = 3;
+
+	private static final ShapeRecord[] NO_MEMBERS = new ShapeRecord[0];
+	// rough footprints of a record and of a reference to a member, for the budget of the undo history
+	private static final long RECORD_BYTES = 80;
+	private static final long MEMBER_BYTES = 8;
+
+	private final int type;
+	private final double x1, y1, x2, y2;
+	private final boolean filled;
+	private final Color color;
+	private final ShapeRecord[] members;
+	private final double memberDx, memberDy;
+
+	/**
+	 * Constructs a record.
+	 */
+	private ShapeRecord(int type, double x1, double y1, double x2, double y2, boolean filled, Color color,
+			ShapeRecord[] members, double memberDx, double memberDy) {
+		this.type = type;
+		this.x1 = x1;
+		this.y1 = y1;
+		this.x2 = x2;
+		this.y2 = y2;
+		this.filled = filled;
+		this.color = color;
+		this.members = members;
+		this.memberDx = memberDx;
+		this.memberDy = memberDy;
+	}
+
+	/**
+	 * Records a line, rect or oval as it is now. Shapes of any other kind are recorded as rects,
+	 * like the file formats do.
+	 *
+	 * @param s The shape, which must not be a group.
+	 * @return The record.
+	 */
+	static ShapeRecord of(MyShape s) {
+		int type = s instanceof Line ? LINE : s instanceof Oval ? OVAL : RECT;
+		return new ShapeRecord(type, s.getX1(), s.getY1(), s.getX2(), s.getY2(), s.isFilled(), s.getColor(),
+				NO_MEMBERS, 0, 0);
+	}
+
+	/**
+	 * Records a group from the records of its members.
+	 *
+	 * @param g        The group.
+	 * @param members  The records of the members, which the record takes over and never changes.
+	 * @param memberDx The distance the members are moved by in the x-direction.
+	 * @param memberDy The distance the members are moved by in the y-direction.
+	 * @return The record.
+	 */
+	static ShapeRecord group(ShapeGroup g, ShapeRecord[] members, double memberDx, double memberDy) {
+		return new ShapeRecord(GROUP, g.getX1(), g.getY1(), g.getX2(), g.getY2(), false, null,
+				members, memberDx, memberDy);
+	}
+
+	/**
+	 * Returns the kind of shape.
+	 *
+	 * @return LINE, RECT, OVAL or GROUP.
+	 */
+	public int getType() {
+		return type;
+	}
+
+	/**
+	 * Returns the number of members of a group.
+	 *
+	 * @return The number of members, 0 for a shape that is not a group.
+	 */
+	public int size() {
+		return members.length;
+	}
+
+	/**
+	 * Writes the record in binary: its kind, points, filled flag and color components,
+	 * followed for a group by its members and the distance they are moved by.
+	 *
+	 * @param out The output to write to.
+	 * @throws IOException If the output fails.
+	 */
+	public void writeTo(DataOutput out) throws IOException {
+		out.writeByte(type);
+		out.writeDouble(x1);
+		out.writeDouble(y1);
+		out.writeDouble(x2);
+		out.writeDouble(y2);
+		if (type == GROUP) {
+			out.writeDouble(memberDx);
+			out.writeDouble(memberDy);
+			out.writeInt(members.length);
+			for (ShapeRecord member : members) {
+				member.writeTo(out);
+			}
+			return;
+		}
+		out.writeBoolean(filled);
+		out.writeDouble(color.getRed());
+		out.writeDouble(color.getGreen());
+		out.writeDouble(color.getBlue());
+		out.writeDouble(color.getOpacity());
+	}
+
+	/**
+	 * Checks whether this record differs from an earlier record of the same shape only by where the group is:
+	 * both are records of a group that share the member records, so the group was moved as a whole.
+	 * Such a change is written with writeMoveTo, in a constant number of bytes.
+	 *
+	 * @param earlier The earlier record of the shape, or null.
+	 * @return True if this record is the earlier one moved.
+	 */
+	boolean isMoveOf(ShapeRecord earlier) {
+		return earlier != null && type == GROUP && earlier.type == GROUP && members == earlier.members;
+	}
+
+	/**
+	 * Estimates the memory this record adds to a snapshot in place of an earlier record of the same shape.
+	 * A moved group shares the member records of the earlier one and only costs the record itself.
+	 *
+	 * @param earlier The earlier record of the shape, or null.
+	 * @return The estimated number of bytes.
+	 */
+	long sizeInBytes(ShapeRecord earlier) {
+		if (isMoveOf(earlier)) {
+			return RECORD_BYTES;
+		}
+		long size = RECORD_BYTES;
+		for (ShapeRecord member : members) {
+			size += MEMBER_BYTES + member.sizeInBytes(null);
+		}
+		return size;
+	}
+
+	/**
+	 * Changes a shape that matches this record into one that matches another record of the same shape, in place,
+	 * so that the shape keeps its identity, its id and its place in the index. A line, rect or oval only has to be
+	 * of the same kind; a group only when the other record is this one moved, and the group is then moved as a whole.
+	 *
+	 * @param s      The shape, as this record holds it.
+	 * @param target The record the shape must match.
+	 * @return False if the shape cannot be changed in place and has to be replaced by target.toShape().
+	 */
+	boolean changeInPlace(MyShape s, ShapeRecord target) {
+		if (type == GROUP) {
+			if (!target.isMoveOf(this)) {
+				return false;
+			}
+			s.move(target.memberDx - memberDx, target.memberDy - memberDy);
+			return true;
+		}
+		if (target.type != type) {
+			return false;
+		}
+		s.setP1(target.x1, target.y1);
+		s.setP2(target.x2, target.y2);
+		s.setFilled(target.filled);
+		s.setColor(target.color);
+		return true;
+	}
+
+	/**
+	 * Writes where a group is, without its members: its points and the distance its members are moved by.
+	 * The values are written as they are and not as the distance moved, so that reading them back
+	 * gives this record exactly.
+	 *
+	 * @param out The output to write to.
+	 * @throws IOException If the output fails.
+	 */
+	void writeMoveTo(DataOutput out) throws IOException {
+		out.writeDouble(x1);
+		out.writeDouble(y1);
+		out.writeDouble(x2);
+		out.writeDouble(y2);
+		out.writeDouble(memberDx);
+		out.writeDouble(memberDy);
+	}
+
+	/**
+	 * Reads a move written by writeMoveTo and applies it to the earlier record of the group.
+	 *
+	 * @param in      The input to read from.
+	 * @param earlier The record of the group before the move.
+	 * @return The record of the moved group, sharing the member records of the earlier one.
+	 * @throws IOException If the input fails, or the earlier record is not a group.
+	 */
+	static ShapeRecord readMove(DataInput in, ShapeRecord earlier) throws IOException {
+		double x1 = in.readDouble(), y1 = in.readDouble(), x2 = in.readDouble(), y2 = in.readDouble();
+		double dx = in.readDouble(), dy = in.readDouble();
+		if (earlier == null || earlier.type != GROUP) {
+			throw new IOException("move of a shape that is not a group");
+		}
+		return new ShapeRecord(GROUP, x1, y1, x2, y2, false, null, earlier.members, dx, dy);
+	}
+
+	/**
+	 * Reads a record written by writeTo.
+	 *
+	 * @param in The input to read from.
+	 * @return The record.
+	 * @throws IOException If the input fails or does not hold a record.
+	 */
+	public static ShapeRecord readFrom(DataInput in) throws IOException {
+		int type = in.readByte();
+		if (type < LINE || type > GROUP) {
+			throw new IOException("unknown kind of shape " + type);
+		}
+		double x1 = in.readDouble(), y1 = in.readDouble(), x2 = in.readDouble(), y2 = in.readDouble();
+		if (type == GROUP) {
+			double dx = in.readDouble(), dy = in.readDouble();
+			int n = in.readInt();
+			if (n < 0) {
+				throw new IOException("negative group size " + n);
+			}
+			ShapeRecord[] members = new ShapeRecord[n];
+			for (int i = 0; i < n; i++) {
+				members[i] = readFrom(in);
+			}
+			return new ShapeRecord(GROUP, x1, y1, x2, y2, false, null, members, dx, dy);
+		}
+		boolean filled = in.readBoolean();
+		Color color;
+		try {
+			color = Color.color(in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble());
+		}
+		catch (IllegalArgumentException e) {
+			throw new IOException("invalid color", e);
+		}
+		return new ShapeRecord(type, x1, y1, x2, y2, filled, color, NO_MEMBERS, 0, 0);
+	}
+
+	/**
+	 * Creates a new shape from the record, that belongs to no canvas and no store.
+	 * The members of a group are created as well, where the group has moved them.
+	 *
+	 * @return The shape.
+	 */
+	public MyShape toShape() {
+		return toShape(0, 0);
+	}
+
+	/**
+	 * Creates a new shape from the record, moved by the given distances.
+	 */
+	private MyShape toShape(double dx, double dy) {
+		if (type == GROUP) {
+			ShapeGroup g = new ShapeGroup();
+			g.setP1(x1 + dx, y1 + dy);
+			g.setP2(x2 + dx, y2 + dy);
+			for (ShapeRecord member : members) {
+				g.addMember(member.toShape(dx + memberDx, dy + memberDy));
+			}
+			return g;
+		}
+
+		MyShape s = type == LINE ? new Line() : type == OVAL ? new Oval() : new Rect();
+		s.setP1(x1 + dx, y1 + dy);
+		s.setP2(x2 + dx, y2 + dy);
+		s.setFilled(filled);
+		s.setColor(color);
+		return s;
+	}
+}
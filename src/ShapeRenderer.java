@@ -0,0 +1,550 @@
+import java.util.Arrays;
+import java.util.List;
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+/**
+ * ShapeRenderer draws a list of shapes in batches that share their paint state, so that the stroke or
+ * fill color is set once per batch instead of once per shape, and runs of lines and rectangles are
+ * drawn as one path with a single stroke or fill call.
+ * <p>
+ * Shapes may only be reordered where that cannot change the picture. Every shape gets a level one
+ * above the highest level of the earlier shapes it overlaps with a different paint state; shapes of the
+ * same level and paint state never overlap anything else of that level, so the levels are drawn in
+ * order and each level batch by batch. Overlaps are found on a coarse grid over the drawn region and
+ * are conservative, which can only cost batching, never correctness.
+ * <p>
+ * When the shapes have nearly as many paint states as there are shapes, sorting cannot form batches,
+ * so the shapes are drawn in their own order and only consecutive shapes with the same paint state share a batch.
+ * <p>
+ * Groups, shapes that are not in the store of the others and any other shapes that draw themselves
+ * are drawn one at a time through their own draw method, in a level of their own where they overlap.
+ * <p>
+ * With level of detail, shapes that are smaller than the dot size in both directions are not drawn as shapes
+ * at all: each one sets the pixel under its center in a raster. Dots share one paint state, so they get levels
+ * like the other shapes and the dots of a level are drawn as one image, which keeps them above and below the
+ * same shapes as before. Groups smaller than the outline size are drawn as their bounding box only, without
+ * their members. So the cost of the shapes too small to see is a pixel write each, however many of them there are.
+ * ShapeRasterizer, which draws the tiles, decides what is a dot or an outline with the same rules and defaults.
+ * <p>
+ * The images of the dots are reused from frame to frame. An image is only written again after nextFrame,
+ * since the canvas reads it when the frame is rendered, not when it is drawn.
+ */
+public class ShapeRenderer {
+
+	// in pixels, so the grid has as many cells at any zoom
+	private static final int CELL_SIZE = 32;
+	// strokes reach half the line width beyond the bounds, and antialiasing a little further
+	private static final double STROKE_PADDING = 1;
+
+	private static final int LINE = 0, RECT_OUTLINE = 1, RECT_FILL = 2, OVAL_OUTLINE = 3, OVAL_FILL = 4, KINDS = 5;
+	private static final int SELF_DRAWN = Integer.MAX_VALUE;
+	private static final int OUTLINE = Integer.MAX_VALUE - 1;
+	private static final int DOTS = Integer.MAX_VALUE - 2;
+	private static final int DOT_IMAGES = 4;
+	// the default detail thresholds in pixels, of ShapeRasterizer too
+	static final double DOT_SIZE = 2;
+	static final double OUTLINE_SIZE = 8;
+	private static final int EMPTY = -1, MIXED = -1;
+
+	private MyShape[] items = new MyShape[256];
+	private long[] batchKeys = new long[256];
+	private int[] order = new int[256];
+	private int[] keys = new int[256];
+	private int[] cellLevel = new int[0];
+	private int[] cellKey = new int[0];
+	private double cellSize = CELL_SIZE;
+	private int[] seen = new int[0];
+	private int pass;
+
+	private double dotSize = DOT_SIZE;
+	private double outlineSize = OUTLINE_SIZE;
+	// pixels per drawing unit, for the detail thresholds and the dot raster
+	private double scale = 1;
+	private int[] raster = new int[0];
+	private WritableImage[] dotImages = new WritableImage[DOT_IMAGES];
+	private int dotImagesUsed;
+	private double regionX, regionY, regionWidth, regionHeight;
+
+	private Color stroke, fill;
+
+	/**
+	 * Sets the sizes below which shapes are drawn with less detail. A size of 0 turns that part off.
+	 *
+	 * @param dotSize     Shapes narrower and lower than this are drawn as a single pixel.
+	 * @param outlineSize Groups narrower and lower than this are drawn as their bounding box only.
+	 */
+	public void setDetailThresholds(double dotSize, double outlineSize) {
+		this.dotSize = dotSize;
+		this.outlineSize = outlineSize;
+	}
+
+	/**
+	 * Returns the size in pixels below which shapes are drawn as a single pixel.
+	 *
+	 * @return The dot size.
+	 */
+	public double getDotSize() {
+		return dotSize;
+	}
+
+	/**
+	 * Returns the size in pixels below which groups are drawn as their bounding box only.
+	 *
+	 * @return The outline size.
+	 */
+	public double getOutlineSize() {
+		return outlineSize;
+	}
+
+	/**
+	 * Returns whether a shape is drawn as a single pixel: it is not a group and is smaller than
+	 * the dot size in both directions.
+	 *
+	 * @param s       The shape.
+	 * @param scale   The pixels per drawing unit.
+	 * @param dotSize The dot size in pixels.
+	 * @return True if the shape is drawn as a dot.
+	 */
+	static boolean isDot(MyShape s, double scale, double dotSize) {
+		return !(s instanceof ShapeGroup) && s.getWidth() * scale < dotSize && s.getHeight() * scale < dotSize;
+	}
+
+	/**
+	 * Returns whether a shape is drawn as its bounding box only: it is a group and is smaller than
+	 * the outline size in both directions.
+	 *
+	 * @param s           The shape.
+	 * @param scale       The pixels per drawing unit.
+	 * @param outlineSize The outline size in pixels.
+	 * @return True if only the outline of the shape is drawn.
+	 */
+	static boolean isOutline(MyShape s, double scale, double outlineSize) {
+		return s instanceof ShapeGroup && s.getWidth() * scale < outlineSize && s.getHeight() * scale < outlineSize;
+	}
+
+	/**
+	 * Returns the column or row of the pixel that a dot sets, for a coordinate of the center of the shape.
+	 *
+	 * @param center The center coordinate of the shape, in drawing units.
+	 * @param scale  The pixels per drawing unit.
+	 * @return The pixel the dot falls on.
+	 */
+	static int dotPixel(double center, double scale) {
+		return (int) Math.floor(center * scale);
+	}
+
+	/**
+	 * Sets how many pixels a drawing unit covers, when the graphics context is zoomed.
+	 * The detail thresholds and the dots are in pixels.
+	 *
+	 * @param scale The pixels per drawing unit.
+	 */
+	public void setScale(double scale) {
+		this.scale = scale;
+	}
+
+	/**
+	 * Tells the renderer that the frames drawn so far have been handed to the screen, so the images
+	 * of their dots may be written again. Until then every level of dots gets an image of its own.
+	 */
+	public void nextFrame() {
+		dotImagesUsed = 0;
+	}
+
+	/**
+	 * Draws the shapes in batches. The result is the same as drawing them one after the other.
+	 *
+	 * @param gc     The graphics context to draw on.
+	 * @param shapes The shapes, in drawing order.
+	 * @param x      The x-coordinate of the region being drawn.
+	 * @param y      The y-coordinate of the region being drawn.
+	 * @param width  The width of the region being drawn.
+	 * @param height The height of the region being drawn.
+	 */
+	public void draw(GraphicsContext gc, List<MyShape> shapes, double x, double y, double width, double height) {
+		int count = shapes.size();
+		if (count == 0) {
+			return;
+		}
+		if (items.length < count) {
+			int capacity = Math.max(count, items.length * 2);
+			items = new MyShape[capacity];
+			batchKeys = new long[capacity];
+			order = new int[capacity];
+			keys = new int[capacity];
+		}
+
+		ShapeStore store = shapes.get(0).store;
+		if (store != null && seen.length < store.paintCount() * KINDS) {
+			seen = new int[store.paintCount() * KINDS * 2];
+		}
+		pass++;
+
+		regionX = x;
+		regionY = y;
+		regionWidth = width;
+		regionHeight = height;
+
+		int n = 0;
+		int distinct = 0;
+		for (int i = 0; i < count; i++) {
+			MyShape s = shapes.get(i);
+			int key;
+			if (isDot(s, scale, dotSize)) {
+				key = DOTS;
+			}
+			else if (isOutline(s, scale, outlineSize)) {
+				key = OUTLINE;
+			}
+			else {
+				key = key(s, store);
+			}
+			if (key < DOTS && seen[key] != pass) {
+				seen[key] = pass;
+				distinct++;
+			}
+			items[n] = s;
+			keys[n] = key;
+			order[n] = n;
+			n++;
+		}
+
+
+		if (distinct * 2 > n) {
+			for (int i = 0; i < n; i++) {
+				batchKeys[i] = keys[i];
+			}
+		}
+		else {
+			assignLevels(n, x, y, width, height);
+			ShapeIndex.sortByOrder(batchKeys, order, 0, n - 1);
+		}
+
+		stroke = null;
+		fill = null;
+		int start = 0;
+		while (start < n) {
+			int end = start + 1;
+			while (end < n && batchKeys[end] == batchKeys[start]) {
+				end++;
+			}
+			drawBatch(gc, start, end);
+			start = end;
+		}
+
+		Arrays.fill(items, 0, n, null);
+	}
+
+	/**
+	 * Draws the items of a batch of dots as single pixels of one image, in their own order,
+	 * so the last shape on a pixel gives it its color. The image has one pixel per pixel of the screen.
+	 *
+	 * @param gc    The graphics context to draw on.
+	 * @param start The first position of the batch in the sorted order.
+	 * @param end   One past the last position of the batch.
+	 */
+	private void drawDots(GraphicsContext gc, int start, int end) {
+		// sorting by level does not keep the drawing order within a batch
+		Arrays.sort(order, start, end);
+
+		// the image only covers the pixels that have dots
+		int x0 = Integer.MAX_VALUE, y0 = Integer.MAX_VALUE, x1 = Integer.MIN_VALUE, y1 = Integer.MIN_VALUE;
+		for (int i = start; i < end; i++) {
+			MyShape s = items[order[i]];
+			int px = dotPixel(s.getULX() + s.getWidth() / 2, scale);
+			int py = dotPixel(s.getULY() + s.getHeight() / 2, scale);
+			x0 = Math.min(x0, px);
+			y0 = Math.min(y0, py);
+			x1 = Math.max(x1, px);
+			y1 = Math.max(y1, py);
+		}
+		x0 = Math.max(x0, (int) Math.floor(regionX * scale));
+		y0 = Math.max(y0, (int) Math.floor(regionY * scale));
+		x1 = Math.min(x1, (int) Math.ceil((regionX + regionWidth) * scale) - 1);
+		y1 = Math.min(y1, (int) Math.ceil((regionY + regionHeight) * scale) - 1);
+		if (x0 > x1 || y0 > y1) {
+			return;
+		}
+
+		// one more column and row stay clear, so smoothing at the edges does not pick up older pixels
+		int w = x1 - x0 + 1;
+		int h = y1 - y0 + 1;
+		int scan = w + 1;
+		if (raster.length < scan * (h + 1)) {
+			raster = new int[scan * (h + 1)];
+		}
+		Arrays.fill(raster, 0, scan * (h + 1), 0);
+
+		for (int i = start; i < end; i++) {
+			MyShape s = items[order[i]];
+			int px = dotPixel(s.getULX() + s.getWidth() / 2, scale) - x0;
+			int py = dotPixel(s.getULY() + s.getHeight() / 2, scale) - y0;
+			if (px >= 0 && px < w && py >= 0 && py < h) {
+				raster[py * scan + px] = argb(s.getColor());
+			}
+		}
+
+		WritableImage image = dotImage(w + 1, h + 1);
+		image.getPixelWriter().setPixels(0, 0, w + 1, h + 1, PixelFormat.getIntArgbInstance(), raster, 0, scan);
+		gc.drawImage(image, 0, 0, w, h, x0 / scale, y0 / scale, w / scale, h / scale);
+	}
+
+	/**
+	 * Returns an image of at least the given size that no frame still waiting for the screen uses.
+	 * The images only grow, so they are replaced while the dots cover more pixels than ever before.
+	 *
+	 * @param w The width needed, in pixels.
+	 * @param h The height needed, in pixels.
+	 * @return The image to write the dots into.
+	 */
+	private WritableImage dotImage(int w, int h) {
+		if (dotImagesUsed == DOT_IMAGES) {
+			// more levels of dots since the last frame than there are images, the rest are not kept
+			return new WritableImage(w, h);
+		}
+		WritableImage image = dotImages[dotImagesUsed];
+		if (image == null || image.getWidth() < w || image.getHeight() < h) {
+			int width = image == null ? w : Math.max(w, (int) image.getWidth());
+			int height = image == null ? h : Math.max(h, (int) image.getHeight());
+			image = new WritableImage(width, height);
+			dotImages[dotImagesUsed] = image;
+		}
+		dotImagesUsed++;
+		return image;
+	}
+
+	/**
+	 * Packs a color into 0xAARRGGBB.
+	 */
+	private static int argb(Color c) {
+		int a = (int) Math.round(c.getOpacity() * 255);
+		int r = (int) Math.round(c.getRed() * 255);
+		int g = (int) Math.round(c.getGreen() * 255);
+		int b = (int) Math.round(c.getBlue() * 255);
+		return (a << 24) | (r << 16) | (g << 8) | b;
+	}
+
+	/**
+	 * Gives every item the lowest level that is above all earlier overlapping items with another paint state,
+	 * and stores the level together with the paint state as its batch key.
+	 *
+	 * @param n      The number of items.
+	 * @param x      The x-coordinate of the region being drawn.
+	 * @param y      The y-coordinate of the region being drawn.
+	 * @param width  The width of the region being drawn.
+	 * @param height The height of the region being drawn.
+	 */
+	private void assignLevels(int n, double x, double y, double width, double height) {
+		cellSize = CELL_SIZE / scale;
+		int columns = Math.max(1, (int) Math.ceil(width / cellSize));
+		int rows = Math.max(1, (int) Math.ceil(height / cellSize));
+		if (cellLevel.length < columns * rows) {
+			cellLevel = new int[columns * rows];
+			cellKey = new int[columns * rows];
+		}
+		Arrays.fill(cellLevel, 0, columns * rows, EMPTY);
+
+		for (int i = 0; i < n; i++) {
+			MyShape s = items[i];
+			int key = keys[i];
+
+			int c0 = cell(s.getULX() - STROKE_PADDING - x, columns);
+			int c1 = cell(s.getULX() + s.getWidth() + STROKE_PADDING - x, columns);
+			int r0 = cell(s.getULY() - STROKE_PADDING - y, rows);
+			int r1 = cell(s.getULY() + s.getHeight() + STROKE_PADDING - y, rows);
+
+			// the lowest level that is above every overlapping shape with another paint state
+			int level = 0;
+			for (int r = r0; r <= r1; r++) {
+				for (int c = c0; c <= c1; c++) {
+					int cell = r * columns + c;
+					int below = cellLevel[cell];
+					if (below == EMPTY) {
+						continue;
+					}
+					int needed = key >= OUTLINE || cellKey[cell] != key ? below + 1 : below;
+					level = Math.max(level, needed);
+				}
+			}
+
+			for (int r = r0; r <= r1; r++) {
+				for (int c = c0; c <= c1; c++) {
+					int cell = r * columns + c;
+					if (level > cellLevel[cell]) {
+						cellLevel[cell] = level;
+						cellKey[cell] = key >= OUTLINE ? MIXED : key;
+					}
+					else if (cellKey[cell] != key) {
+						cellKey[cell] = MIXED;
+					}
+				}
+			}
+
+			batchKeys[i] = ((long) level << 32) | key;
+		}
+	}
+
+	/**
+	 * Draws the items of one batch, which all share the same kind and color.
+	 *
+	 * @param gc    The graphics context to draw on.
+	 * @param start The first position of the batch in the sorted order.
+	 * @param end   One past the last position of the batch.
+	 */
+	private void drawBatch(GraphicsContext gc, int start, int end) {
+		MyShape first = items[order[start]];
+		int key = (int) batchKeys[start];
+		if (key == DOTS) {
+			drawDots(gc, start, end);
+			return;
+		}
+		if (key >= OUTLINE) {
+			for (int i = start; i < end; i++) {
+				MyShape s = items[order[i]];
+				if (key == OUTLINE) {
+					((ShapeGroup) s).drawOutline(gc);
+				}
+				else {
+					s.draw(gc);
+				}
+			}
+			// the shapes set their own colors
+			stroke = null;
+			fill = null;
+			return;
+		}
+
+		Color color = first.getColor();
+		int kind = key % KINDS;
+		// a single path covers overlaps once, which only looks the same as separate calls for opaque colors
+		boolean path = end - start > 1 && color.isOpaque();
+
+		switch (kind) {
+		case LINE:
+			setStroke(gc, color);
+			if (path) {
+				gc.beginPath();
+				for (int i = start; i < end; i++) {
+					MyShape s = items[order[i]];
+					gc.moveTo(s.getX1(), s.getY1());
+					gc.lineTo(s.getX2(), s.getY2());
+				}
+				gc.stroke();
+			}
+			else {
+				for (int i = start; i < end; i++) {
+					MyShape s = items[order[i]];
+					gc.strokeLine(s.getX1(), s.getY1(), s.getX2(), s.getY2());
+				}
+			}
+			break;
+		case RECT_OUTLINE:
+		case RECT_FILL:
+			boolean filled = kind == RECT_FILL;
+			if (filled) {
+				setFill(gc, color);
+			}
+			else {
+				setStroke(gc, color);
+			}
+			if (path) {
+				gc.beginPath();
+				for (int i = start; i < end; i++) {
+					MyShape s = items[order[i]];
+					gc.rect(s.getULX(), s.getULY(), s.getWidth(), s.getHeight());
+				}
+				if (filled) {
+					gc.fill();
+				}
+				else {
+					gc.stroke();
+				}
+			}
+			else {
+				for (int i = start; i < end; i++) {
+					MyShape s = items[order[i]];
+					if (filled) {
+						gc.fillRect(s.getULX(), s.getULY(), s.getWidth(), s.getHeight());
+					}
+					else {
+						gc.strokeRect(s.getULX(), s.getULY(), s.getWidth(), s.getHeight());
+					}
+				}
+			}
+			break;
+		case OVAL_FILL:
+			setFill(gc, color);
+			for (int i = start; i < end; i++) {
+				MyShape s = items[order[i]];
+				gc.fillOval(s.getULX(), s.getULY(), s.getWidth(), s.getHeight());
+			}
+			break;
+		default:
+			setStroke(gc, color);
+			for (int i = start; i < end; i++) {
+				MyShape s = items[order[i]];
+				gc.strokeOval(s.getULX(), s.getULY(), s.getWidth(), s.getHeight());
+			}
+			break;
+		}
+	}
+
+	/**
+	 * Returns the batch key of a shape: its kind and paint id, or SELF_DRAWN for shapes that draw themselves.
+	 * Only the exact shape classes are batched, since a subclass may draw differently.
+	 */
+	private static int key(MyShape s, ShapeStore store) {
+		if (store == null || s.store != store) {
+			return SELF_DRAWN;
+		}
+
+		int kind;
+		Class<?> type = s.getClass();
+		if (type == Line.class) {
+			kind = LINE;
+		}
+		else if (type == Rect.class) {
+			kind = s.isFilled() ? RECT_FILL : RECT_OUTLINE;
+		}
+		else if (type == Oval.class) {
+			kind = s.isFilled() ? OVAL_FILL : OVAL_OUTLINE;
+		}
+		else {
+			return SELF_DRAWN;
+		}
+
+		return store.paint[s.id] * KINDS + kind;
+	}
+
+	/**
+	 * Returns the grid cell of a coordinate relative to the region, clamped to the grid.
+	 */
+	private int cell(double offset, int cells) {
+		int c = (int) Math.floor(offset / cellSize);
+		return Math.max(0, Math.min(cells - 1, c));
+	}
+
+	/**
+	 * Sets the stroke color unless it is already set.
+	 */
+	private void setStroke(GraphicsContext gc, Color color) {
+		if (!color.equals(stroke)) {
+			gc.setStroke(color);
+			stroke = color;
+		}
+	}
+
+	/**
+	 * Sets the fill color unless it is already set.
+	 */
+	private void setFill(GraphicsContext gc, Color color) {
+		if (!color.equals(fill)) {
+			gc.setFill(color);
+			fill = color;
+		}
+	}
+}
@@ -0,0 +1,394 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * ShapeSnapshot is one version of a drawing that never changes: the records of its top-level shapes in drawing order.
+ * <p>
+ * The records are kept in a persistent balanced tree, keyed by the position of each shape in the drawing order.
+ * Adding, replacing or removing a record builds a new snapshot that copies only the O(log n) nodes on the path
+ * to it and shares all the others with the old one, so every version stays valid, takes little memory of its own
+ * and can be read on any thread. ShapeDocument keeps the snapshot of a canvas up to date.
+ * <p>
+ * The versions are also what the undo history of the canvas keeps, and diff finds what changed between two of them
+ * by walking only the parts of their trees they do not share.
+ */
+public final class ShapeSnapshot {
+
+	/** The snapshot of an empty drawing. */
+	public static final ShapeSnapshot EMPTY = new ShapeSnapshot(null, 0);
+
+	private final Node root;
+	private final long version;
+
+	/**
+	 * Constructs a snapshot over a tree.
+	 */
+	private ShapeSnapshot(Node root, long version) {
+		this.root = root;
+		this.version = version;
+	}
+
+	/**
+	 * Returns the number of top-level shapes.
+	 *
+	 * @return The number of shapes in the snapshot.
+	 */
+	public int size() {
+		return root == null ? 0 : root.size;
+	}
+
+	/**
+	 * Returns the height of the tree, the number of nodes copied at most when a record is added or replaced.
+	 *
+	 * @return The height of the tree.
+	 */
+	int depth() {
+		return height(root);
+	}
+
+	/**
+	 * Returns the version of the drawing, which goes up with every snapshot that differs from the one before.
+	 *
+	 * @return The version number.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns the record of a key.
+	 *
+	 * @param key The position of the shape in the drawing order.
+	 * @return The record, or null if the snapshot has no such key.
+	 */
+	ShapeRecord get(long key) {
+		Node n = root;
+		while (n != null && n.key != key) {
+			n = key < n.key ? n.left : n.right;
+		}
+		return n == null ? null : n.value;
+	}
+
+	/**
+	 * Hands the records to a consumer in drawing order.
+	 *
+	 * @param action The consumer of the records.
+	 */
+	public void forEach(Consumer<ShapeRecord> action) {
+		forEachKeyed((r, key) -> action.accept(r));
+	}
+
+	/**
+	 * Hands the records to a consumer in drawing order, each with its key.
+	 *
+	 * @param action The consumer of the records and their keys.
+	 */
+	void forEachKeyed(ObjLongConsumer<ShapeRecord> action) {
+		// an explicit stack, the tree is only O(log n) deep
+		Node[] stack = new Node[2 * height(root) + 1];
+		int top = 0;
+		Node n = root;
+		while (n != null || top > 0) {
+			while (n != null) {
+				stack[top++] = n;
+				n = n.left;
+			}
+			n = stack[--top];
+			action.accept(n.value, n.key);
+			n = n.right;
+		}
+	}
+
+	/**
+	 * Receives the differences between two snapshots.
+	 */
+	interface Difference {
+
+		/**
+		 * The record of a key differs between the snapshots.
+		 *
+		 * @param key    The position of the shape in the drawing order.
+		 * @param before The record in the first snapshot, or null if it has no such key.
+		 * @param after  The record in the second snapshot, or null if it has no such key.
+		 */
+		void differs(long key, ShapeRecord before, ShapeRecord after);
+	}
+
+	/**
+	 * Hands the keys whose records differ between this snapshot and another to a consumer, in drawing order.
+	 * Both trees are walked side by side, and a subtree the two snapshots share is skipped as a whole,
+	 * so comparing two versions of a drawing costs about the number of changes between them times the height of
+	 * the trees, and not the size of the drawing.
+	 *
+	 * @param other  The snapshot to compare with.
+	 * @param action The consumer of the differences.
+	 */
+	void diff(ShapeSnapshot other, Difference action) {
+		Cursor a = new Cursor(root), b = new Cursor(other.root);
+		while (!a.isEmpty() || !b.isEmpty()) {
+			if (a.isWhole() && b.isWhole() && a.top() == b.top()) {
+				// shared by both versions
+				a.pop();
+				b.pop();
+			}
+			else if (a.isWhole() && !b.isBefore(a) && !(b.isWhole() && height(b.top()) > height(a.top()))) {
+				a.expand();
+			}
+			else if (b.isWhole() && !a.isBefore(b)) {
+				b.expand();
+			}
+			else if (a.isSingle() && (!b.isSingle() || a.key() < b.key())) {
+				action.differs(a.key(), a.pop().value, null);
+			}
+			else if (b.isSingle() && (!a.isSingle() || b.key() < a.key())) {
+				action.differs(b.key(), null, b.pop().value);
+			}
+			else {
+				Node x = a.pop(), y = b.pop();
+				if (x.value != y.value) {
+					action.differs(x.key, x.value, y.value);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Creates new shapes from the records, for example to save or to draw them away from the canvas.
+	 * The shapes belong to no canvas, so the editor can go on changing its own shapes meanwhile.
+	 *
+	 * @return The top-level shapes in drawing order.
+	 */
+	public ArrayList<MyShape> toShapes() {
+		ArrayList<MyShape> shapes = new ArrayList<>(size());
+		forEach(r -> shapes.add(r.toShape()));
+		return shapes;
+	}
+
+	/**
+	 * Returns a snapshot with the record of a key added or replaced.
+	 *
+	 * @param key    The position of the shape in the drawing order.
+	 * @param record The record of the shape.
+	 * @return The new snapshot.
+	 */
+	ShapeSnapshot with(long key, ShapeRecord record) {
+		return new ShapeSnapshot(put(root, key, record), version + 1);
+	}
+
+	/**
+	 * Returns a snapshot with the same records under another version number, for an earlier version
+	 * that becomes the current one again.
+	 *
+	 * @param version The version of the new snapshot.
+	 * @return The new snapshot.
+	 */
+	ShapeSnapshot renumbered(long version) {
+		return new ShapeSnapshot(root, version);
+	}
+
+	/**
+	 * Returns a snapshot without the record of a key.
+	 *
+	 * @param key The position of the shape in the drawing order.
+	 * @return The new snapshot, or this one if it has no such key.
+	 */
+	ShapeSnapshot without(long key) {
+		Node n = remove(root, key);
+		return n == root ? this : new ShapeSnapshot(n, version + 1);
+	}
+
+	/**
+	 * Builds a snapshot from records that are already sorted by their keys, in linear time.
+	 *
+	 * @param keys    The keys in increasing order.
+	 * @param records The records of the keys.
+	 * @param count   The number of records.
+	 * @param version The version of the new snapshot.
+	 * @return The new snapshot.
+	 */
+	static ShapeSnapshot build(long[] keys, ShapeRecord[] records, int count, long version) {
+		return new ShapeSnapshot(build(keys, records, 0, count - 1), version);
+	}
+
+	private static Node build(long[] keys, ShapeRecord[] records, int lo, int hi) {
+		if (lo > hi) {
+			return null;
+		}
+		int mid = (lo + hi) >>> 1;
+		return new Node(keys[mid], records[mid], build(keys, records, lo, mid - 1), build(keys, records, mid + 1, hi));
+	}
+
+	/**
+	 * An immutable node of an AVL tree, which also counts the nodes below it.
+	 */
+	private static final class Node {
+		final long key;
+		final ShapeRecord value;
+		final Node left, right;
+		final int height, size;
+
+		Node(long key, ShapeRecord value, Node left, Node right) {
+			this.key = key;
+			this.value = value;
+			this.left = left;
+			this.right = right;
+			height = Math.max(height(left), height(right)) + 1;
+			size = size(left) + size(right) + 1;
+		}
+	}
+
+	/**
+	 * The part of a tree still to be walked by diff, in key order: a stack whose entries are either
+	 * a whole subtree, or a single node whose left subtree has been walked already.
+	 */
+	private static final class Cursor {
+		private Node[] nodes = new Node[16];
+		private boolean[] whole = new boolean[16];
+		private int top;
+
+		Cursor(Node root) {
+			if (root != null) {
+				push(root, true);
+			}
+		}
+
+		boolean isEmpty() {
+			return top == 0;
+		}
+
+		/** Tells whether the next entry is a whole subtree. */
+		boolean isWhole() {
+			return top > 0 && whole[top - 1];
+		}
+
+		/** Tells whether the next entry is a single node. */
+		boolean isSingle() {
+			return top > 0 && !whole[top - 1];
+		}
+
+		Node top() {
+			return nodes[top - 1];
+		}
+
+		/** Returns the key of the next entry, which must be a single node. */
+		long key() {
+			return nodes[top - 1].key;
+		}
+
+		/** Tells whether the next entry is a single node with a key below all the keys of the whole subtree of another. */
+		boolean isBefore(Cursor other) {
+			if (!isSingle()) {
+				return false;
+			}
+			Node min = other.top();
+			while (min.left != null) {
+				min = min.left;
+			}
+			return key() < min.key;
+		}
+
+		Node pop() {
+			return nodes[--top];
+		}
+
+		/** Replaces the whole subtree on top by its left subtree, its root and its right subtree. */
+		void expand() {
+			Node n = pop();
+			if (n.right != null) {
+				push(n.right, true);
+			}
+			push(n, false);
+			if (n.left != null) {
+				push(n.left, true);
+			}
+		}
+
+		private void push(Node n, boolean subtree) {
+			if (top == nodes.length) {
+				nodes = Arrays.copyOf(nodes, top * 2);
+				whole = Arrays.copyOf(whole, top * 2);
+			}
+			nodes[top] = n;
+			whole[top++] = subtree;
+		}
+	}
+
+	private static int height(Node n) {
+		return n == null ? 0 : n.height;
+	}
+
+	private static int size(Node n) {
+		return n == null ? 0 : n.size;
+	}
+
+	/**
+	 * Returns a copy of the tree with the key set to the value, copying only the path to it.
+	 */
+	private static Node put(Node n, long key, ShapeRecord value) {
+		if (n == null) {
+			return new Node(key, value, null, null);
+		}
+		if (key < n.key) {
+			return balance(n.key, n.value, put(n.left, key, value), n.right);
+		}
+		if (key > n.key) {
+			return balance(n.key, n.value, n.left, put(n.right, key, value));
+		}
+		return new Node(key, value, n.left, n.right);
+	}
+
+	/**
+	 * Returns a copy of the tree without the key, or the tree itself if it does not hold the key.
+	 */
+	private static Node remove(Node n, long key) {
+		if (n == null) {
+			return null;
+		}
+		if (key < n.key) {
+			Node left = remove(n.left, key);
+			return left == n.left ? n : balance(n.key, n.value, left, n.right);
+		}
+		if (key > n.key) {
+			Node right = remove(n.right, key);
+			return right == n.right ? n : balance(n.key, n.value, n.left, right);
+		}
+		if (n.left == null) {
+			return n.right;
+		}
+		if (n.right == null) {
+			return n.left;
+		}
+		// the smallest key on the right takes the place of the removed one
+		Node min = n.right;
+		while (min.left != null) {
+			min = min.left;
+		}
+		return balance(min.key, min.value, n.left, remove(n.right, min.key));
+	}
+
+	/**
+	 * Creates a node, rotating when the heights of its subtrees differ by more than one.
+	 */
+	private static Node balance(long key, ShapeRecord value, Node left, Node right) {
+		int diff = height(left) - height(right);
+		if (diff > 1) {
+			if (height(left.left) >= height(left.right)) {
+				return new Node(left.key, left.value, left.left, new Node(key, value, left.right, right));
+			}
+			Node lr = left.right;
+			return new Node(lr.key, lr.value, new Node(left.key, left.value, left.left, lr.left),
+					new Node(key, value, lr.right, right));
+		}
+		if (diff < -1) {
+			if (height(right.right) >= height(right.left)) {
+				return new Node(right.key, right.value, new Node(key, value, left, right.left), right.right);
+			}
+			Node rl = right.left;
+			return new Node(rl.key, rl.value, new Node(key, value, left, rl.left),
+					new Node(right.key, right.value, rl.right, right.right));
+		}
+		return new Node(key, value, left, right);
+	}
+}
@@ -0,0 +1,256 @@
+import java.util.Arrays;
+import java.util.HashMap;
+
+import javafx.scene.paint.Color;
+
+/**
+ * ShapeStore keeps the geometry of all the shapes of a drawing in parallel primitive arrays,
+ * one slot per shape id. A MyShape that is attached to a store drops the geometry it had of its own and
+ * reads and writes its slot instead, holding nothing but the store and its id. So the shape objects
+ * become lightweight views and the loops over many shapes (hit-testing, bounds updates, painting)
+ * run over densely packed arrays.
+ * <p>
+ * Ids of detached shapes are recycled. The columns are package-private so that MyShape,
+ * ShapeIndex and ShapeRenderer can read them without going through method calls.
+ * <p>
+ * Besides the color itself, every slot holds a small paint id that is the same for equal colors,
+ * so that shapes can be grouped by color without hashing colors while painting. When the colors handed out
+ * outnumber the shapes by far, the ids are handed out again for the colors still in use, so they stay dense.
+ */
+public class ShapeStore {
+
+	private static final int INITIAL_CAPACITY = 1024;
+	// the paint ids are never compacted below this many colors
+	private static final int MIN_PAINTS = 1024;
+
+	double[] x1, y1, x2, y2;
+	double[] cx, cy;
+	double[] ulx, uly, width, height;
+	boolean[] filled;
+	Color[] color;
+	int[] paint;
+	long[] order;
+	MyShape[] shapes;
+
+	private int capacity;
+	private int used;
+	private int[] free;
+	private int freeCount;
+	private int count;
+
+	ShapeIndex index;
+
+	private HashMap<Color, Integer> paints = new HashMap<>();
+
+	/**
+	 * Constructs an empty ShapeStore.
+	 */
+	public ShapeStore() {
+		capacity = INITIAL_CAPACITY;
+		x1 = new double[capacity];
+		y1 = new double[capacity];
+		x2 = new double[capacity];
+		y2 = new double[capacity];
+		cx = new double[capacity];
+		cy = new double[capacity];
+		ulx = new double[capacity];
+		uly = new double[capacity];
+		width = new double[capacity];
+		height = new double[capacity];
+		filled = new boolean[capacity];
+		color = new Color[capacity];
+		paint = new int[capacity];
+		order = new long[capacity];
+		shapes = new MyShape[capacity];
+		free = new int[16];
+	}
+
+	/**
+	 * Returns the number of shapes attached to the store.
+	 *
+	 * @return The number of attached shapes.
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Returns the number of slots the columns currently have room for.
+	 *
+	 * @return The capacity of the columns.
+	 */
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * Returns the number of slots handed out so far; every id is below this value.
+	 *
+	 * @return The upper limit of the ids.
+	 */
+	public int highestId() {
+		return used;
+	}
+
+	/**
+	 * Returns the number of distinct colors the store has handed out paint ids for; every paint id is below this value.
+	 *
+	 * @return The upper limit of the paint ids.
+	 */
+	public int paintCount() {
+		return paints.size();
+	}
+
+	/**
+	 * Returns the paint id of a color, handing out the next one for a color that has not been seen before.
+	 *
+	 * @param c The color.
+	 * @return The paint id, equal for equal colors.
+	 */
+	int paintId(Color c) {
+		Integer id = paints.get(c);
+		if (id == null) {
+			if (paints.size() >= Math.max(MIN_PAINTS, 2 * count)) {
+				compactPaints();
+				// the slot being colored may already hold the color
+				id = paints.get(c);
+			}
+			if (id == null) {
+				id = paints.size();
+				paints.put(c, id);
+			}
+		}
+		return id;
+	}
+
+	/**
+	 * Hands out the paint ids again, to the colors of the shapes in the store only. This happens after
+	 * at least as many new colors as there are shapes, so it costs constant time per color amortized.
+	 */
+	private void compactPaints() {
+		paints.clear();
+		for (int id = 0; id < used; id++) {
+			if (shapes[id] != null && color[id] != null) {
+				Integer p = paints.get(color[id]);
+				if (p == null) {
+					p = paints.size();
+					paints.put(color[id], p);
+				}
+				paint[id] = p;
+			}
+		}
+	}
+
+	/**
+	 * Returns the shape that owns the given id.
+	 *
+	 * @param id The id of the shape.
+	 * @return The shape, or null if the slot is free.
+	 */
+	public MyShape shape(int id) {
+		return shapes[id];
+	}
+
+	/**
+	 * Moves the geometry of a shape into a slot of the store. Members of a group are attached as well.
+	 *
+	 * @param s The shape to attach.
+	 */
+	public void attach(MyShape s) {
+		if (s.store == this) {
+			return;
+		}
+		if (s.store != null) {
+			s.store.detach(s);
+		}
+
+		int id = freeCount > 0 ? free[--freeCount] : nextSlot();
+		s.saveTo(this, id);
+		shapes[id] = s;
+		count++;
+
+		if (s instanceof ShapeGroup) {
+			for (MyShape member : ((ShapeGroup) s).getMemberView()) {
+				attach(member);
+			}
+		}
+	}
+
+	/**
+	 * Moves the geometry of a shape back into the shape and frees its slot. Members of a group are detached as well,
+	 * unless they are on the canvas by themselves as well.
+	 *
+	 * @param s The shape to detach.
+	 */
+	public void detach(MyShape s) {
+		if (s.store != this) {
+			return;
+		}
+		if (s instanceof ShapeGroup) {
+			for (MyShape member : ((ShapeGroup) s).getMemberView()) {
+				if (index == null || !index.contains(member)) {
+					detach(member);
+				}
+			}
+		}
+
+		int id = s.id;
+		s.loadFrom(this, id);
+		shapes[id] = null;
+		color[id] = null;
+		count--;
+
+		if (freeCount == free.length) {
+			free = Arrays.copyOf(free, free.length * 2);
+		}
+		free[freeCount++] = id;
+	}
+
+	/**
+	 * Detaches every shape.
+	 */
+	public void clear() {
+		for (int id = 0; id < used; id++) {
+			MyShape s = shapes[id];
+			if (s != null) {
+				s.loadFrom(this, id);
+				shapes[id] = null;
+				color[id] = null;
+			}
+		}
+		used = 0;
+		count = 0;
+		freeCount = 0;
+		paints.clear();
+	}
+
+	/**
+	 * Hands out the next never used slot, growing the columns when they are full.
+	 *
+	 * @return The id of the slot.
+	 */
+	private int nextSlot() {
+		if (used == capacity) {
+			capacity *= 2;
+			x1 = Arrays.copyOf(x1, capacity);
+			y1 = Arrays.copyOf(y1, capacity);
+			x2 = Arrays.copyOf(x2, capacity);
+			y2 = Arrays.copyOf(y2, capacity);
+			cx = Arrays.copyOf(cx, capacity);
+			cy = Arrays.copyOf(cy, capacity);
+			ulx = Arrays.copyOf(ulx, capacity);
+			uly = Arrays.copyOf(uly, capacity);
+			width = Arrays.copyOf(width, capacity);
+			height = Arrays.copyOf(height, capacity);
+			filled = Arrays.copyOf(filled, capacity);
+			color = Arrays.copyOf(color, capacity);
+			paint = Arrays.copyOf(paint, capacity);
+			order = Arrays.copyOf(order, capacity);
+			shapes = Arrays.copyOf(shapes, capacity);
+			if (index != null) {
+				index.grow(capacity);
+			}
+		}
+		return used++;
+	}
+}
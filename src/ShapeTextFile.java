@@ -0,0 +1,295 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+/**
+ * ShapeTextFile reads the text format written by ShapeCanvas.toTextFile with all cores.
+ * <p>
+ * Every shape of the format is on a line of its own, so the file is split into chunks at line boundaries
+ * and the chunks are parsed concurrently on the common ForkJoinPool, each into a flat list of records.
+ * A chunk boundary can fall inside a ShapeGroup, so the groups are only put together afterwards,
+ * when the records of the chunks are stitched back together in their original order.
+ * Each chunk is mapped into memory on its own, so files larger than 2 GB can be read as well.
+ */
+public class ShapeTextFile {
+
+	private static final int MIN_CHUNK_SIZE = 1 << 20;
+	private static final int MAX_CHUNK_SIZE = 1 << 26;
+	private static final int SCAN_SIZE = 1 << 12;
+
+	/**
+	 * This class only has static methods.
+	 */
+	private ShapeTextFile() {
+	}
+
+	/**
+	 * Reads the shapes of a text file.
+	 *
+	 * @param fileObj The file to read from.
+	 * @return The top-level shapes of the drawing, in drawing order.
+	 * @throws IOException If the file cannot be read or does not follow the format.
+	 */
+	public static ArrayList<MyShape> read(File fileObj) throws IOException {
+		ArrayList<MyShape> shapes = new ArrayList<>();
+		read(fileObj, shapes::add);
+		return shapes;
+	}
+
+	/**
+	 * Reads the shapes of a text file and hands each top-level shape to the sink, in drawing order,
+	 * as soon as the chunks up to it are parsed. The sink is called on the calling thread.
+	 * If the sink throws, the chunks that are still being parsed are cancelled.
+	 *
+	 * @param fileObj The file to read from.
+	 * @param sink    The consumer of the top-level shapes.
+	 * @return The number of top-level shapes.
+	 * @throws IOException If the file cannot be read or does not follow the format.
+	 */
+	public static int read(File fileObj, Consumer<MyShape> sink) throws IOException {
+		ArrayList<ForkJoinTask<Chunk>> tasks = new ArrayList<>();
+		try (RandomAccessFile raf = new RandomAccessFile(fileObj, "r");
+				FileChannel channel = raf.getChannel()) {
+			long size = channel.size();
+			long chunkSize = size / (4L * ForkJoinPool.getCommonPoolParallelism());
+			chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, chunkSize));
+
+			// the first chunk is kept small, so the sink gets the first shapes early
+			long start = 0;
+			while (start < size) {
+				long target = start + (start == 0 ? MIN_CHUNK_SIZE : chunkSize);
+				long end = target < size ? nextLine(channel, target) : size;
+				MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+				tasks.add(ForkJoinPool.commonPool().submit(new Chunk(buf, start, start == 0)));
+				start = end;
+			}
+		}
+
+		try {
+			Stitcher stitcher = new Stitcher(sink);
+			for (ForkJoinTask<Chunk> task : tasks) {
+				stitcher.add(join(task));
+			}
+			return stitcher.finish();
+		}
+		finally {
+			for (ForkJoinTask<Chunk> task : tasks) {
+				task.cancel(false);
+			}
+		}
+	}
+
+	/**
+	 * Reads the number of top-level shapes from the first line of a text file.
+	 *
+	 * @param fileObj The file to read from.
+	 * @return The number of top-level shapes.
+	 * @throws IOException If the file cannot be read or does not start with a count.
+	 */
+	public static int count(File fileObj) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(fileObj, "r");
+				FileChannel channel = raf.getChannel()) {
+			ByteBuffer buf = ByteBuffer.allocate(SCAN_SIZE);
+			channel.read(buf, 0);
+			buf.flip();
+			return new ShapeTextReader(new ByteBufferReader(buf)).nextInt();
+		}
+	}
+
+	/**
+	 * Finds the start of the line after the given position.
+	 *
+	 * @param channel The channel of the file.
+	 * @param pos     The position to start looking from.
+	 * @return The position after the next newline, or the size of the file if there is none.
+	 */
+	private static long nextLine(FileChannel channel, long pos) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(SCAN_SIZE);
+		while (true) {
+			buf.clear();
+			int n = channel.read(buf, pos);
+			if (n <= 0) {
+				return channel.size();
+			}
+			for (int i = 0; i < n; i++) {
+				if (buf.get(i) == '\n') {
+					return pos + i + 1;
+				}
+			}
+			pos += n;
+		}
+	}
+
+	/**
+	 * Waits for a chunk to be parsed, passing on the exception it failed with.
+	 */
+	private static Chunk join(ForkJoinTask<Chunk> task) throws IOException {
+		try {
+			return task.get();
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted while reading", e);
+		}
+	}
+
+	/**
+	 * Parses the records of one chunk, leaving the groups empty.
+	 */
+	private static class Chunk implements Callable<Chunk> {
+		ByteBuffer buf;
+		long start;
+		boolean first;
+
+		int count = -1;
+		ArrayList<MyShape> records = new ArrayList<>();
+		int[] groupSizes = new int[1024];
+
+		Chunk(ByteBuffer buf, long start, boolean first) {
+			this.buf = buf;
+			this.start = start;
+			this.first = first;
+		}
+
+		@Override
+		public Chunk call() throws IOException {
+			ShapeTextReader in = new ShapeTextReader(new ByteBufferReader(buf));
+			try {
+				if (first) {
+					count = in.nextInt();
+				}
+				while (in.hasNext()) {
+					MyShape record = in.readRecord();
+					if (records.size() == groupSizes.length) {
+						groupSizes = Arrays.copyOf(groupSizes, groupSizes.length * 2);
+					}
+					groupSizes[records.size()] = in.groupSize();
+					records.add(record);
+				}
+			}
+			catch (IOException e) {
+				throw new IOException("in the chunk starting at byte " + start + ": " + e.getMessage(), e);
+			}
+			buf = null;
+			return this;
+		}
+	}
+
+	/**
+	 * Puts the records of the chunks together into top-level shapes.
+	 * A group is handed to its parent, or to the sink, only once all its members are in,
+	 * so that its bounds and center are complete when it is added.
+	 */
+	private static class Stitcher {
+		Consumer<MyShape> sink;
+		int count = -1;
+		int top;
+
+		// the groups waiting for members, innermost last
+		ShapeGroup[] open = new ShapeGroup[16];
+		int[] missing = new int[16];
+		int depth;
+
+		Stitcher(Consumer<MyShape> sink) {
+			this.sink = sink;
+		}
+
+		void add(Chunk chunk) throws IOException {
+			if (chunk.count >= 0) {
+				count = chunk.count;
+			}
+			ArrayList<MyShape> records = chunk.records;
+			for (int i = 0; i < records.size(); i++) {
+				MyShape record = records.get(i);
+				int n = chunk.groupSizes[i];
+				if (n > 0) {
+					if (depth == open.length) {
+						open = Arrays.copyOf(open, depth * 2);
+						missing = Arrays.copyOf(missing, depth * 2);
+					}
+					open[depth] = (ShapeGroup) record;
+					missing[depth++] = n;
+				}
+				else {
+					complete(record);
+				}
+				if (count >= 0 && top > count) {
+					throw new IOException("the file has more than the " + count + " shapes it starts with");
+				}
+			}
+		}
+
+		void complete(MyShape shape) {
+			while (depth > 0) {
+				ShapeGroup parent = open[depth - 1];
+				parent.addMember(shape);
+				if (--missing[depth - 1] > 0) {
+					return;
+				}
+				open[--depth] = null;
+				shape = parent;
+			}
+			top++;
+			sink.accept(shape);
+		}
+
+		int finish() throws IOException {
+			if (count < 0 || depth > 0) {
+				throw new IOException("unexpected end of input");
+			}
+			if (top != count) {
+				throw new IOException("expected " + count + " shapes but found " + top);
+			}
+			return top;
+		}
+	}
+
+	/**
+	 * Reads the bytes of a buffer as ISO-8859-1 characters.
+	 */
+	private static class ByteBufferReader extends Reader {
+		ByteBuffer buf;
+		byte[] bytes = new byte[0];
+
+		ByteBufferReader(ByteBuffer buf) {
+			this.buf = buf;
+		}
+
+		@Override
+		public int read(char[] cbuf, int off, int len) {
+			int n = Math.min(len, buf.remaining());
+			if (n == 0) {
+				return -1;
+			}
+			if (bytes.length < n) {
+				bytes = new byte[n];
+			}
+			buf.get(bytes, 0, n);
+			for (int i = 0; i < n; i++) {
+				cbuf[off + i] = (char) (bytes[i] & 0xff);
+			}
+			return n;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,385 @@
+import java.io.IOException;
+import java.io.Reader;
+
+import javafx.scene.paint.Color;
+
+/**
+ * ShapeTextReader parses the text format written by ShapeCanvas.toTextFile:
+ * "type x1 y1 x2 y2 filled r g b" for single shapes and "ShapeGroup n x1 y1 x2 y2"
+ * followed by the n member shapes for groups.
+ * It reads the characters through its own buffer and parses every token in place,
+ * so no regular expressions are run and no String is created per token.
+ */
+public class ShapeTextReader {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+	// up to 15 digits the mantissa is exact as a double, so a single division rounds correctly
+	private static final int MAX_DIGITS = 15;
+	private static final double[] POWERS_OF_TEN = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+			1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	private Reader in;
+	private char[] buf = new char[BUFFER_SIZE];
+	private int pos, limit;
+	private int line = 1;
+
+	private char[] token = new char[64];
+	private int tokenLength;
+
+	// member count of the group header last returned by readRecord, -1 after a single shape
+	private int groupSize = -1;
+
+	// consecutive shapes usually share their color, so the last one is reused
+	private double lastR = -1, lastG = -1, lastB = -1;
+	private Color lastColor;
+
+	/**
+	 * Constructs a ShapeTextReader that reads from the given Reader.
+	 * The reader does its own buffering, so the Reader does not need to be buffered.
+	 *
+	 * @param in The Reader with the text of a drawing.
+	 */
+	public ShapeTextReader(Reader in) {
+		this.in = in;
+	}
+
+	/**
+	 * Reads the next token as an int.
+	 *
+	 * @return The value of the token.
+	 * @throws IOException If the token is missing or is not an integer.
+	 */
+	public int nextInt() throws IOException {
+		nextToken();
+		int i = 0;
+		boolean negative = false;
+		if (token[0] == '-' || token[0] == '+') {
+			negative = token[0] == '-';
+			i++;
+		}
+		if (i == tokenLength) {
+			throw mismatch("integer");
+		}
+
+		long value = 0;
+		for (; i < tokenLength; i++) {
+			char c = token[i];
+			if (c < '0' || c > '9') {
+				throw mismatch("integer");
+			}
+			value = value * 10 + (c - '0');
+			if (value > (long) Integer.MAX_VALUE + 1) {
+				throw mismatch("integer");
+			}
+		}
+		value = negative ? -value : value;
+		if (value > Integer.MAX_VALUE) {
+			throw mismatch("integer");
+		}
+		return (int) value;
+	}
+
+	/**
+	 * Reads the next token as a double. Numbers with up to 15 significant digits
+	 * and a small exponent, which covers everything toTextFile writes, are converted
+	 * exactly without creating a String.
+	 *
+	 * @return The value of the token.
+	 * @throws IOException If the token is missing or is not a number.
+	 */
+	public double nextDouble() throws IOException {
+		nextToken();
+		int i = 0;
+		boolean negative = false;
+		if (token[0] == '-' || token[0] == '+') {
+			negative = token[0] == '-';
+			i++;
+		}
+
+		long mantissa = 0;
+		int digits = 0, scale = 0;
+		boolean seenDigit = false, seenPoint = false;
+		for (; i < tokenLength; i++) {
+			char c = token[i];
+			if (c >= '0' && c <= '9') {
+				seenDigit = true;
+				// leading zeros do not count as significant digits
+				if (mantissa != 0 || c != '0') {
+					if (digits == MAX_DIGITS) {
+						return slowDouble();
+					}
+					mantissa = mantissa * 10 + (c - '0');
+					digits++;
+				}
+				if (seenPoint) {
+					scale++;
+				}
+			}
+			else if ((c == '.' || c == ',') && !seenPoint) {
+				seenPoint = true;
+			}
+			else {
+				break;
+			}
+		}
+		if (!seenDigit) {
+			throw mismatch("number");
+		}
+
+		if (i < tokenLength) {
+			char c = token[i];
+			if (c != 'e' && c != 'E') {
+				throw mismatch("number");
+			}
+			return slowDouble();
+		}
+
+		double value;
+		if (scale < POWERS_OF_TEN.length) {
+			value = mantissa / POWERS_OF_TEN[scale];
+		}
+		else {
+			return slowDouble();
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Reads the next token as a boolean, ignoring case.
+	 *
+	 * @return The value of the token.
+	 * @throws IOException If the token is missing or is neither true nor false.
+	 */
+	public boolean nextBoolean() throws IOException {
+		nextToken();
+		if (tokenEquals("true")) {
+			return true;
+		}
+		if (tokenEquals("false")) {
+			return false;
+		}
+		throw mismatch("boolean");
+	}
+
+	/**
+	 * Reads one shape, including all members of a ShapeGroup.
+	 *
+	 * @return The shape that was read.
+	 * @throws IOException If the input ends early or does not follow the format.
+	 */
+	public MyShape readShape() throws IOException {
+		nextToken();
+		if (tokenEquals("shapegroup")) {
+			int n = nextInt();
+			ShapeGroup group = readGroupHeader();
+			for (int i = 0; i < n; i++) {
+				group.addMember(readShape());
+			}
+			return group;
+		}
+		return readSingle();
+	}
+
+	/**
+	 * Reads one record, which is a single shape or only the header of a ShapeGroup without its members.
+	 * After a header, groupSize returns the number of member records that follow it.
+	 *
+	 * @return The shape, or the empty group.
+	 * @throws IOException If the input ends early or does not follow the format.
+	 */
+	public MyShape readRecord() throws IOException {
+		nextToken();
+		if (tokenEquals("shapegroup")) {
+			groupSize = nextInt();
+			return readGroupHeader();
+		}
+		groupSize = -1;
+		return readSingle();
+	}
+
+	/**
+	 * Returns the member count of the group header last returned by readRecord.
+	 *
+	 * @return The number of members, or -1 if the last record was a single shape.
+	 */
+	public int groupSize() {
+		return groupSize;
+	}
+
+	/**
+	 * Checks if there is another token before the end of the input.
+	 *
+	 * @return True if there is input left, false otherwise.
+	 * @throws IOException If the Reader fails.
+	 */
+	public boolean hasNext() throws IOException {
+		while (true) {
+			if (pos == limit && !fill()) {
+				return false;
+			}
+			char c = buf[pos];
+			if (c > ' ') {
+				return true;
+			}
+			if (c == '\n') {
+				line++;
+			}
+			pos++;
+		}
+	}
+
+	/**
+	 * Reads the rest of a single shape once its type token has been consumed.
+	 *
+	 * @return The shape that was read.
+	 * @throws IOException If the input ends early or does not follow the format.
+	 */
+	private MyShape readSingle() throws IOException {
+		// the type decides the shape, anything else than line or oval is a rect
+		MyShape shape;
+		if (tokenEquals("line")) {
+			shape = new Line(nextDouble(), nextDouble(), nextDouble(), nextDouble());
+		}
+		else if (tokenEquals("oval")) {
+			shape = new Oval(nextDouble(), nextDouble(), nextDouble(), nextDouble());
+		}
+		else {
+			shape = new Rect(nextDouble(), nextDouble(), nextDouble(), nextDouble());
+		}
+
+		shape.setFilled(nextBoolean());
+		shape.setColor(color(nextDouble(), nextDouble(), nextDouble()));
+		return shape;
+	}
+
+	/**
+	 * Closes the underlying Reader.
+	 *
+	 * @throws IOException If the Reader cannot be closed.
+	 */
+	public void close() throws IOException {
+		in.close();
+	}
+
+	/**
+	 * Reads the corners of a ShapeGroup once its type token and member count have been consumed.
+	 *
+	 * @return The group, still without members.
+	 * @throws IOException If the input ends early or does not follow the format.
+	 */
+	private ShapeGroup readGroupHeader() throws IOException {
+		double x1 = nextDouble();
+		double y1 = nextDouble();
+		double x2 = nextDouble();
+		double y2 = nextDouble();
+
+		ShapeGroup group = new ShapeGroup();
+		group.setP1(x1, y1);
+		group.setP2(x2, y2);
+		return group;
+	}
+
+	/**
+	 * Returns the color for the given components, reusing the previous one when it matches.
+	 */
+	private Color color(double r, double g, double b) {
+		if (r != lastR || g != lastG || b != lastB) {
+			lastColor = Color.color(r, g, b);
+			lastR = r;
+			lastG = g;
+			lastB = b;
+		}
+		return lastColor;
+	}
+
+	/**
+	 * Parses the current token through Double.parseDouble, for the rare numbers the fast path does not cover.
+	 */
+	private double slowDouble() throws IOException {
+		try {
+			return Double.parseDouble(new String(token, 0, tokenLength));
+		}
+		catch (NumberFormatException e) {
+			throw mismatch("number");
+		}
+	}
+
+	/**
+	 * Compares the current token with a lower-case keyword, ignoring case.
+	 */
+	private boolean tokenEquals(String keyword) {
+		if (tokenLength != keyword.length()) {
+			return false;
+		}
+		for (int i = 0; i < tokenLength; i++) {
+			if (Character.toLowerCase(token[i]) != keyword.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Copies the next whitespace separated token into the token buffer.
+	 *
+	 * @throws IOException If there is no token left.
+	 */
+	private void nextToken() throws IOException {
+		// skip the whitespace in front of the token
+		while (true) {
+			if (pos == limit && !fill()) {
+				throw new IOException("unexpected end of input at line " + line);
+			}
+			char c = buf[pos];
+			if (c > ' ') {
+				break;
+			}
+			if (c == '\n') {
+				line++;
+			}
+			pos++;
+		}
+
+		tokenLength = 0;
+		while (true) {
+			if (pos == limit && !fill()) {
+				return;
+			}
+			char c = buf[pos];
+			if (c <= ' ') {
+				return;
+			}
+			if (tokenLength == token.length) {
+				char[] bigger = new char[token.length * 2];
+				System.arraycopy(token, 0, bigger, 0, tokenLength);
+				token = bigger;
+			}
+			token[tokenLength++] = c;
+			pos++;
+		}
+	}
+
+	/**
+	 * Refills the buffer from the Reader.
+	 *
+	 * @return False at the end of the input.
+	 */
+	private boolean fill() throws IOException {
+		int n = in.read(buf, 0, buf.length);
+		if (n <= 0) {
+			return false;
+		}
+		pos = 0;
+		limit = n;
+		return true;
+	}
+
+	/**
+	 * Creates the exception for a token that does not have the expected form.
+	 */
+	private IOException mismatch(String expected) {
+		return new IOException("expected " + expected + " but found \"" + new String(token, 0, tokenLength)
+				+ "\" at line " + line);
+	}
+}
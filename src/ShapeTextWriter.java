@@ -0,0 +1,265 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+
+import javafx.scene.paint.Color;
+
+/**
+ * ShapeTextWriter writes the text format read by ShapeTextReader:
+ * "type x1 y1 x2 y2 filled r g b" for single shapes and "ShapeGroup n x1 y1 x2 y2"
+ * followed by the n member shapes for groups, one shape per line.
+ * It formats the numbers itself into its own buffer, so no String is created per shape or per number,
+ * and groups are written member by member instead of being turned into one String first.
+ * <p>
+ * The numbers are rounded like String.format does with "%-3.0f" for coordinates and "%.3f" for
+ * color components, but the decimal separator is always a '.', whatever the default locale.
+ */
+public class ShapeTextWriter {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+	// below this the scaled value and its fraction are exact enough as doubles
+	private static final double FAST_LIMIT = 1e12;
+	// fractions this close to one half are rounded through BigDecimal, like String.format does
+	private static final double TIE_MARGIN = 1e-6;
+	private static final int COORDINATE_WIDTH = 3;
+
+	private Writer out;
+	private char[] buf = new char[BUFFER_SIZE];
+	private int pos;
+
+	private char[] digits = new char[32];
+
+	/**
+	 * Constructs a ShapeTextWriter that writes to the given Writer.
+	 * The writer does its own buffering, so the Writer does not need to be buffered.
+	 *
+	 * @param out The Writer receiving the text of a drawing.
+	 */
+	public ShapeTextWriter(Writer out) {
+		this.out = out;
+	}
+
+	/**
+	 * Writes a whole drawing: the number of shapes on the first line, followed by the shapes.
+	 *
+	 * @param shapes The top-level shapes of the drawing.
+	 * @throws IOException If the Writer fails.
+	 */
+	public void writeShapes(List<MyShape> shapes) throws IOException {
+		writeInt(shapes.size());
+		newLine();
+		for (MyShape s : shapes) {
+			writeShape(s);
+		}
+	}
+
+	/**
+	 * Writes one shape, including all members of a ShapeGroup, each on its own line.
+	 *
+	 * @param s The shape to write.
+	 * @throws IOException If the Writer fails.
+	 */
+	public void writeShape(MyShape s) throws IOException {
+		writeShape(s, 0, 0);
+	}
+
+	/**
+	 * Writes one shape moved by the given distances, which is where it is drawn when it is
+	 * the member of a moved group. The members of a group are read without moving them.
+	 */
+	private void writeShape(MyShape s, double dx, double dy) throws IOException {
+		if (s instanceof ShapeGroup) {
+			ShapeGroup group = (ShapeGroup) s;
+			write("ShapeGroup ");
+			writeInt(group.size());
+			write(' ');
+			writeCorners(group, dx, dy);
+			newLine();
+			double memberDx = dx + group.getOffsetX(), memberDy = dy + group.getOffsetY();
+			for (MyShape member : group.getMemberView()) {
+				writeShape(member, memberDx, memberDy);
+			}
+			return;
+		}
+
+		Class<?> type = s.getClass();
+		if (type == Line.class) {
+			write("line ");
+		}
+		else if (type == Oval.class) {
+			write("oval ");
+		}
+		else if (type == Rect.class) {
+			write("rect ");
+		}
+		else {
+			// a shape this writer does not know writes itself
+			write(s.toString());
+			newLine();
+			return;
+		}
+
+		writeCorners(s, dx, dy);
+		write(' ');
+		write(s.isFilled() ? "true " : "false ");
+		Color color = s.getColor();
+		writeNumber(color.getRed(), 3, 0);
+		write(' ');
+		writeNumber(color.getGreen(), 3, 0);
+		write(' ');
+		writeNumber(color.getBlue(), 3, 0);
+		newLine();
+	}
+
+	/**
+	 * Writes out what is still in the buffer and flushes the Writer.
+	 *
+	 * @throws IOException If the Writer fails.
+	 */
+	public void flush() throws IOException {
+		drain();
+		out.flush();
+	}
+
+	/**
+	 * Writes out what is still in the buffer and closes the Writer.
+	 *
+	 * @throws IOException If the Writer fails.
+	 */
+	public void close() throws IOException {
+		drain();
+		out.close();
+	}
+
+	/**
+	 * Writes the four corner coordinates of a shape moved by the given distances, separated by spaces.
+	 */
+	private void writeCorners(MyShape s, double dx, double dy) throws IOException {
+		writeNumber(ShapeGroup.shift(s.getX1(), dx), 0, COORDINATE_WIDTH);
+		write(' ');
+		writeNumber(ShapeGroup.shift(s.getY1(), dy), 0, COORDINATE_WIDTH);
+		write(' ');
+		writeNumber(ShapeGroup.shift(s.getX2(), dx), 0, COORDINATE_WIDTH);
+		write(' ');
+		writeNumber(ShapeGroup.shift(s.getY2(), dy), 0, COORDINATE_WIDTH);
+	}
+
+	/**
+	 * Writes an int in decimal.
+	 */
+	private void writeInt(int value) throws IOException {
+		int length = digits(Math.abs((long) value), 0, value < 0);
+		write(digits, length);
+	}
+
+	/**
+	 * Writes a double rounded half up to the given number of decimals,
+	 * padded with spaces on the right to the given width.
+	 */
+	private void writeNumber(double value, int decimals, int width) throws IOException {
+		int length;
+		boolean negative = Double.doubleToRawLongBits(value) < 0;
+		double scaled = Math.abs(value) * (decimals == 0 ? 1 : 1000);
+		double whole = Math.floor(scaled);
+		double fraction = scaled - whole;
+
+		if (scaled < FAST_LIMIT && Math.abs(fraction - 0.5) > TIE_MARGIN) {
+			long units = (long) whole + (fraction > 0.5 ? 1 : 0);
+			length = digits(units, decimals, negative);
+		}
+		else {
+			length = slowNumber(value, decimals);
+		}
+
+		write(digits, length);
+		for (int i = length; i < width; i++) {
+			write(' ');
+		}
+	}
+
+	/**
+	 * Formats a number into the digit buffer, with the last decimals digits after a '.'.
+	 *
+	 * @return The number of characters.
+	 */
+	private int digits(long units, int decimals, boolean negative) {
+		int end = digits.length;
+		int i = end;
+		for (int d = 0; d < decimals; d++) {
+			digits[--i] = (char) ('0' + units % 10);
+			units /= 10;
+		}
+		if (decimals > 0) {
+			digits[--i] = '.';
+		}
+		do {
+			digits[--i] = (char) ('0' + units % 10);
+			units /= 10;
+		} while (units != 0);
+		if (negative) {
+			digits[--i] = '-';
+		}
+
+		int length = end - i;
+		System.arraycopy(digits, i, digits, 0, length);
+		return length;
+	}
+
+	/**
+	 * Formats the numbers the fast path does not cover, rounding the shortest decimal form
+	 * of the double like String.format does.
+	 *
+	 * @return The number of characters.
+	 */
+	private int slowNumber(double value, int decimals) {
+		String text;
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			text = Double.toString(value);
+		}
+		else {
+			text = new BigDecimal(Double.toString(Math.abs(value)))
+					.setScale(decimals, RoundingMode.HALF_UP).toPlainString();
+			if (Double.doubleToRawLongBits(value) < 0) {
+				text = "-" + text;
+			}
+		}
+		if (text.length() > digits.length) {
+			digits = new char[text.length()];
+		}
+		text.getChars(0, text.length(), digits, 0);
+		return text.length();
+	}
+
+	private void newLine() throws IOException {
+		write('\n');
+	}
+
+	private void write(char c) throws IOException {
+		if (pos == buf.length) {
+			drain();
+		}
+		buf[pos++] = c;
+	}
+
+	private void write(String s) throws IOException {
+		for (int i = 0; i < s.length(); i++) {
+			write(s.charAt(i));
+		}
+	}
+
+	private void write(char[] chars, int length) throws IOException {
+		for (int i = 0; i < length; i++) {
+			write(chars[i]);
+		}
+	}
+
+	/**
+	 * Hands the buffered characters to the Writer.
+	 */
+	private void drain() throws IOException {
+		out.write(buf, 0, pos);
+		pos = 0;
+	}
+}
@@ -0,0 +1,205 @@
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamConstants;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import javafx.scene.paint.Color;
+
+/**
+ * ShapeThumbnails renders saved drawings to PNG images from the command line, without a display.
+ * The drawings are read with the text, columnar and serialized formats of ShapeCanvas and rasterized
+ * by a ShapeRasterizer, so no JavaFX stage or toolkit is started. The files are rendered in parallel.
+ * <pre>
+ *   java ShapeThumbnails [-size WxH] [-threads n] [-out dir] file-or-directory...
+ * </pre>
+ * Every file of a directory is rendered, except PNG images, so that running it again over a directory does
+ * not try to read the images of the last run; the image of a file is written as its name followed by ".png",
+ * next to the file or into the output directory.
+ */
+public class ShapeThumbnails {
+
+	private static final int DEFAULT_SIZE = 256;
+	private static final byte[] PNG_SIGNATURE = { (byte) 0x89, 'P', 'N', 'G' };
+
+	private int width = DEFAULT_SIZE, height = DEFAULT_SIZE;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private File outDir;
+	private ArrayList<File> files = new ArrayList<>();
+
+	/**
+	 * Renders the drawings given on the command line.
+	 *
+	 * @param args The options and the files or directories to render.
+	 */
+	public static void main(String[] args) {
+		System.setProperty("java.awt.headless", "true");
+
+		ShapeThumbnails thumbnails = new ShapeThumbnails();
+		if (!thumbnails.parse(args)) {
+			System.out.println("usage: ShapeThumbnails [-size WxH] [-threads n] [-out dir] file-or-directory...");
+			System.exit(2);
+		}
+		int failed = thumbnails.run();
+		System.exit(failed == 0 ? 0 : 1);
+	}
+
+	/**
+	 * Reads the options and collects the files to render.
+	 *
+	 * @param args The command line.
+	 * @return False if the command line is not valid.
+	 */
+	private boolean parse(String[] args) {
+		try {
+			for (int i = 0; i < args.length; i++) {
+				switch (args[i]) {
+				case "-size":
+					String[] size = args[++i].split("x");
+					width = Integer.parseInt(size[0]);
+					height = Integer.parseInt(size[size.length - 1]);
+					break;
+				case "-threads":
+					threads = Integer.parseInt(args[++i]);
+					break;
+				case "-out":
+					outDir = new File(args[++i]);
+					break;
+				default:
+					File file = new File(args[i]);
+					File[] children = file.listFiles(child -> child.isFile() && !isImage(child));
+					if (children != null) {
+						Arrays.sort(children);
+						files.addAll(List.of(children));
+					}
+					else {
+						files.add(file);
+					}
+				}
+			}
+		}
+		catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+			return false;
+		}
+		return !files.isEmpty() && width > 2 && height > 2 && threads > 0;
+	}
+
+	/**
+	 * Checks if a file is a PNG image, by its extension or by its first bytes.
+	 *
+	 * @param file The file to check.
+	 * @return True if the file is an image rather than a drawing.
+	 */
+	private static boolean isImage(File file) {
+		if (file.getName().toLowerCase().endsWith(".png")) {
+			return true;
+		}
+		byte[] head = new byte[PNG_SIGNATURE.length];
+		try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+			in.readFully(head);
+		}
+		catch (IOException e) {
+			// too short to be an image, or unreadable, which render reports
+			return false;
+		}
+		return Arrays.equals(head, PNG_SIGNATURE);
+	}
+
+	/**
+	 * Renders all the files on a pool of threads and reports the throughput.
+	 *
+	 * @return The number of files that could not be rendered.
+	 */
+	private int run() {
+		if (outDir != null) {
+			outDir.mkdirs();
+		}
+
+		AtomicInteger failed = new AtomicInteger();
+		ThreadLocal<ShapeRasterizer> rasterizers = ThreadLocal.withInitial(ShapeRasterizer::new);
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		long start = System.nanoTime();
+
+		ArrayList<Future<?>> results = new ArrayList<>();
+		for (File file : files) {
+			results.add(pool.submit(() -> {
+				try {
+					render(file, rasterizers.get());
+				}
+				// errors such as a stack overflow on deeply nested groups or running out of memory on a huge
+				// drawing fail only this file, and must be counted, since the pool would just keep them
+				catch (Throwable e) {
+					System.out.println(file.getName() + " could not be rendered");
+					e.printStackTrace();
+					failed.incrementAndGet();
+				}
+			}));
+		}
+		for (Future<?> result : results) {
+			try {
+				result.get();
+			}
+			catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+		pool.shutdown();
+
+		double seconds = (System.nanoTime() - start) / 1e9;
+		int rendered = files.size() - failed.get();
+		System.out.printf("%d files rendered in %.2f s (%.1f files/s) on %d threads, %d failed%n",
+				rendered, seconds, rendered / seconds, threads, failed.get());
+		return failed.get();
+	}
+
+	/**
+	 * Reads one drawing and writes its image.
+	 */
+	private void render(File file, ShapeRasterizer rasterizer) throws IOException, ClassNotFoundException {
+		List<MyShape> shapes = read(file);
+		File dir = outDir != null ? outDir : file.getAbsoluteFile().getParentFile();
+		File png = new File(dir, file.getName() + ".png");
+		ImageIO.write(rasterizer.render(shapes, width, height, Color.WHITE), "png", png);
+	}
+
+	/**
+	 * Reads a drawing in any of the formats of ShapeCanvas, telling them apart by their first bytes.
+	 *
+	 * @param file The file to read.
+	 * @return The top-level shapes of the drawing.
+	 * @throws IOException If the file cannot be read or does not follow its format.
+	 * @throws ClassNotFoundException If a serialized file holds an unknown class.
+	 */
+	public static List<MyShape> read(File file) throws IOException, ClassNotFoundException {
+		if (ShapeBinaryFile.isColumnar(file)) {
+			return ShapeBinaryFile.read(file);
+		}
+
+		boolean serialized;
+		try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+			serialized = file.length() >= 2 && in.readShort() == ObjectStreamConstants.STREAM_MAGIC;
+		}
+		if (!serialized) {
+			return ShapeTextFile.read(file);
+		}
+
+		try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(file))) {
+			int n = in.readInt();
+			ArrayList<MyShape> shapes = new ArrayList<>(n);
+			for (int i = 0; i < n; i++) {
+				shapes.add((MyShape) in.readObject());
+			}
+			return shapes;
+		}
+	}
+}
@@ -0,0 +1,267 @@
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+/**
+ * TileCache keeps the drawing pre-rasterized in tiles of 256x256 pixels, so that the canvas can be
+ * redrawn, panned and zoomed by copying images instead of drawing every shape again.
+ * <p>
+ * The tiles are keyed by zoom level and by their column and row in the pixel grid of that level, where
+ * pixel p covers the drawing units from p / zoom to (p + 1) / zoom. A tile is rasterized by a ShapeRasterizer
+ * the first time it is needed and kept until an edit touches its area or, least recently used first,
+ * until the tiles take more than the memory budget.
+ * <p>
+ * While shapes on the canvas are dragged they are left out of the tiles that are rasterized, since they are
+ * drawn on top of them; those tiles are dropped again when the drag ends.
+ */
+public class TileCache {
+
+	public static final int TILE_SIZE = 256;
+	// every tile holds its pixels twice: for Java 2D and for JavaFX
+	private static final long TILE_BYTES = 2L * 4 * TILE_SIZE * TILE_SIZE;
+	// strokes reach half the line width beyond the bounds of a shape, and antialiasing a pixel further
+	private static final double STROKE_PADDING = 1;
+
+	private ShapeIndex index;
+	private ShapeRasterizer rasterizer = new ShapeRasterizer();
+	private long maxBytes;
+	private LinkedHashMap<Long, Tile> tiles = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * Constructs an empty TileCache over the shapes of an index.
+	 *
+	 * @param index    The index of the shapes to draw.
+	 * @param maxBytes The memory budget of the tiles.
+	 */
+	public TileCache(ShapeIndex index, long maxBytes) {
+		this.index = index;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Returns the memory the cached tiles take.
+	 *
+	 * @return The number of bytes of the tiles.
+	 */
+	public long sizeInBytes() {
+		return tiles.size() * TILE_BYTES;
+	}
+
+	/**
+	 * Sets the sizes in pixels below which shapes are drawn with less detail, and drops every tile.
+	 *
+	 * @param dotSize     Shapes narrower and lower than this are drawn as a single pixel.
+	 * @param outlineSize Groups narrower and lower than this are drawn as their bounding box only.
+	 */
+	public void setDetailThresholds(double dotSize, double outlineSize) {
+		rasterizer.setDetailThresholds(dotSize, outlineSize);
+		clear();
+	}
+
+	/**
+	 * Drops every tile.
+	 */
+	public void clear() {
+		tiles.clear();
+	}
+
+	/**
+	 * Draws the tiles covering a rectangle of the screen, rasterizing the ones that are not cached.
+	 *
+	 * @param gc       The graphics context of the canvas, without a transform.
+	 * @param level    The zoom level.
+	 * @param zoom     The pixels per drawing unit of the zoom level.
+	 * @param panX     The pixel of the level at the left edge of the screen.
+	 * @param panY     The pixel of the level at the top edge of the screen.
+	 * @param x0       The left edge of the rectangle on the screen.
+	 * @param y0       The top edge of the rectangle on the screen.
+	 * @param x1       The right edge of the rectangle on the screen.
+	 * @param y1       The bottom edge of the rectangle on the screen.
+	 * @param excluded The shapes being dragged, which are left out of the tiles rasterized now.
+	 */
+	public void draw(GraphicsContext gc, int level, double zoom, double panX, double panY,
+			double x0, double y0, double x1, double y1, Set<MyShape> excluded) {
+		int tx0 = (int) Math.floor((x0 + panX) / TILE_SIZE);
+		int ty0 = (int) Math.floor((y0 + panY) / TILE_SIZE);
+		int tx1 = (int) Math.floor((x1 - 1 + panX) / TILE_SIZE);
+		int ty1 = (int) Math.floor((y1 - 1 + panY) / TILE_SIZE);
+
+		for (int ty = ty0; ty <= ty1; ty++) {
+			for (int tx = tx0; tx <= tx1; tx++) {
+				long key = key(level, tx, ty);
+				Tile tile = tiles.get(key);
+				if (tile == null) {
+					tile = rasterize(level, zoom, tx, ty, excluded);
+					tiles.put(key, tile);
+				}
+				gc.drawImage(tile.fxImage, (double) tx * TILE_SIZE - panX, (double) ty * TILE_SIZE - panY);
+			}
+		}
+		evict();
+	}
+
+	/**
+	 * Drops the tiles of every zoom level that overlap an area of the drawing.
+	 *
+	 * @param x The x-coordinate of the upper-left corner of the area.
+	 * @param y The y-coordinate of the upper-left corner of the area.
+	 * @param w The width of the area.
+	 * @param h The height of the area.
+	 */
+	public void invalidate(double x, double y, double w, double h) {
+		if (w < 0 || h < 0) {
+			return;
+		}
+		Iterator<Tile> it = tiles.values().iterator();
+		while (it.hasNext()) {
+			if (it.next().overlaps(x, y, x + w, y + h)) {
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Drops the tiles that were rasterized without the dragged shapes.
+	 */
+	public void dropPartial() {
+		tiles.values().removeIf(tile -> tile.partial);
+	}
+
+	/**
+	 * Draws shapes that were added on top of the drawing straight onto the cached tiles of the zoom level,
+	 * instead of rasterizing those tiles again. The tiles of the other levels that they overlap are dropped.
+	 *
+	 * @param added The added shapes, in drawing order.
+	 * @param level The zoom level.
+	 */
+	public void drawOnTop(List<MyShape> added, int level) {
+		ArrayList<MyShape> inTile = new ArrayList<>();
+		Iterator<Tile> it = tiles.values().iterator();
+		while (it.hasNext()) {
+			Tile tile = it.next();
+			inTile.clear();
+			for (MyShape s : added) {
+				if (tile.overlaps(s.getULX(), s.getULY(), s.getULX() + s.getWidth(), s.getULY() + s.getHeight())) {
+					inTile.add(s);
+				}
+			}
+			if (inTile.isEmpty()) {
+				continue;
+			}
+			if (tile.level != level) {
+				it.remove();
+				continue;
+			}
+
+			Graphics2D g = tile.createGraphics();
+			try {
+				rasterizer.draw(g, inTile);
+			}
+			finally {
+				g.dispose();
+			}
+			tile.publish();
+		}
+	}
+
+	/**
+	 * Rasterizes one tile.
+	 */
+	private Tile rasterize(int level, double zoom, int tx, int ty, Set<MyShape> excluded) {
+		Tile tile = new Tile(level, zoom, tx, ty);
+		ArrayList<MyShape> shapes = index.search(tile.minX, tile.minY, tile.maxX - tile.minX, tile.maxY - tile.minY);
+		if (!excluded.isEmpty() && shapes.removeIf(excluded::contains)) {
+			tile.partial = true;
+		}
+
+		Graphics2D g = tile.createGraphics();
+		try {
+			rasterizer.draw(g, shapes);
+		}
+		finally {
+			g.dispose();
+		}
+		tile.publish();
+		return tile;
+	}
+
+	/**
+	 * Drops the least recently used tiles until the tiles fit the memory budget.
+	 */
+	private void evict() {
+		Iterator<Tile> it = tiles.values().iterator();
+		while (sizeInBytes() > maxBytes && it.hasNext()) {
+			it.next();
+			it.remove();
+		}
+	}
+
+	/**
+	 * Packs a zoom level, column and row into one key.
+	 */
+	private static long key(int level, int tx, int ty) {
+		return ((long) (level & 0xff) << 56) | ((long) (tx & 0xfffffff) << 28) | (ty & 0xfffffff);
+	}
+
+	/**
+	 * One tile: its pixels as a Java 2D image to rasterize into and as a JavaFX image to draw,
+	 * and the area of the drawing it covers, padded by what strokes may reach into it.
+	 */
+	private static class Tile {
+		int level, tx, ty;
+		double zoom;
+		double minX, minY, maxX, maxY;
+		boolean partial;
+		BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB_PRE);
+		WritableImage fxImage = new WritableImage(TILE_SIZE, TILE_SIZE);
+
+		Tile(int level, double zoom, int tx, int ty) {
+			this.level = level;
+			this.zoom = zoom;
+			this.tx = tx;
+			this.ty = ty;
+			double padding = STROKE_PADDING + 1 / zoom;
+			minX = (double) tx * TILE_SIZE / zoom - padding;
+			minY = (double) ty * TILE_SIZE / zoom - padding;
+			maxX = (double) (tx + 1) * TILE_SIZE / zoom + padding;
+			maxY = (double) (ty + 1) * TILE_SIZE / zoom + padding;
+		}
+
+		boolean overlaps(double x0, double y0, double x1, double y1) {
+			return minX <= x1 && minY <= y1 && maxX >= x0 && maxY >= y0;
+		}
+
+		/**
+		 * Returns a graphics that draws in drawing units onto the tile.
+		 */
+		Graphics2D createGraphics() {
+			Graphics2D g = image.createGraphics();
+			g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+			g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+			g.setComposite(AlphaComposite.SrcOver);
+			g.translate(-(double) tx * TILE_SIZE, -(double) ty * TILE_SIZE);
+			g.scale(zoom, zoom);
+			return g;
+		}
+
+		/**
+		 * Copies the pixels of the Java 2D image into the JavaFX image.
+		 */
+		void publish() {
+			int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+			fxImage.getPixelWriter().setPixels(0, 0, TILE_SIZE, TILE_SIZE, PixelFormat.getIntArgbPreInstance(),
+					pixels, 0, TILE_SIZE);
+		}
+	}
+}
@@ -0,0 +1,60 @@
+import java.util.ArrayList;
+
+import javafx.event.EventHandler;
+import javafx.event.EventType;
+import javafx.scene.input.MouseEvent;
+
+/**
+ * Tool is the base of the mouse tools of a ShapeCanvas: drawing, moving, copying, deleting, grouping and selecting.
+ * <p>
+ * A tool registers a handler method for each type of mouse event it reacts to, in its constructor, and
+ * ShapeCanvas.setTool installs exactly those handlers on the canvas. So the canvas only dispatches the events
+ * a tool uses, and each event goes straight to its method instead of through a switch on the name of its type.
+ * The events keep the coordinates on the screen, and the handlers convert the ones they need with
+ * canvas.toDrawingX and canvas.toDrawingY, so no event is copied while the view is zoomed or panned.
+ */
+public abstract class Tool {
+
+	protected ShapeCanvas canvas;
+
+	private ArrayList<EventType<MouseEvent>> types = new ArrayList<>();
+	private ArrayList<EventHandler<MouseEvent>> handlers = new ArrayList<>();
+
+	/**
+	 * Constructs a Tool for a canvas.
+	 *
+	 * @param canvas The canvas the tool works on.
+	 */
+	protected Tool(ShapeCanvas canvas) {
+		this.canvas = canvas;
+	}
+
+	/**
+	 * Registers the handler of one type of mouse event.
+	 *
+	 * @param type    The type of the event, for example MouseEvent.MOUSE_PRESSED.
+	 * @param handler The method handling it.
+	 */
+	protected void on(EventType<MouseEvent> type, EventHandler<MouseEvent> handler) {
+		types.add(type);
+		handlers.add(handler);
+	}
+
+	/**
+	 * Adds the handlers of the tool to the canvas.
+	 */
+	void install() {
+		for (int i = 0; i < types.size(); i++) {
+			canvas.addEventHandler(types.get(i), handlers.get(i));
+		}
+	}
+
+	/**
+	 * Removes the handlers of the tool from the canvas.
+	 */
+	void uninstall() {
+		for (int i = 0; i < types.size(); i++) {
+			canvas.removeEventHandler(types.get(i), handlers.get(i));
+		}
+	}
+}